@@ -0,0 +1,120 @@
+package me.cory.localization;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookups from several threads while a writer keeps changing messages, like async chat and a locale editor at the same time
+ * Shows that reads stay lock-free while the writer copies and publishes new snapshots
+ * @author Cory Caron
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConcurrentLookupBenchmark {
+
+	private static final int SEQUENCE = 1 << 16;
+
+	@Param({"5000"})
+	public int keys;
+
+	@Param({"10"})
+	public int locales;
+
+	@Param({"100000"})
+	public int players;
+
+	private Path directory;
+	private LocaleManager localeMan;
+	private List<String> names;
+	private UUID[] uuids;
+	private MessageKey[] keyHandles;
+	private int[] playerSequence;
+	private int[] keySequence;
+
+	@Setup
+	public void setup() throws IOException{
+		names = Synthetic.localeNames(locales);
+		directory = Files.createTempDirectory("localemanager-concurrent");
+		localeMan = Synthetic.manager(directory, names, keys, false);
+		uuids = Synthetic.players(players);
+		Synthetic.login(localeMan, uuids, names);
+		keyHandles = new MessageKey[keys];
+		for(int i = 0; i < keys; i++){
+			keyHandles[i] = MessageKey.of(Synthetic.key(i));
+		}
+		playerSequence = Synthetic.indices(SEQUENCE, players, 1);
+		keySequence = Synthetic.indices(SEQUENCE, keys, 2);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException{
+		Synthetic.close(localeMan, directory);
+	}
+
+	/**
+	 * Per thread position in the shared sequences
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+
+		private int next;
+		private final Random random = new Random();
+
+		@Setup
+		public void setup(){
+			next = random.nextInt(SEQUENCE);
+		}
+
+		private int next(){
+			return next = (next + 1) & (SEQUENCE - 1);
+		}
+	}
+
+	/**
+	 * LocaleManager#getPlayerMessage(UUID, MessageKey) from the reader threads
+	 */
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(7)
+	public String read(Cursor cursor){
+		int i = cursor.next();
+		return localeMan.getPlayerMessage(uuids[playerSequence[i]], keyHandles[keySequence[i]]);
+	}
+
+	/**
+	 * LocaleManager#setMessage(String, String, String) from the writer thread
+	 */
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(1)
+	public String write(Cursor cursor){
+		int i = cursor.next();
+		String localeName = names.get(i % names.size());
+		String key = Synthetic.key(keySequence[i]);
+		return localeMan.setMessage(localeName, key, "&aChanged message " + i + " {0}");
+	}
+}
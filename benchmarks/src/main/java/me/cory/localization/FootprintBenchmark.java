@@ -0,0 +1,156 @@
+package me.cory.localization;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resident heap of a loaded locale in each file format, a compiled bundle against the CSV and YAML it replaces
+ * The heap retained once loaded and once every message was looked up are measured on setup and reported next to the lookup score
+ * @author Cory Caron
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class FootprintBenchmark {
+
+	private static final int SEQUENCE = 1 << 16;
+
+	@Param({"csv", "yaml", "bundle"})
+	public String format;
+
+	@Param({"1000", "100000"})
+	public int rows;
+
+	private Path directory;
+	private Path file;
+	private LocaleConfig config;
+	private long loadedHeap;
+	private long warmHeap;
+	private String[] keys;
+	private int[] keySequence;
+	private int next;
+
+	@Setup
+	public void setup() throws IOException{
+		directory = Files.createTempDirectory("localemanager-footprint");
+		Map<String, String> messages = Synthetic.messages(Synthetic.DEFAULT_LOCALE, rows);
+		keys = messages.keySet().toArray(new String[0]);
+		write(messages);
+		messages = null;
+		long before = usedHeap();
+		config = load();
+		loadedHeap = usedHeap() - before;
+		for(String key : keys){
+			config.getMessage(key);
+		}
+		warmHeap = usedHeap() - before;
+		keySequence = Synthetic.indices(SEQUENCE, rows, 1);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException{
+		config = null;
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(directory);
+	}
+
+	/**
+	 * Writes the messages in the benchmarked format
+	 * @param messages The messages
+	 * @throws IOException If unable to write the file
+	 */
+	private void write(Map<String, String> messages) throws IOException{
+		switch(format){
+		case "csv":
+			file = directory.resolve(Synthetic.DEFAULT_LOCALE + ".csv");
+			CsvUtil.writeMessages(file, messages, false);
+			return;
+		case "yaml":
+			file = directory.resolve(Synthetic.DEFAULT_LOCALE + ".yml");
+			YamlConfiguration yaml = new YamlConfiguration();
+			for(Entry<String, String> entry : messages.entrySet()){
+				yaml.set(entry.getKey(), entry.getValue());
+			}
+			YamlUtil.writeConfig(file.toFile(), yaml);
+			return;
+		default:
+			file = directory.resolve(Synthetic.DEFAULT_LOCALE + BundleUtil.EXTENSION);
+			BundleUtil.writeBundle(file, messages);
+		}
+	}
+
+	/**
+	 * Loads the locale in the benchmarked format
+	 * @return The loaded config
+	 */
+	private LocaleConfig load(){
+		switch(format){
+		case "csv":
+			return new CsvConfig(Synthetic.DEFAULT_LOCALE, directory.toFile(), false);
+		case "yaml":
+			return new YamlConfig(Synthetic.DEFAULT_LOCALE, directory.toFile(), false);
+		default:
+			return new BundleConfig(Synthetic.DEFAULT_LOCALE, directory.toFile(), false);
+		}
+	}
+
+	/**
+	 * Gets the heap in use after collecting garbage
+	 * @return The used heap in bytes
+	 */
+	private static long usedHeap(){
+		for(int i = 0; i < 3; i++){
+			System.gc();
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * LocaleConfig#getMessage(String), a hash lookup on heap or a probe of the mapped bundle
+	 */
+	@Benchmark
+	public String getMessage(Footprint footprint){
+		next = (next + 1) & (SEQUENCE - 1);
+		return config.getMessage(keys[keySequence[next]]);
+	}
+
+	/**
+	 * The resident heap measured on setup, reported by JMH as secondary results
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Footprint {
+
+		public long loadedHeapKB;
+		public long warmHeapKB;
+
+		@Setup
+		public void setup(FootprintBenchmark benchmark){
+			loadedHeapKB = benchmark.loadedHeap / 1024;
+			warmHeapKB = benchmark.warmHeap / 1024;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package me.cory.localization;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading a locale from disk in each format, the cost paid on startup and on every reload
+ * Files stay in the page cache between calls, so this measures parsing rather than the disk
+ * @author Cory Caron
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class LoadBenchmark {
+
+	@Param({"1000", "100000"})
+	public int rows;
+
+	private Path directory;
+	private File csv;
+	private File yaml;
+	private Path bundle;
+	private Map<String, String> messages;
+	private String firstKey;
+
+	@Setup
+	public void setup() throws IOException{
+		directory = Files.createTempDirectory("localemanager-load");
+		messages = Synthetic.messages(Synthetic.DEFAULT_LOCALE, rows);
+		firstKey = Synthetic.key(rows / 2);
+		csv = directory.resolve("lang0.csv").toFile();
+		CsvUtil.writeMessages(csv.toPath(), messages, false);
+		yaml = directory.resolve("lang0.yml").toFile();
+		YamlConfiguration config = new YamlConfiguration();
+		for(Entry<String, String> entry : messages.entrySet()){
+			config.set(entry.getKey(), entry.getValue());
+		}
+		YamlUtil.writeConfig(yaml, config);
+		bundle = directory.resolve("lang0" + BundleUtil.EXTENSION);
+		BundleUtil.writeBundle(bundle, messages);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException{
+		Files.deleteIfExists(csv.toPath());
+		Files.deleteIfExists(yaml.toPath());
+		Files.deleteIfExists(bundle);
+		Files.deleteIfExists(directory);
+	}
+
+	/**
+	 * How CSV locales were loaded before streaming, every line kept in a list then split on commas, see {@link #baselineLoad(File)}
+	 */
+	@Benchmark
+	public Map<String, String> csvLines() throws IOException{
+		return baselineLoad(csv);
+	}
+
+	/**
+	 * The original CsvUtil#loadConfig and CsvUtil#convertToMap, kept here since CsvUtil now parses with the streaming reader
+	 * Lines with more than one comma are dropped, as they were, so it does slightly less work than the reader it is compared to
+	 * @param file The CSV file
+	 * @return The messages
+	 * @throws IOException If unable to read the file
+	 */
+	private static Map<String, String> baselineLoad(File file) throws IOException{
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		ArrayList<String> lines = new ArrayList<>();
+		String line;
+		while((line = reader.readLine()) != null){
+			lines.add(line);
+		}
+		reader.close();
+		HashMap<String, String> map = new HashMap<>();
+		for(String string : lines){
+			String[] s = string.split(",");
+			if(s.length!=2)continue;
+			map.put(s[0], s[1]);
+		}
+		return map;
+	}
+
+	/**
+	 * CsvConfig#loadMessages, streaming the file straight into the map
+	 */
+	@Benchmark
+	public Map<String, String> csvStream() throws IOException{
+		return CsvUtil.readMessages(csv.toPath());
+	}
+
+	/**
+	 * YamlConfig#loadMessages
+	 */
+	@Benchmark
+	public LocaleConfig yaml(){
+		return new YamlConfig(Synthetic.DEFAULT_LOCALE, directory.toFile(), false);
+	}
+
+	/**
+	 * BundleConfig cold start, mapping the bundle and looking up the first message, nothing else is decoded
+	 */
+	@Benchmark
+	public String bundleFirstLookup(){
+		return new BundleConfig(Synthetic.DEFAULT_LOCALE, directory.toFile(), false).getMessage(firstKey);
+	}
+
+	/**
+	 * Mapping the bundle and decoding every message, what a reload costs if everything is needed on heap
+	 */
+	@Benchmark
+	public Map<String, String> bundleReadAll() throws IOException{
+		return BundleUtil.readAll(BundleUtil.mapBundle(bundle));
+	}
+
+	/**
+	 * Building the lookup table and compiling every template once the messages are read
+	 */
+	@Benchmark
+	public LocaleConfig table(){
+		return new Synthetic.Config(Synthetic.DEFAULT_LOCALE, messages);
+	}
+}
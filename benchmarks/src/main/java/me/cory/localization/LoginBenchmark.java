@@ -0,0 +1,93 @@
+package me.cory.localization;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading a player's locale on join, from a store holding every player who ever joined
+ * @author Cory Caron
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class LoginBenchmark {
+
+	private static final int SEQUENCE = 1 << 16;
+
+	//Add 5000000 with -p players=5000000, the store file is 48 bytes per slot
+	@Param({"10000", "1000000"})
+	public int players;
+
+	@Param({"5000"})
+	public int keys;
+
+	private Path directory;
+	private IndexedPlayerLocaleStore store;
+	private LocaleManager localeMan;
+	private UUID[] uuids;
+	private int[] playerSequence;
+	private int next;
+
+	@Setup
+	public void setup() throws IOException{
+		directory = Files.createTempDirectory("localemanager-login");
+		store = new IndexedPlayerLocaleStore(directory.resolve("players.dat").toFile());
+		List<String> names = Synthetic.localeNames(10);
+		uuids = Synthetic.players(players);
+		for(int i = 0; i < players; i++){
+			store.setLocale(uuids[i], Synthetic.playerLocale(names, i));
+		}
+		store.flush();
+		localeMan = Synthetic.manager(directory, names, keys, false);
+		localeMan.setPlayerLocaleStore(store);
+		playerSequence = Synthetic.indices(SEQUENCE, players, 3);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException{
+		Synthetic.close(localeMan, directory);
+	}
+
+	/**
+	 * PlayerLocaleStore#getLocale for a returning player
+	 */
+	@Benchmark
+	public String storeLookup() throws IOException{
+		next = (next + 1) & (SEQUENCE - 1);
+		return store.getLocale(uuids[playerSequence[next]]);
+	}
+
+	/**
+	 * LocaleManager#preloadPlayer then the login attaching the context, and the quit removing it
+	 */
+	@Benchmark
+	public PlayerLocaleContext preloadAndAttach() throws IOException{
+		next = (next + 1) & (SEQUENCE - 1);
+		UUID uuid = uuids[playerSequence[next]];
+		localeMan.preloadPlayer(uuid);
+		localeMan.loadPlayer(uuid);
+		PlayerLocaleContext context = localeMan.getPlayerContext(uuid);
+		localeMan.unloadPlayer(uuid);
+		return context;
+	}
+}
@@ -0,0 +1,177 @@
+package me.cory.localization;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.ChatColor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Player message lookups and formatting, the hot path of the library
+ * Players are spread over every locale, one in twenty with an unregistered locale, and keys are picked at random
+ * Run with -prof gc for the allocation rate, and -t to measure how reads scale with threads
+ * @author Cory Caron
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class LookupBenchmark {
+
+	private static final int SEQUENCE = 1 << 16;
+	//Lines of a scoreboard
+	private static final int BATCH = 15;
+
+	@Param({"100", "5000", "50000"})
+	public int keys;
+
+	@Param({"10", "100"})
+	public int locales;
+
+	//Add 5000000 with -p players=5000000 and a larger heap
+	@Param({"10000", "1000000"})
+	public int players;
+
+	//The cost of LocaleMetrics on every lookup
+	@Param({"false", "true"})
+	public boolean metrics;
+
+	private Path directory;
+	private LocaleManager localeMan;
+	private UUID[] uuids;
+	private PlayerLocaleContext[] contexts;
+	private String[] keyNames;
+	private MessageKey[] keyHandles;
+	private MessageKey[] batchHandles;
+	private MessageKeySet batchSet;
+	private String[] batch;
+	private int[] playerSequence;
+	private int[] keySequence;
+	private int next;
+
+	@Setup
+	public void setup() throws IOException{
+		List<String> names = Synthetic.localeNames(locales);
+		directory = Files.createTempDirectory("localemanager-lookup");
+		localeMan = Synthetic.manager(directory, names, keys, metrics);
+		uuids = Synthetic.players(players);
+		contexts = Synthetic.login(localeMan, uuids, names);
+		keyNames = new String[keys];
+		keyHandles = new MessageKey[keys];
+		for(int i = 0; i < keys; i++){
+			//A new string each time, like a key coming from another plugin's code
+			keyNames[i] = new String(Synthetic.key(i));
+			keyHandles[i] = MessageKey.of(keyNames[i]);
+		}
+		batchHandles = new MessageKey[BATCH];
+		for(int i = 0; i < BATCH; i++){
+			batchHandles[i] = keyHandles[i % keys];
+		}
+		batchSet = MessageKeySet.of(Arrays.asList(keyNames).subList(0, Math.min(BATCH, keys)));
+		batch = new String[BATCH];
+		playerSequence = Synthetic.indices(SEQUENCE, players, 1);
+		keySequence = Synthetic.indices(SEQUENCE, keys, 2);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException{
+		Synthetic.close(localeMan, directory);
+	}
+
+	private int next(){
+		return next = (next + 1) & (SEQUENCE - 1);
+	}
+
+	/**
+	 * LocaleManager#getPlayerMessage(UUID, String)
+	 */
+	@Benchmark
+	public String getPlayerMessage(){
+		int i = next();
+		return localeMan.getPlayerMessage(uuids[playerSequence[i]], keyNames[keySequence[i]]);
+	}
+
+	/**
+	 * LocaleManager#getPlayerMessage(UUID, MessageKey)
+	 */
+	@Benchmark
+	public String getPlayerMessageByHandle(){
+		int i = next();
+		return localeMan.getPlayerMessage(uuids[playerSequence[i]], keyHandles[keySequence[i]]);
+	}
+
+	/**
+	 * PlayerLocaleContext#getMessage(MessageKey), skipping the UUID map
+	 */
+	@Benchmark
+	public String contextGetMessage(){
+		int i = next();
+		return contexts[playerSequence[i]].getMessage(keyHandles[keySequence[i]]);
+	}
+
+	/**
+	 * A scoreboard's lines with one LocaleManager#getPlayerMessage(UUID, MessageKey) each
+	 */
+	@Benchmark
+	public String[] batchByHandle(){
+		UUID uuid = uuids[playerSequence[next()]];
+		for(int i = 0; i < BATCH; i++){
+			batch[i] = localeMan.getPlayerMessage(uuid, batchHandles[i]);
+		}
+		return batch;
+	}
+
+	/**
+	 * The same lines with LocaleManager#getPlayerMessages(UUID, MessageKey[], String[])
+	 */
+	@Benchmark
+	public String[] batchGetPlayerMessages(){
+		return localeMan.getPlayerMessages(uuids[playerSequence[next()]], batchHandles, batch);
+	}
+
+	/**
+	 * The same lines with LocaleManager#getPlayerMessages(UUID, MessageKeySet, String[]), copied from the locale's cached messages
+	 */
+	@Benchmark
+	public String[] batchKeySet(){
+		return localeMan.getPlayerMessages(uuids[playerSequence[next()]], batchSet, batch);
+	}
+
+	/**
+	 * LocaleManager#format(UUID, MessageKey, Object...) with a name and an amount
+	 */
+	@Benchmark
+	public String format(){
+		int i = next();
+		return contexts[playerSequence[i]].format(keyHandles[keySequence[i]], "Notch", i);
+	}
+
+	/**
+	 * The same lookups before this library existed: a String.replace chain and color translation on every send
+	 */
+	@Benchmark
+	public String formatByReplace(){
+		int i = next();
+		String message = localeMan.getPlayerMessage(uuids[playerSequence[i]], keyNames[keySequence[i]]);
+		if(message==null)return null;
+		return ChatColor.translateAlternateColorCodes('&', message.replace("{0}", "Notch").replace("{1}", String.valueOf(i)));
+	}
+}
@@ -0,0 +1,118 @@
+package me.cory.localization;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saving locales and player locales, the cost paid on shutdown, autosave and every locale change
+ * Run with fsync=true on the disk the server uses to see the real durability cost
+ * @author Cory Caron
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SaveBenchmark {
+
+	@Param({"1000", "100000"})
+	public int rows;
+
+	@Param({"false", "true"})
+	public boolean fsync;
+
+	//Players whose locale changed since the last save
+	@Param({"1000"})
+	public int changes;
+
+	private Path directory;
+	private Map<String, String> messages;
+	private List<String> locales;
+	private UUID[] uuids;
+	private JournaledPlayerLocaleStore store;
+	private int round;
+
+	@Setup
+	public void setup() throws IOException{
+		directory = Files.createTempDirectory("localemanager-save");
+		messages = Synthetic.messages(Synthetic.DEFAULT_LOCALE, rows);
+		locales = Synthetic.localeNames(10);
+		uuids = Synthetic.players(changes);
+		//Flushed and compacted by the benchmark only
+		store = new JournaledPlayerLocaleStore(new IndexedPlayerLocaleStore(directory.resolve("players.dat").toFile()), directory.resolve("players.journal").toFile(), Long.MAX_VALUE / 2, Long.MAX_VALUE);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException{
+		store.close();
+		try(Stream<Path> files = Files.list(directory)){
+			for(Path file : (Iterable<Path>) files::iterator){
+				Files.deleteIfExists(file);
+			}
+		}
+		Files.deleteIfExists(directory);
+	}
+
+	/**
+	 * CsvConfig#saveMessages
+	 */
+	@Benchmark
+	public void csv() throws IOException{
+		CsvUtil.writeMessages(directory.resolve("lang0.csv"), messages, fsync);
+	}
+
+	/**
+	 * YamlConfig#saveMessages, building the config and writing it, always forced to disk
+	 */
+	@Benchmark
+	public void yaml() throws IOException{
+		YamlConfiguration config = new YamlConfiguration();
+		for(Entry<String, String> entry : messages.entrySet()){
+			config.set(entry.getKey(), entry.getValue());
+		}
+		YamlUtil.writeConfig(new File(directory.toFile(), "lang0.yml"), config);
+	}
+
+	/**
+	 * BundleUtil#writeBundle, always forced to disk
+	 */
+	@Benchmark
+	public void bundle() throws IOException{
+		BundleUtil.writeBundle(directory.resolve("lang0" + BundleUtil.EXTENSION), messages);
+	}
+
+	/**
+	 * LocaleManager#savePlayerLocales after a batch of players changed locale, the changes are journaled
+	 */
+	@Benchmark
+	public void playerLocales() throws IOException{
+		round++;
+		for(int i = 0; i < uuids.length; i++){
+			store.setLocale(uuids[i], locales.get((i + round) % locales.size()));
+		}
+		store.flush();
+	}
+}
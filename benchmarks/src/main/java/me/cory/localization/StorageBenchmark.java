@@ -0,0 +1,171 @@
+package me.cory.localization;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Heap against off heap message storage on a large catalog, see LocaleManager#LocaleManager(LocalePlatform, String, boolean, boolean, boolean)
+ * The heap retained by the catalog and the off heap bytes are measured once set up and reported next to each score, run with -prof gc to compare GC time and allocation
+ * @author Cory Caron
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-XX:MaxDirectMemorySize=4g"})
+public class StorageBenchmark {
+
+	private static final int SEQUENCE = 1 << 16;
+	private static final int PLAYERS = 10000;
+
+	@Param({"heap", "offHeap"})
+	public String storage;
+
+	@Param({"50000", "200000"})
+	public int keys;
+
+	@Param({"30"})
+	public int locales;
+
+	//Percent of each locale's messages left as the default locale's text, which off heap storage only keeps once
+	@Param({"0", "50"})
+	public int untranslated;
+
+	private Path directory;
+	private LocaleManager localeMan;
+	private long retainedHeap;
+	private MessageArena arena;
+	private PlayerLocaleContext[] contexts;
+	private MessageKey[] keyHandles;
+	private int[] playerSequence;
+	private int[] keySequence;
+	private int next;
+
+	@Setup
+	public void setup() throws IOException{
+		List<String> names = Synthetic.localeNames(locales);
+		directory = Files.createTempDirectory("localemanager-storage");
+		localeMan = Synthetic.manager(directory, Collections.emptyList(), keys, false);
+		long before = usedHeap();
+		arena = new MessageArena(4096);
+		Map<String, String> defaults = Synthetic.messages(Synthetic.DEFAULT_LOCALE, keys);
+		for(String localeName : names){
+			Map<String, String> messages = localeName.equals(Synthetic.DEFAULT_LOCALE) ? defaults : untranslate(Synthetic.messages(localeName, keys), defaults);
+			LocaleConfig config;
+			if(storage.equals("offHeap")){
+				//Handed over once, so the generated messages aren't kept by the config
+				AtomicReference<Map<String, String>> source = new AtomicReference<>(messages);
+				config = new OffHeapConfig(localeName, null, () -> new Synthetic.Config(localeName, source.getAndSet(null)), arena, false);
+			}else{
+				config = new Synthetic.Config(localeName, messages);
+			}
+			localeMan.registerLocale(config);
+		}
+		defaults = null;
+		retainedHeap = usedHeap() - before;
+
+		contexts = Synthetic.login(localeMan, Synthetic.players(PLAYERS), names);
+		keyHandles = new MessageKey[keys];
+		for(int i = 0; i < keys; i++){
+			keyHandles[i] = MessageKey.of(Synthetic.key(i));
+		}
+		playerSequence = Synthetic.indices(SEQUENCE, PLAYERS, 1);
+		keySequence = Synthetic.indices(SEQUENCE, keys, 2);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException{
+		Synthetic.close(localeMan, directory);
+	}
+
+	/**
+	 * Replaces a share of a locale's messages with the default locale's text, as with keys nobody translated yet
+	 * @param messages The locale's messages
+	 * @param defaults The default locale's messages
+	 * @return The messages
+	 */
+	private Map<String, String> untranslate(Map<String, String> messages, Map<String, String> defaults){
+		int i = 0;
+		for(Entry<String, String> entry : messages.entrySet()){
+			if(i++ % 100<untranslated && defaults.containsKey(entry.getKey()))entry.setValue(defaults.get(entry.getKey()));
+		}
+		return messages;
+	}
+
+	/**
+	 * Gets the heap in use after collecting garbage
+	 * @return The used heap in bytes
+	 */
+	private static long usedHeap(){
+		for(int i = 0; i < 3; i++){
+			System.gc();
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private int next(){
+		return next = (next + 1) & (SEQUENCE - 1);
+	}
+
+	/**
+	 * PlayerLocaleContext#getMessage(MessageKey), decoded from the arena unless cached when off heap
+	 */
+	@Benchmark
+	public String getMessage(Footprint footprint){
+		int i = next();
+		return contexts[playerSequence[i]].getMessage(keyHandles[keySequence[i]]);
+	}
+
+	/**
+	 * PlayerLocaleContext#format(MessageKey, Object...), off heap messages are compiled once per chain and kept
+	 */
+	@Benchmark
+	public String format(Footprint footprint){
+		int i = next();
+		return contexts[playerSequence[i]].format(keyHandles[keySequence[i]], "Notch", i);
+	}
+
+	/**
+	 * The storage footprint measured on setup, reported by JMH as secondary results of each benchmark
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Footprint {
+
+		public long retainedHeapMB;
+		public long offHeapMB;
+		public long distinctMessages;
+		public long storedMessages;
+
+		@Setup
+		public void setup(StorageBenchmark benchmark){
+			retainedHeapMB = benchmark.retainedHeap / (1024 * 1024);
+			offHeapMB = benchmark.arena.getReservedBytes() / (1024 * 1024);
+			distinctMessages = benchmark.arena.getMessageCount();
+			storedMessages = benchmark.arena.getStoreCount();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,236 @@
+package me.cory.localization;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Generates synthetic locales and players for the benchmarks, without a server
+ * Locales come in families (lang3, lang3_r1, lang3_r2...) so lookups go through real fallback chains,
+ * and regional locales only translate part of the keys so some lookups fall back
+ * Everything is seeded, so every run benchmarks the same data
+ * @author Cory Caron
+ */
+final class Synthetic {
+
+	/**
+	 * The default locale of every generated set
+	 */
+	static final String DEFAULT_LOCALE = "lang0";
+	private static final String[] WORDS = {"the", "player", "has", "joined", "server", "coins", "welcome", "back", "you", "cannot", "do", "that", "here", "arena", "team", "won", "lost", "game", "shop", "bought"};
+
+	private Synthetic(){}
+
+	/**
+	 * Gets the key at an index
+	 * @param index The key index
+	 * @return The key
+	 */
+	static String key(int index){
+		return "section" + (index % 64) + ".message" + index;
+	}
+
+	/**
+	 * Generates the names of a set of locales, the first is the default locale
+	 * Every fourth locale is a language and the three after it are its regions
+	 * @param count The number of locales
+	 * @return The locale names
+	 */
+	static List<String> localeNames(int count){
+		ArrayList<String> names = new ArrayList<>(count);
+		for(int i = 0; i < count; i++){
+			names.add(i % 4==0 ? "lang" + (i / 4) : "lang" + (i / 4) + "_r" + (i % 4));
+		}
+		return names;
+	}
+
+	/**
+	 * Generates the messages of a locale
+	 * The default locale has every key, languages have 90% and regions 30%
+	 * About one message in eight has a plural and one in four has a color code and a placeholder
+	 * @param localeName The locale name
+	 * @param keys The number of keys
+	 * @return Map of all key:message pairs
+	 */
+	static Map<String, String> messages(String localeName, int keys){
+		Random random = new Random(localeName.hashCode());
+		int coverage = localeName.equals(DEFAULT_LOCALE) ? 100 : localeName.contains("_") ? 30 : 90;
+		HashMap<String, String> messages = new HashMap<>();
+		for(int i = 0; i < keys; i++){
+			if(random.nextInt(100)>=coverage)continue;
+			messages.put(key(i), message(random, localeName));
+		}
+		return messages;
+	}
+
+	/**
+	 * Generates a message
+	 * @param random The random to use
+	 * @param localeName The locale name, included so locales differ
+	 * @return The message
+	 */
+	static String message(Random random, String localeName){
+		StringBuilder builder = new StringBuilder();
+		int kind = random.nextInt(8);
+		if(kind<2)builder.append("&e");
+		int words = 3 + random.nextInt(12);
+		for(int i = 0; i < words; i++){
+			if(i>0)builder.append(' ');
+			builder.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		if(kind<2)builder.append(" {0}");
+		else if(kind==2)builder.append(" {1,plural,one{# coin} other{# coins}}");
+		return builder.append(" [").append(localeName).append(']').toString();
+	}
+
+	/**
+	 * Generates player UUIDs
+	 * @param count The number of players
+	 * @return The UUIDs
+	 */
+	static UUID[] players(int count){
+		Random random = new Random(42);
+		UUID[] players = new UUID[count];
+		for(int i = 0; i < count; i++){
+			players[i] = new UUID(random.nextLong(), random.nextLong());
+		}
+		return players;
+	}
+
+	/**
+	 * Picks the selected locale of a player, one player in twenty has a locale that isn't registered and falls back to the default
+	 * @param locales The registered locale names
+	 * @param index The player index
+	 * @return The selected locale
+	 */
+	static String playerLocale(List<String> locales, int index){
+		return index % 20==0 ? "unregistered_xx" : locales.get(index % locales.size());
+	}
+
+	/**
+	 * Generates a random sequence of indices below a bound, so benchmarks don't pay for a Random on each call
+	 * @param length The length of the sequence, a power of two
+	 * @param bound The exclusive bound
+	 * @param seed The seed
+	 * @return The indices
+	 */
+	static int[] indices(int length, int bound, long seed){
+		Random random = new Random(seed);
+		int[] indices = new int[length];
+		for(int i = 0; i < length; i++){
+			indices[i] = random.nextInt(bound);
+		}
+		return indices;
+	}
+
+	/**
+	 * Creates a LocaleManager on a standalone platform and registers generated locales in it
+	 * @param folder The data folder, its locales folder should be empty
+	 * @param locales The locale names to generate
+	 * @param keys The number of keys
+	 * @param metrics True to record lookups
+	 * @return The LocaleManager
+	 */
+	static LocaleManager manager(Path folder, List<String> locales, int keys, boolean metrics){
+		LocaleManager localeMan = new LocaleManager(LocalePlatform.standalone(folder.toFile()), DEFAULT_LOCALE);
+		localeMan.getMetrics().setEnabled(metrics);
+		for(String localeName : locales){
+			localeMan.registerLocale(new Config(localeName, messages(localeName, keys)));
+		}
+		return localeMan;
+	}
+
+	/**
+	 * Gives each player a selected locale in memory and loads them, as if they had all logged in
+	 * @param localeMan The LocaleManager
+	 * @param players The players
+	 * @param locales The registered locale names
+	 * @return The player contexts in player order
+	 */
+	static PlayerLocaleContext[] login(LocaleManager localeMan, UUID[] players, List<String> locales){
+		Store store = new Store(players.length);
+		for(int i = 0; i < players.length; i++){
+			store.setLocale(players[i], playerLocale(locales, i));
+		}
+		localeMan.setPlayerLocaleStore(store);
+		PlayerLocaleContext[] contexts = new PlayerLocaleContext[players.length];
+		for(int i = 0; i < players.length; i++){
+			localeMan.loadPlayer(players[i]);
+			contexts[i] = localeMan.getPlayerContext(players[i]);
+		}
+		return contexts;
+	}
+
+	/**
+	 * Shuts a LocaleManager down and deletes its data folder
+	 * @param localeMan The LocaleManager
+	 * @param folder The data folder
+	 * @throws IOException If unable to delete a file
+	 */
+	static void close(LocaleManager localeMan, Path folder) throws IOException{
+		localeMan.shutdown();
+		try(Stream<Path> files = Files.walk(folder)){
+			for(Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator){
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	/**
+	 * Locale Config holding generated messages in memory
+	 */
+	static final class Config extends LocaleConfig {
+
+		Config(String localeName, Map<String, String> messages){
+			super(localeName);
+			setMessages(messages);
+		}
+
+		@Override
+		public void loadMessages() {
+		}
+
+		@Override
+		public void saveMessages() {
+		}
+	}
+
+	/**
+	 * Player locale store held in memory, so setting up millions of players doesn't write a store file
+	 */
+	static final class Store implements PlayerLocaleStore {
+
+		private final ConcurrentHashMap<UUID, String> locales;
+
+		Store(int players){
+			this.locales = new ConcurrentHashMap<>(players * 2);
+		}
+
+		@Override
+		public String getLocale(UUID uuid){
+			return locales.get(uuid);
+		}
+
+		@Override
+		public void setLocale(UUID uuid, String localeName){
+			locales.put(uuid, localeName);
+		}
+
+		@Override
+		public void flush(){
+		}
+
+		@Override
+		public void close(){
+		}
+	}
+}
@@ -22,9 +22,9 @@ public class Main extends JavaPlugin {
 		Bukkit.getPluginManager().registerEvents(new LoginEvent(localeMan), this);
 	}
 	
-	//Save player locale selections
+	//Save player locale selections and close the player locale store
 	public void onDisable(){
-		localeMan.savePlayerLocales();
+		localeMan.shutdown();
 	}
 	
 	//get an instance of the LocaleManager
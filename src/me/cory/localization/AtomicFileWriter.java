@@ -0,0 +1,204 @@
+package me.cory.localization;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Set;
+
+/**
+ * Writer that streams text into a temp file next to the target and only replaces the target on {@link #commit()}
+ * Text is encoded straight into a large buffer and written through a FileChannel, and the temp file is moved over the target
+ * with an atomic rename, so a crash mid save leaves the old file untouched. Closing without committing discards the temp file.
+ * The temp file is given the target's permissions, or its folder's without execute for a new file, so a save keeps the file's mode
+ * @author Cory Caron
+ */
+public final class AtomicFileWriter extends Writer {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Path target;
+	private final Path temp;
+	private final boolean fsync;
+	private final CharsetEncoder encoder;
+	private final ByteBuffer buffer;
+	private final FileChannel channel;
+	private final char[] single;
+	private boolean committed;
+	private boolean closed;
+
+	/**
+	 * Opens a temp file next to the target, creating the target's folder if it does not exist
+	 * @param target The file to replace on commit
+	 * @param charset Charset to encode the text with
+	 * @param fsync True to force the temp file to disk before the rename, so the new contents survive a power loss
+	 * @throws IOException If unable to create the temp file
+	 */
+	public AtomicFileWriter(Path target, Charset charset, boolean fsync) throws IOException{
+		this.target = target.toAbsolutePath();
+		this.fsync = fsync;
+		this.temp = createTemp(this.target);
+		this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.single = new char[1];
+		this.channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		encode(CharBuffer.wrap(chars, offset, length), false);
+	}
+
+	@Override
+	public void write(String string, int offset, int length) throws IOException {
+		encode(CharBuffer.wrap(string, offset, offset + length), false);
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		single[0] = (char) c;
+		encode(CharBuffer.wrap(single), false);
+	}
+
+	/**
+	 * Nothing reaches the target before commit, so this only writes the buffer to the temp file
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		drain();
+	}
+
+	/**
+	 * Writes everything to the temp file, forces it to disk if requested and renames it over the target
+	 * @throws IOException If unable to write or rename the temp file
+	 */
+	public void commit() throws IOException{
+		ensureOpen();
+		encode(CharBuffer.allocate(0), true);
+		while(encoder.flush(buffer)==CoderResult.OVERFLOW){
+			drain();
+		}
+		drain();
+		if(fsync)channel.force(true);
+		channel.close();
+		replace(temp, target);
+		committed = true;
+		closed = true;
+	}
+
+	/**
+	 * Discards the temp file if the writer wasn't committed, leaving the target untouched
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed)return;
+		closed = true;
+		channel.close();
+		if(!committed)Files.deleteIfExists(temp);
+	}
+
+	/**
+	 * Creates a uniquely named temp file next to a target, with the permissions the target has or would be created with
+	 * Creates the target's folder if it does not exist
+	 * @param target The absolute path of the file the temp file will replace
+	 * @return The temp file
+	 * @throws IOException If unable to create the temp file
+	 */
+	static Path createTemp(Path target) throws IOException{
+		Files.createDirectories(target.getParent());
+		Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		try {
+			copyPermissions(target, temp);
+		} catch (IOException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		return temp;
+	}
+
+	/**
+	 * Gives the temp file the target's POSIX permissions, temp files are created readable by the owner only
+	 * A new target gets its folder's permissions without execute, close to what the umask would give it
+	 * @param target The target
+	 * @param temp The temp file
+	 * @throws IOException If unable to read or set the permissions
+	 */
+	private static void copyPermissions(Path target, Path temp) throws IOException{
+		Path source = Files.exists(target) ? target : target.getParent();
+		PosixFileAttributeView view = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+		if(view==null)return;
+		Set<PosixFilePermission> permissions = view.readAttributes().permissions();
+		if(source!=target){
+			permissions.remove(PosixFilePermission.OWNER_EXECUTE);
+			permissions.remove(PosixFilePermission.GROUP_EXECUTE);
+			permissions.remove(PosixFilePermission.OTHERS_EXECUTE);
+		}
+		Files.setPosixFilePermissions(temp, permissions);
+	}
+
+	/**
+	 * Moves a finished temp file over its target, atomically where the file system supports it
+	 * @param temp The temp file
+	 * @param target The target
+	 * @throws IOException If unable to move the temp file
+	 */
+	static void replace(Path temp, Path target) throws IOException{
+		try {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Encodes characters into the buffer, writing it to the temp file whenever it fills
+	 * @param chars The characters to encode
+	 * @param endOfInput True if these are the last characters
+	 * @throws IOException If unable to write the temp file
+	 */
+	private void encode(CharBuffer chars, boolean endOfInput) throws IOException{
+		ensureOpen();
+		while(true){
+			CoderResult result = encoder.encode(chars, buffer, endOfInput);
+			if(result.isOverflow()){
+				drain();
+				continue;
+			}
+			if(result.isError())result.throwException();
+			return;
+		}
+	}
+
+	/**
+	 * Writes the buffer to the temp file
+	 * @throws IOException If unable to write the temp file
+	 */
+	private void drain() throws IOException{
+		buffer.flip();
+		while(buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Checks that the writer can still be written to
+	 * @throws IOException If the writer was committed or closed
+	 */
+	private void ensureOpen() throws IOException{
+		if(closed)throw new IOException("Writer for " + target + " is closed");
+	}
+}
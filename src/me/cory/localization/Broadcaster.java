@@ -0,0 +1,79 @@
+package me.cory.localization;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Sends a message to many players, resolving and rendering it once per locale instead of once per player
+ * Recipients are grouped by the locale their messages resolve in, and each group is sent the shared rendered message
+ * Large recipient lists are spread over ticks in batches so a single broadcast can't stall the tick
+ * @author Cory Caron
+ */
+final class Broadcaster implements Runnable {
+
+	private final Player[] players;
+	private final String[] messages;
+	private final int batchSize;
+	private int next;
+	private LocalePlatform.Task task;
+
+	private Broadcaster(Player[] players, String[] messages, int batchSize){
+		this.players = players;
+		this.messages = messages;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Renders the message once for each locale the recipients use and starts sending it
+	 * Must be called on the main thread
+	 * @param platform The platform to schedule the remaining batches on
+	 * @param resolver The resolver to get each locale's message from
+	 * @param recipients The players to send to
+	 * @param key The key handle to the message
+	 * @param args The arguments for the placeholders
+	 * @param batchSize The most players to send to per tick
+	 * @return The number of players the message is being sent to, players whose locale chain doesn't have the key are skipped
+	 */
+	static int broadcast(LocalePlatform platform, MessageResolver resolver, Collection<? extends Player> recipients, MessageKey key, Object[] args, int batchSize){
+		HashMap<String, List<Player>> groups = new HashMap<>();
+		for(Player player : recipients){
+			groups.computeIfAbsent(resolver.getResolvedLocale(player.getUniqueId()), localeName -> new ArrayList<>()).add(player);
+		}
+		ArrayList<Player> players = new ArrayList<>(recipients.size());
+		ArrayList<String> messages = new ArrayList<>(recipients.size());
+		for(Entry<String, List<Player>> group : groups.entrySet()){
+			MessageTemplate template = resolver.resolveTemplate(group.getKey(), key);
+			if(template==null)continue;
+			String message = template.render(template.isLocalized() ? resolver.getFormats(group.getKey(), key) : LocaleFormats.ROOT, args);
+			for(Player player : group.getValue()){
+				players.add(player);
+				messages.add(message);
+			}
+		}
+		Broadcaster broadcaster = new Broadcaster(players.toArray(new Player[0]), messages.toArray(new String[0]), Math.max(1, batchSize));
+		broadcaster.run();
+		if(broadcaster.next<broadcaster.players.length){
+			broadcaster.task = platform.runRepeating(broadcaster, 1L, 1L);
+		}
+		return players.size();
+	}
+
+	/**
+	 * Sends the next batch, players who left since the broadcast started are skipped
+	 */
+	@Override
+	public void run() {
+		int end = (int) Math.min(players.length, (long) next + batchSize);
+		for(; next < end; next++){
+			Player player = players[next];
+			if(task==null || player.isOnline())player.sendMessage(messages[next]);
+			players[next] = null;
+		}
+		if(next>=players.length && task!=null)task.cancel();
+	}
+}
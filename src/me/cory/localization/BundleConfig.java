@@ -0,0 +1,143 @@
+package me.cory.localization;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Locale Config backed by a memory mapped bundle (.lmb) compiled with {@link BundleUtil}
+ * Loading only maps the file, and lookups read messages straight out of the mapping, so the messages stay off the heap
+ * Messages set at runtime are held on the heap on top of the bundle until saved
+ * @author Cory Caron
+ */
+public class BundleConfig extends LocaleConfig{
+
+	private volatile ByteBuffer bundle;
+
+	/**
+	 * Constructor for bundle Locale Config
+	 * @param localeName Name of the locale
+	 */
+	public BundleConfig(String localeName) {
+		super(localeName);
+	}
+
+	/**
+	 * Constructor for bundle Locale Config
+	 * @param localeName Name of the locale
+	 * @param lazy True to defer mapping the bundle until it is first needed
+	 */
+	public BundleConfig(String localeName, boolean lazy) {
+		super(localeName, lazy);
+	}
+
+	/**
+	 * Constructor for bundle Locale Config in a folder
+	 * @param localeName Name of the locale
+	 * @param folder The folder the locale file is in
+	 * @param lazy True to defer mapping the bundle until it is first needed
+	 */
+	public BundleConfig(String localeName, File folder, boolean lazy) {
+		super(localeName, folder, lazy);
+	}
+
+	/**
+	 * Called from super class when constructed, or on first use if lazy
+	 * Maps the bundle file, nothing is decoded
+	 */
+	@Override
+	public void loadMessages() {
+		try {
+			bundle = BundleUtil.getBundle(getFolder(), getLocaleName());
+		} catch (IOException e) {
+			loadFailed(e);
+			return;
+		}
+	}
+
+	/**
+	 * Called from LocaleManager in case messages are changed at runtime
+	 * Compiles all localized messages, including runtime changes, into the bundle file
+	 */
+	@Override
+	public void saveMessages() {
+		try {
+			BundleUtil.saveBundle(getMessages(), getFolder(), getLocaleName());
+		} catch (IOException e) {
+			saveFailed(e);
+			return;
+		}
+	}
+
+	/**
+	 * Gets all messages, decoding the whole bundle onto the heap
+	 * Avoid on hot paths, use getMessage instead
+	 * @return Returns a read-only copy of all messages
+	 */
+	@Override
+	public Map<String, String> getMessages(){
+		Map<String, String> overrides = super.getMessages();
+		ByteBuffer current = bundle;
+		if(current==null)return overrides;
+		HashMap<String, String> messages = new HashMap<>(BundleUtil.readAll(current));
+		messages.putAll(overrides);
+		return Collections.unmodifiableMap(messages);
+	}
+
+	@Override
+	public String getMessage(String key){
+		Map<String, String> overrides = super.getMessages();
+		String message = overrides.get(key);
+		if(message!=null || overrides.containsKey(key))return message;
+		ByteBuffer current = bundle;
+		if(current==null)return null;
+		int offset = BundleUtil.find(current, key);
+		return offset<0 ? null : BundleUtil.decode(current, offset);
+	}
+
+	@Override
+	public String getMessage(MessageKey key){
+		return getMessage(key.getName());
+	}
+
+	@Override
+	public boolean containsKey(String key){
+		if(super.containsKey(key))return true;
+		ByteBuffer current = bundle;
+		return current!=null && BundleUtil.find(current, key)>=0;
+	}
+
+	@Override
+	public boolean containsMessage(String message){
+		return getMessages().containsValue(message);
+	}
+
+	/**
+	 * Bundles are read in place, so only runtime changes count towards the heap used
+	 * @return True
+	 */
+	@Override
+	public boolean isOffHeap(){
+		return true;
+	}
+
+	/**
+	 * Gets the size of the mapped bundle
+	 * @return The size in bytes or 0 if not mapped
+	 */
+	public long getMappedSize(){
+		ByteBuffer current = bundle;
+		return current==null ? 0 : current.capacity();
+	}
+
+	@Override
+	public synchronized boolean unloadMessages(){
+		if(!super.unloadMessages())return false;
+		bundle = null;
+		return true;
+	}
+
+}
@@ -0,0 +1,361 @@
+package me.cory.localization;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * Util class for compiled locale bundles (.lmb)
+ * A bundle is a hash table of key and message offsets followed by a pool of deduplicated UTF-8 strings,
+ * so it can be memory mapped and read in place without parsing
+ * Can also be run from the command line to compile .csv and .yml locales: java -cp LocaleManager.jar me.cory.localization.BundleUtil &lt;files or folders&gt;
+ * @author Cory Caron
+ */
+public final class BundleUtil {
+
+	/**
+	 * The file extension of compiled bundles
+	 */
+	public static final String EXTENSION = ".lmb";
+	//Layout: magic, version, entry count, table size, then table slots of key hash, key offset (0 for empty) and message offset
+	private static final int MAGIC = 0x4C4D4231;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final int SLOT_SIZE = 12;
+
+	private BundleUtil(){}
+
+	/**
+	 * Compiles every .csv and .yml file given, or found directly in a folder given, into a bundle next to it
+	 * @param args Files or folders to compile
+	 * @throws IOException If unable to read a locale or write its bundle
+	 */
+	public static void main(String[] args) throws IOException {
+		for(String arg : args){
+			File file = new File(arg);
+			File[] files = file.isDirectory() ? file.listFiles() : new File[]{file};
+			if(files==null)continue;
+			for(File source : files){
+				if(!source.getName().endsWith(".csv") && !source.getName().endsWith(".yml"))continue;
+				System.out.println("Compiling " + source + " -> " + convert(source).getName());
+			}
+		}
+	}
+
+	/**
+	 * Compiles a .csv or .yml locale into a bundle next to it with the same name
+	 * @param source The locale file
+	 * @return The bundle file
+	 * @throws IOException If unable to read the locale or write the bundle
+	 */
+	public static File convert(File source) throws IOException{
+		String name = source.getName();
+		Map<String, String> messages;
+		if(name.endsWith(".csv")){
+			messages = CsvUtil.readMessages(source.toPath());
+		}else if(name.endsWith(".yml")){
+			FileConfiguration config = YamlUtil.loadConfig(source);
+			messages = new HashMap<>();
+			for(String key : config.getKeys(true)){
+				String message = config.getString(key);
+				if(message!=null && !config.isConfigurationSection(key))messages.put(key, message);
+			}
+		}else{
+			throw new IOException("Not a .csv or .yml locale: " + source);
+		}
+		File target = new File(source.getParentFile(), name.substring(0, name.lastIndexOf('.')) + EXTENSION);
+		writeBundle(target.toPath(), messages);
+		return target;
+	}
+
+	/**
+	 * Memory maps the bundle in the specified subdirectory
+	 * @param name Name of the bundle
+	 * @param subdirectory Subdirectory under the plugin data folder
+	 * @return The mapped bundle
+	 * @throws IOException If unable to map the bundle or it isn't a bundle
+	 */
+	public static ByteBuffer getBundle(String name, String subdirectory) throws IOException{
+		return getBundle(new File(LocalePlatform.getDefault().getDataFolder() + File.separator + subdirectory), name);
+	}
+
+	/**
+	 * Memory maps the bundle in a folder
+	 * @param dir Folder of the bundle
+	 * @param name Name of the bundle
+	 * @return The mapped bundle
+	 * @throws IOException If unable to map the bundle or it isn't a bundle
+	 */
+	public static ByteBuffer getBundle(File dir, String name) throws IOException{
+		return mapBundle(new File(dir, name + EXTENSION).toPath());
+	}
+
+	/**
+	 * Saves messages to the bundle in the specified subdirectory
+	 * @param messages Map of all key:message pairs
+	 * @param name Name of the bundle
+	 * @param subdirectory Subdirectory under the plugin data folder
+	 * @throws IOException If unable to write the bundle
+	 */
+	public static void saveBundle(Map<String, String> messages, String name, String subdirectory) throws IOException{
+		saveBundle(messages, new File(LocalePlatform.getDefault().getDataFolder() + File.separator + subdirectory), name);
+	}
+
+	/**
+	 * Saves messages to the bundle in a folder
+	 * @param messages Map of all key:message pairs
+	 * @param dir Folder of the bundle
+	 * @param name Name of the bundle
+	 * @throws IOException If unable to write the bundle
+	 */
+	public static void saveBundle(Map<String, String> messages, File dir, String name) throws IOException{
+		writeBundle(new File(dir, name + EXTENSION).toPath(), messages);
+	}
+
+	/**
+	 * Memory maps a bundle read-only
+	 * The whole table is checked here, so a corrupt or truncated bundle fails to load instead of failing lookups later
+	 * @param path The bundle file
+	 * @return The mapped bundle
+	 * @throws IOException If unable to map the file or it isn't a valid bundle
+	 */
+	public static ByteBuffer mapBundle(Path path) throws IOException{
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.limit()<HEADER_SIZE || buffer.getInt(0)!=MAGIC || buffer.getInt(4)!=VERSION)throw new IOException("Not a locale bundle: " + path);
+			String error = validate(buffer);
+			if(error!=null)throw new IOException("Corrupt locale bundle " + path + ": " + error);
+			return buffer;
+		}
+	}
+
+	/**
+	 * Checks the header and every table slot of a bundle
+	 * The table must be a power of two that fits in the file with at least one empty slot, so lookups end,
+	 * and every string must lie within the pool
+	 * @param bundle The bundle
+	 * @return The problem found or null if the bundle is valid
+	 */
+	private static String validate(ByteBuffer bundle){
+		int entries = bundle.getInt(8);
+		int tableSize = bundle.getInt(12);
+		if(tableSize<=0 || (tableSize & (tableSize - 1))!=0)return "table size " + tableSize + " isn't a power of two";
+		long poolStart = HEADER_SIZE + (long) tableSize * SLOT_SIZE;
+		if(poolStart>bundle.limit())return "table of " + tableSize + " slots doesn't fit in " + bundle.limit() + " bytes";
+		if(entries<0 || entries>=tableSize)return "entry count " + entries + " doesn't fit a table of " + tableSize + " slots";
+		int used = 0;
+		for(int slot = 0; slot < tableSize; slot++){
+			int position = HEADER_SIZE + slot * SLOT_SIZE;
+			int keyOffset = bundle.getInt(position + 4);
+			if(keyOffset==0)continue;
+			used++;
+			if(!inPool(bundle, keyOffset, poolStart) || !inPool(bundle, bundle.getInt(position + 8), poolStart))return "slot " + slot + " points outside the string pool";
+		}
+		if(used!=entries)return "header has " + entries + " entries but the table has " + used;
+		return null;
+	}
+
+	/**
+	 * Checks that a pooled string and its length lie within the pool
+	 * @param bundle The bundle
+	 * @param offset The offset of the string
+	 * @param poolStart The offset of the pool
+	 * @return True if the whole string is in the pool
+	 */
+	private static boolean inPool(ByteBuffer bundle, int offset, long poolStart){
+		if(offset<poolStart || (long) offset + 4 > bundle.limit())return false;
+		int length = bundle.getInt(offset);
+		return length>=0 && (long) offset + 4 + length <= bundle.limit();
+	}
+
+	/**
+	 * Writes messages as a bundle, replacing the file atomically
+	 * Identical strings are only stored once
+	 * @param path The bundle file
+	 * @param messages Map of all key:message pairs, null messages are skipped
+	 * @throws IOException If unable to write the bundle
+	 */
+	public static void writeBundle(Path path, Map<String, String> messages) throws IOException{
+		ArrayList<Entry<String, String>> entries = new ArrayList<>();
+		for(Entry<String, String> entry : messages.entrySet()){
+			if(entry.getKey()!=null && entry.getValue()!=null)entries.add(entry);
+		}
+		int tableSize = 16;
+		while(tableSize < entries.size() * 2)tableSize <<= 1;
+		int poolStart = HEADER_SIZE + tableSize * SLOT_SIZE;
+
+		HashMap<String, Integer> offsets = new HashMap<>();
+		List<byte[]> pool = new ArrayList<>();
+		int poolSize = 0;
+		ByteBuffer table = ByteBuffer.allocate(tableSize * SLOT_SIZE);
+		int mask = tableSize - 1;
+		for(Entry<String, String> entry : entries){
+			int keyOffset = 0;
+			int messageOffset = 0;
+			for(int i = 0; i < 2; i++){
+				String string = i==0 ? entry.getKey() : entry.getValue();
+				Integer offset = offsets.get(string);
+				if(offset==null){
+					byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+					offset = poolStart + poolSize;
+					offsets.put(string, offset);
+					pool.add(bytes);
+					poolSize += 4 + bytes.length;
+				}
+				if(i==0)keyOffset = offset;
+				else messageOffset = offset;
+			}
+			int hash = entry.getKey().hashCode();
+			int slot = mix(hash) & mask;
+			while(table.getInt(slot * SLOT_SIZE + 4)!=0){
+				slot = (slot + 1) & mask;
+			}
+			table.putInt(slot * SLOT_SIZE, hash);
+			table.putInt(slot * SLOT_SIZE + 4, keyOffset);
+			table.putInt(slot * SLOT_SIZE + 8, messageOffset);
+		}
+
+		ByteBuffer out = ByteBuffer.allocate(poolStart + poolSize);
+		out.putInt(MAGIC).putInt(VERSION).putInt(entries.size()).putInt(tableSize);
+		out.put(table.array());
+		for(byte[] bytes : pool){
+			out.putInt(bytes.length);
+			out.put(bytes);
+		}
+		out.flip();
+		//A unique temp file per save, so concurrent saves of one bundle can't truncate each other's
+		Path target = path.toAbsolutePath();
+		Path temp = AtomicFileWriter.createTemp(target);
+		try {
+			try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+				while(out.hasRemaining()){
+					channel.write(out);
+				}
+				channel.force(true);
+			}
+			AtomicFileWriter.replace(temp, target);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Gets the number of messages in a bundle
+	 * @param bundle The mapped bundle
+	 * @return The number of messages
+	 */
+	public static int size(ByteBuffer bundle){
+		return bundle.getInt(8);
+	}
+
+	/**
+	 * Finds the message for a key in a bundle without decoding any keys
+	 * @param bundle The mapped bundle
+	 * @param key The key to find
+	 * @return The offset of the message in the bundle or -1 if the key isn't in it
+	 */
+	public static int find(ByteBuffer bundle, String key){
+		int tableSize = bundle.getInt(12);
+		int mask = tableSize - 1;
+		int hash = key.hashCode();
+		int slot = mix(hash) & mask;
+		while(true){
+			int position = HEADER_SIZE + slot * SLOT_SIZE;
+			int keyOffset = bundle.getInt(position + 4);
+			if(keyOffset==0)return -1;
+			if(bundle.getInt(position)==hash && equalsUtf8(bundle, keyOffset, key))return bundle.getInt(position + 8);
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Decodes a string from the pool of a bundle
+	 * @param bundle The mapped bundle
+	 * @param offset The offset of the string
+	 * @return The decoded string
+	 */
+	public static String decode(ByteBuffer bundle, int offset){
+		int length = bundle.getInt(offset);
+		byte[] bytes = new byte[length];
+		ByteBuffer view = bundle.duplicate();
+		view.position(offset + 4);
+		view.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decodes every message in a bundle
+	 * @param bundle The mapped bundle
+	 * @return Map of all key:message pairs
+	 */
+	public static Map<String, String> readAll(ByteBuffer bundle){
+		int tableSize = bundle.getInt(12);
+		HashMap<String, String> messages = new HashMap<>();
+		for(int slot = 0; slot < tableSize; slot++){
+			int position = HEADER_SIZE + slot * SLOT_SIZE;
+			int keyOffset = bundle.getInt(position + 4);
+			if(keyOffset==0)continue;
+			messages.put(decode(bundle, keyOffset), decode(bundle, bundle.getInt(position + 8)));
+		}
+		return messages;
+	}
+
+	/**
+	 * Compares a pooled UTF-8 string with a string without decoding it
+	 * @param bundle The mapped bundle
+	 * @param offset The offset of the pooled string
+	 * @param string The string to compare
+	 * @return True if they are equal
+	 */
+	private static boolean equalsUtf8(ByteBuffer bundle, int offset, String string){
+		int length = bundle.getInt(offset);
+		int position = offset + 4;
+		int end = position + length;
+		int index = 0;
+		int chars = string.length();
+		while(position < end){
+			int b = bundle.get(position) & 0xFF;
+			//A sequence running past the string is malformed, and can't match
+			if(position + (b < 0x80 ? 1 : b < 0xE0 ? 2 : b < 0xF0 ? 3 : 4) > end)return false;
+			int codePoint;
+			if(b < 0x80){
+				codePoint = b;
+				position += 1;
+			}else if(b < 0xE0){
+				codePoint = ((b & 0x1F) << 6) | (bundle.get(position + 1) & 0x3F);
+				position += 2;
+			}else if(b < 0xF0){
+				codePoint = ((b & 0x0F) << 12) | ((bundle.get(position + 1) & 0x3F) << 6) | (bundle.get(position + 2) & 0x3F);
+				position += 3;
+			}else{
+				codePoint = ((b & 0x07) << 18) | ((bundle.get(position + 1) & 0x3F) << 12) | ((bundle.get(position + 2) & 0x3F) << 6) | (bundle.get(position + 3) & 0x3F);
+				position += 4;
+			}
+			if(index>=chars || string.codePointAt(index)!=codePoint)return false;
+			index += Character.charCount(codePoint);
+		}
+		return index==chars;
+	}
+
+	/**
+	 * Spreads the bits of String#hashCode over the table
+	 * @param hash The hash
+	 * @return The mixed hash
+	 */
+	private static int mix(int hash){
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -1,7 +1,7 @@
 package me.cory.localization;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.Map.Entry;
 
 public class CsvConfig extends LocaleConfig{
 
@@ -12,19 +12,36 @@ public class CsvConfig extends LocaleConfig{
 	public CsvConfig(String localeName) {
 		super(localeName);
 	}
+	
+	/**
+	 * Constructor for CSV formatted Locale Config
+	 * @param localeName Name of the locale
+	 * @param lazy True to defer loading messages until they are first needed
+	 */
+	public CsvConfig(String localeName, boolean lazy) {
+		super(localeName, lazy);
+	}
+	
+	/**
+	 * Constructor for CSV formatted Locale Config in a folder
+	 * @param localeName Name of the locale
+	 * @param folder The folder the locale file is in
+	 * @param lazy True to defer loading messages until they are first needed
+	 */
+	public CsvConfig(String localeName, File folder, boolean lazy) {
+		super(localeName, folder, lazy);
+	}
 
 	/**
-	 * Called from super class when constructed
+	 * Called from super class when constructed, or on first use if lazy
 	 * Loads all localized messages from CSV file
 	 */
 	@Override
 	public void loadMessages() {
 		try {
-			for(Entry<String, String> entry : CsvUtil.convertToMap(CsvUtil.getConfig(getLocaleName(), "locales")).entrySet()){
-				setMessage(entry.getKey(), entry.getValue());
-			}
+			setMessages(CsvUtil.getMessages(getFolder(), getLocaleName()));
 		} catch (IOException e) {
-			//LOG IO ERROR MESSAGE HERE
+			loadFailed(e);
 			return;
 		}
 		
@@ -37,9 +54,9 @@ public class CsvConfig extends LocaleConfig{
 	@Override
 	public void saveMessages() {
 		try {
-			CsvUtil.saveConfig(CsvUtil.convertToCsv(getMessages()), getLocaleName(), "locales");
+			CsvUtil.saveMessages(getMessages(), getFolder(), getLocaleName());
 		} catch (IOException e) {
-			//LOG IO ERROR MESSAGE HERE
+			saveFailed(e);
 			return;
 		}
 	}
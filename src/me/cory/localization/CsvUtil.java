@@ -1,12 +1,18 @@
 package me.cory.localization;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -68,7 +74,7 @@ public final class CsvUtil {
 	 * @throws IOException If unable to read or create the specified config
 	 */
 	public static List<String> getConfig(String name, String subdirectory)throws IOException {
-		File dir = new File(JavaPlugin.getProvidingPlugin(CsvUtil.class).getDataFolder() + File.separator + subdirectory);
+		File dir = new File(LocalePlatform.getDefault().getDataFolder() + File.separator + subdirectory);
 		if (!dir.isDirectory()) {
 			dir.mkdirs();
 		}
@@ -87,7 +93,7 @@ public final class CsvUtil {
 	 * @throws IOException If unable to save the specified config to file
 	 */
 	public static void saveConfig(List<String> messages, String name, String subdirectory) throws IOException {
-		File dir = new File(JavaPlugin.getProvidingPlugin(CsvUtil.class).getDataFolder() + File.separator + subdirectory);
+		File dir = new File(LocalePlatform.getDefault().getDataFolder() + File.separator + subdirectory);
 		if (!dir.isDirectory()) {
 			dir.mkdirs();
 		}
@@ -103,11 +109,11 @@ public final class CsvUtil {
 	 * @throws IOException If unable to read or create the specified config
 	 */
 	public static List<String> getConfig(String name) throws IOException {
-		File dir = JavaPlugin.getProvidingPlugin(CsvUtil.class).getDataFolder();
+		File dir = LocalePlatform.getDefault().getDataFolder();
 		if (!dir.isDirectory()) {
 			dir.mkdirs();
 		}
-		File file = new File(JavaPlugin.getProvidingPlugin(CsvUtil.class).getDataFolder(), name + ".csv");
+		File file = new File(LocalePlatform.getDefault().getDataFolder(), name + ".csv");
 		if (!file.exists()) {
 			file.createNewFile();
 		}
@@ -121,7 +127,7 @@ public final class CsvUtil {
 	 * @throws IOException If unable to save the specified config to file
 	 */
 	public static void saveConfig(List<String> messages, String name) throws IOException {
-		File file = new File(JavaPlugin.getProvidingPlugin(CsvUtil.class).getDataFolder(), name + ".csv");
+		File file = new File(LocalePlatform.getDefault().getDataFolder(), name + ".csv");
 		writeConfig(file, messages);
 	}
 	
@@ -176,7 +182,7 @@ public final class CsvUtil {
 		if (!dir.isDirectory()) {
 			dir.mkdirs();
 		}
-		File file = new File(JavaPlugin.getProvidingPlugin(CsvUtil.class).getDataFolder(), name + ".csv");
+		File file = new File(dir, name + ".csv");
 		if (!file.exists()) {
 			file.createNewFile();
 		}
@@ -196,62 +202,311 @@ public final class CsvUtil {
 	}
 	
 	/**
-	 * Write all lines to file
+	 * Write all lines to file in UTF-8
+	 * The file is replaced atomically, so it is never left half written
 	 * @param file File to write to
 	 * @param lines Lines to be written
 	 * @throws IOException If unable to write lines to file
 	 */
 	public static void writeConfig(File file, List<String> lines) throws IOException{
-		BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-		for(String string : lines){
-			writer.write(string);
-			writer.newLine();
+		try(AtomicFileWriter writer = new AtomicFileWriter(file.toPath(), StandardCharsets.UTF_8, false)){
+			for(String string : lines){
+				writer.write(string);
+				writer.write('\n');
+			}
+			writer.commit();
 		}
-		writer.close();
 	}
 	
 	/**
-	 * Read all lines from file
+	 * Read all lines from a UTF-8 file
 	 * @param file File to read from
 	 * @return List of all lines from the file
 	 * @throws IOException If unable to read lines from file
 	 */
 	public static List<String> loadConfig(File file) throws IOException{
-		BufferedReader reader = new BufferedReader(new FileReader(file));
 		ArrayList<String> lines = new ArrayList<>();
-		String line;
-		while((line = reader.readLine()) != null){
-			lines.add(line);
+		try(BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)){
+			String line;
+			while((line = reader.readLine()) != null){
+				lines.add(line);
+			}
 		}
-		reader.close();
 		return lines;
 	}
 	
 	/**
 	 * Converts all lines from Map to CSV format
+	 * Keys and messages containing commas, quotes or line breaks are quoted
 	 * @param messages Map of all key:message pairs
 	 * @return Returns a list of all lines in CSV format
 	 */
 	public static List<String> convertToCsv(Map<String, String> messages){
 		ArrayList<String> lines = new ArrayList<>();
 		for(Entry<String, String> entry : messages.entrySet()){
-			lines.add(entry.getKey() + "," + entry.getValue());
+			lines.add(quote(entry.getKey()) + "," + quote(entry.getValue()));
 		}
 		return lines;
 	}
 	
 	/**
 	 * Converts all lines from CSV to Map format
+	 * Prefer {@link #readMessages(Path)} which streams the file without building a list of lines first
 	 * @param messages List of all messages in CSV format
 	 * @return Returns a Map of all key:message pairs
+	 * @throws IllegalArgumentException If a quoted field is never closed
 	 */
 	public static Map<String, String> convertToMap(List<String> messages){
+		try {
+			return readMessages(new StringReader(String.join("\n", messages)));
+		} catch (IOException e) {
+			//Reading from a string only fails on malformed CSV
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Gets the messages of the CSV config in the specified subdirectory
+	 * Creates the config if it does not exist
+	 * @param name Name of the config
+	 * @param subdirectory Subdirectory under the plugin data folder
+	 * @return Returns a Map of all key:message pairs
+	 * @throws IOException If unable to read or create the specified config
+	 */
+	public static Map<String, String> getMessages(String name, String subdirectory) throws IOException {
+		return getMessages(new File(LocalePlatform.getDefault().getDataFolder() + File.separator + subdirectory), name);
+	}
+	
+	/**
+	 * Gets the messages of the CSV config in a folder
+	 * Creates the config if it does not exist
+	 * @param dir Folder of the config
+	 * @param name Name of the config
+	 * @return Returns a Map of all key:message pairs
+	 * @throws IOException If unable to read or create the specified config
+	 */
+	public static Map<String, String> getMessages(File dir, String name) throws IOException {
+		if (!dir.isDirectory()) {
+			dir.mkdirs();
+		}
+		File file = new File(dir, name + ".csv");
+		if (!file.exists()) {
+			file.createNewFile();
+		}
+		return readMessages(file.toPath());
+	}
+	
+	/**
+	 * Saves messages to the CSV config in the specified subdirectory
+	 * The config is written atomically and forced to disk, so a crash never leaves it half written
+	 * @param messages Map of all key:message pairs
+	 * @param name Name of the config
+	 * @param subdirectory Subdirectory under the plugin data folder
+	 * @throws IOException If unable to save the specified config to file
+	 */
+	public static void saveMessages(Map<String, String> messages, String name, String subdirectory) throws IOException {
+		saveMessages(messages, new File(LocalePlatform.getDefault().getDataFolder() + File.separator + subdirectory), name);
+	}
+	
+	/**
+	 * Saves messages to the CSV config in a folder
+	 * The config is written atomically and forced to disk, so a crash never leaves it half written
+	 * @param messages Map of all key:message pairs
+	 * @param dir Folder of the config
+	 * @param name Name of the config
+	 * @throws IOException If unable to save the specified config to file
+	 */
+	public static void saveMessages(Map<String, String> messages, File dir, String name) throws IOException {
+		writeMessages(new File(dir, name + ".csv").toPath(), messages, true);
+	}
+	
+	/**
+	 * Streams all messages to a UTF-8 CSV file without building the lines first
+	 * Fields are quoted when needed, and the file is replaced with an atomic rename once everything is written
+	 * @param path File to write to
+	 * @param messages Map of all key:message pairs
+	 * @param fsync True to force the file to disk before it replaces the old one
+	 * @throws IOException If unable to write the file
+	 */
+	public static void writeMessages(Path path, Map<String, String> messages, boolean fsync) throws IOException{
+		try(AtomicFileWriter writer = new AtomicFileWriter(path, StandardCharsets.UTF_8, fsync)){
+			for(Entry<String, String> entry : messages.entrySet()){
+				writeField(writer, entry.getKey());
+				writer.write(',');
+				writeField(writer, entry.getValue());
+				writer.write('\n');
+			}
+			writer.commit();
+		}
+	}
+	
+	/**
+	 * Streams all messages from a UTF-8 CSV file
+	 * @param path File to read from
+	 * @return Returns a Map of all key:message pairs
+	 * @throws IOException If unable to read the file
+	 */
+	public static Map<String, String> readMessages(Path path) throws IOException{
+		return readMessages(path, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Streams all messages from a CSV file
+	 * @param path File to read from
+	 * @param charset Charset of the file
+	 * @return Returns a Map of all key:message pairs
+	 * @throws IOException If unable to read the file
+	 */
+	public static Map<String, String> readMessages(Path path, Charset charset) throws IOException{
+		try(InputStream in = Files.newInputStream(path)){
+			return readMessages(in, charset);
+		}
+	}
+	
+	/**
+	 * Streams all messages from CSV bytes, the stream is not closed
+	 * @param in Stream to read from
+	 * @param charset Charset of the bytes
+	 * @return Returns a Map of all key:message pairs
+	 * @throws IOException If unable to read the stream
+	 */
+	public static Map<String, String> readMessages(InputStream in, Charset charset) throws IOException{
+		return readMessages(new InputStreamReader(in, charset));
+	}
+	
+	/**
+	 * Streams all messages from CSV text in a single pass, the reader is not closed
+	 * Follows RFC 4180: fields may be quoted, quotes inside quoted fields are doubled, and quoted fields may contain commas and line breaks.
+	 * The first field of each record is the key and the rest of the line is the message, so an unquoted message may still contain commas.
+	 * Either one is quoted only if it starts with a quote and its closing quote ends it, a comma for the key and the end of the line
+	 * for the message. Otherwise it is kept as written, quotes included, so k,"a",b reads as "a",b just like k,a,"b" reads as a,"b",
+	 * and older files with quotes inside messages, such as greet,"Hi" there, read the same as before.
+	 * A leading byte order mark is skipped, and records without a message are ignored
+	 * @param reader Reader to read from
+	 * @return Returns a Map of all key:message pairs
+	 * @throws IOException If unable to read from the reader or a quoted field is never closed
+	 */
+	public static Map<String, String> readMessages(Reader reader) throws IOException{
 		HashMap<String, String> map = new HashMap<>();
-		for(String string : messages){
-			String[] s = string.split(",");
-			if(s.length!=2)continue;
-			map.put(s[0], s[1]);
+		char[] buffer = new char[8192];
+		StringBuilder field = new StringBuilder();
+		//The quoted field as written, used if it turns out not to be quoted
+		StringBuilder raw = new StringBuilder();
+		String key = null;
+		boolean quoted = false;
+		//Set after a quote inside a quoted field, it is either an escaped quote or the end of the field
+		boolean quote = false;
+		boolean start = true;
+		int line = 1;
+		int quotedLine = 0;
+		char previous = 0;
+		int read;
+		while((read = reader.read(buffer)) != -1){
+			int i = 0;
+			if(start){
+				start = false;
+				if(buffer[0]=='\uFEFF')i = 1;
+			}
+			for(; i < read; i++){
+				char c = buffer[i];
+				if(c=='\r' || (c=='\n' && previous!='\r'))line++;
+				previous = c;
+				if(quoted){
+					if(quote){
+						quote = false;
+						if(c=='"'){
+							field.append('"');
+							raw.append('"');
+							continue;
+						}
+						quoted = false;
+						if(c!='\n' && c!='\r' && (key!=null || c!=',')){
+							//Text after the closing quote, keep the field as written
+							field.setLength(0);
+							field.append(raw);
+						}
+					}else if(c=='"'){
+						quote = true;
+						raw.append(c);
+						continue;
+					}else{
+						field.append(c);
+						raw.append(c);
+						continue;
+					}
+				}
+				if(c==','){
+					//Once the key is read, later commas belong to the message
+					if(key==null){
+						key = field.toString();
+						field.setLength(0);
+					}else{
+						field.append(',');
+					}
+				}else if(c=='\n' || c=='\r'){
+					if(key!=null)map.put(key, field.toString());
+					key = null;
+					field.setLength(0);
+				}else if(c=='"' && field.length()==0){
+					quoted = true;
+					quotedLine = line;
+					raw.setLength(0);
+					raw.append(c);
+				}else{
+					field.append(c);
+				}
+			}
 		}
+		if(quoted && !quote)throw new IOException("Quoted field starting on line " + quotedLine + " is never closed");
+		if(key!=null)map.put(key, field.toString());
 		return map;
 	}
+	
+	/**
+	 * Quotes a field if it contains a comma, quote or line break
+	 * @param field The field to quote
+	 * @return The field ready to be written to CSV
+	 */
+	private static String quote(String field){
+		if(field==null)return "";
+		if(!needsQuotes(field))return field;
+		return "\"" + field.replace("\"", "\"\"") + "\"";
+	}
+	
+	/**
+	 * Writes a field, quoting it if it contains a comma, quote or line break
+	 * @param writer Writer to write to
+	 * @param field The field to write
+	 * @throws IOException If unable to write
+	 */
+	private static void writeField(Writer writer, String field) throws IOException{
+		if(field==null)return;
+		if(!needsQuotes(field)){
+			writer.write(field);
+			return;
+		}
+		writer.write('"');
+		int start = 0;
+		int quote;
+		while((quote = field.indexOf('"', start)) != -1){
+			writer.write(field, start, quote + 1 - start);
+			writer.write('"');
+			start = quote + 1;
+		}
+		writer.write(field, start, field.length() - start);
+		writer.write('"');
+	}
+	
+	/**
+	 * Checks if a field has to be quoted
+	 * @param field The field to check
+	 * @return True if it contains a comma, quote or line break
+	 */
+	private static boolean needsQuotes(String field){
+		for(int i = 0; i < field.length(); i++){
+			char c = field.charAt(i);
+			if(c==',' || c=='"' || c=='\n' || c=='\r')return true;
+		}
+		return false;
+	}
 }
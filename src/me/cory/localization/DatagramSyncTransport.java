@@ -0,0 +1,164 @@
+package me.cory.localization;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reference transport sending each batch as a UDP datagram to a fixed list of peers
+ * Needs no broker, so backends on one machine can sync over loopback ports, such as 25600 and 25601,
+ * and backends on a private network over their addresses. Datagrams can be lost, which only leaves a player's locale stale on
+ * the servers that missed it until the next change, and every server still has the selection it last saw in its own store.
+ * Batches are not authenticated, only datagrams from a peer's address are accepted and source addresses can be spoofed,
+ * so binding to anything but loopback has to be allowed explicitly and the port must be firewalled from outside the network
+ * @author Cory Caron
+ */
+public class DatagramSyncTransport implements LocaleSyncTransport {
+
+	//Largest UDP payload, batches are kept below it by LocaleSync
+	static final int MAX_DATAGRAM = 65507;
+
+	private final InetSocketAddress bind;
+	private final List<InetSocketAddress> peers;
+	private DatagramSocket socket;
+	private Thread thread;
+
+	/**
+	 * Construct the transport receiving on a loopback address, call {@link #open(Consumer)} to bind it
+	 * @param bind The loopback address to receive on
+	 * @param peers The addresses of every other server
+	 * @throws IllegalArgumentException If the bind address isn't a loopback address
+	 */
+	public DatagramSyncTransport(InetSocketAddress bind, List<InetSocketAddress> peers){
+		this(bind, peers, false);
+	}
+
+	/**
+	 * Construct the transport, call {@link #open(Consumer)} to bind it
+	 * @param bind The address to receive on
+	 * @param peers The addresses of every other server
+	 * @param allowRemote True to allow binding to an address other than loopback, which anyone who can reach the port can send changes to
+	 * @throws IllegalArgumentException If the bind address isn't a loopback address and remote binds aren't allowed
+	 */
+	public DatagramSyncTransport(InetSocketAddress bind, List<InetSocketAddress> peers, boolean allowRemote){
+		if(!allowRemote && (bind.getAddress()==null || !bind.getAddress().isLoopbackAddress()))throw new IllegalArgumentException("Refusing to bind the unauthenticated sync transport to " + bind + ", allow remote binds to use it on a private network");
+		this.bind = bind;
+		this.peers = Collections.unmodifiableList(new ArrayList<>(peers));
+	}
+
+	/**
+	 * Construct the transport for servers on the same machine, receiving on a loopback port
+	 * @param port The port to receive on
+	 * @param peerPorts The ports of every other server
+	 */
+	public DatagramSyncTransport(int port, int... peerPorts){
+		this(new InetSocketAddress("127.0.0.1", port), loopback(peerPorts));
+	}
+
+	/**
+	 * Gets the loopback addresses of ports
+	 * @param ports The ports
+	 * @return The addresses
+	 */
+	private static List<InetSocketAddress> loopback(int[] ports){
+		ArrayList<InetSocketAddress> addresses = new ArrayList<>(ports.length);
+		for(int port : ports){
+			addresses.add(new InetSocketAddress("127.0.0.1", port));
+		}
+		return addresses;
+	}
+
+	/**
+	 * Gets the addresses batches are sent to
+	 * @return A read-only list of the peers
+	 */
+	public List<InetSocketAddress> getPeers(){
+		return peers;
+	}
+
+	@Override
+	public synchronized void open(Consumer<byte[]> receiver) throws IOException {
+		if(socket!=null)throw new IllegalStateException("Transport is already open");
+		DatagramSocket socket = new DatagramSocket(bind);
+		this.socket = socket;
+		thread = new Thread(() -> receive(socket, receiver), "LocaleManager-sync-receiver");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Receives datagrams until the socket is closed
+	 * @param socket The socket
+	 * @param receiver The receiver of each batch
+	 */
+	private void receive(DatagramSocket socket, Consumer<byte[]> receiver){
+		byte[] buffer = new byte[MAX_DATAGRAM];
+		DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+		while(!socket.isClosed()){
+			try {
+				packet.setLength(buffer.length);
+				socket.receive(packet);
+			} catch (SocketException e) {
+				return;
+			} catch (IOException e) {
+				continue;
+			}
+			if(!isPeer(packet.getAddress()))continue;
+			try {
+				receiver.accept(Arrays.copyOfRange(buffer, packet.getOffset(), packet.getOffset() + packet.getLength()));
+			} catch (RuntimeException e) {
+				//Keep receiving, a bad batch is the receiver's to report
+				continue;
+			}
+		}
+	}
+
+	/**
+	 * Checks if a datagram came from one of the peers
+	 * @param address The source address
+	 * @return True if a peer has the address
+	 */
+	private boolean isPeer(InetAddress address){
+		for(InetSocketAddress peer : peers){
+			if(address.equals(peer.getAddress()))return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void publish(byte[] batch) throws IOException {
+		DatagramSocket socket;
+		synchronized(this){
+			socket = this.socket;
+		}
+		if(socket==null)throw new IOException("Transport is not open");
+		if(batch.length>MAX_DATAGRAM)throw new IOException("Batch of " + batch.length + " bytes doesn't fit in a datagram");
+		IOException failure = null;
+		for(InetSocketAddress peer : peers){
+			try {
+				socket.send(new DatagramPacket(batch, batch.length, peer));
+			} catch (IOException e) {
+				//Keep sending to the other peers
+				failure = e;
+			}
+		}
+		if(failure!=null)throw failure;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if(socket==null)return;
+		socket.close();
+		socket = null;
+		thread.interrupt();
+		thread = null;
+	}
+}
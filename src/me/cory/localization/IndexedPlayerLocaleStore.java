@@ -0,0 +1,240 @@
+package me.cory.localization;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Player locale store backed by an on-disk hash table
+ * Each player is a fixed size slot found by hashing their UUID, so nothing but the file handle is kept in memory
+ * and a lookup or save touches one or two slots no matter how many players are stored
+ * @author Cory Caron
+ */
+public class IndexedPlayerLocaleStore implements PlayerLocaleStore {
+
+	//File layout: header of magic, version, capacity and size, then capacity slots
+	private static final int MAGIC = 0x504C4F43;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	//Slot layout: UUID most and least significant bits, name length + 1 (0 for an empty slot), name bytes
+	private static final int SLOT_SIZE = 48;
+	private static final int NAME_OFFSET = 17;
+	/**
+	 * The longest locale name in UTF-8 bytes that fits in a slot
+	 */
+	public static final int MAX_NAME_LENGTH = SLOT_SIZE - NAME_OFFSET;
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final File file;
+	private final ByteBuffer slot;
+	private FileChannel channel;
+	private int capacity;
+	private int size;
+
+	/**
+	 * Opens the store, creating the file if it does not exist
+	 * @param file The store file
+	 * @throws IOException If unable to open or create the file or it isn't a store file
+	 */
+	public IndexedPlayerLocaleStore(File file) throws IOException{
+		this.file = file;
+		this.slot = ByteBuffer.allocate(SLOT_SIZE);
+		if(!file.exists() || file.length()==0){
+			create(file, INITIAL_CAPACITY);
+		}
+		open();
+	}
+
+	/**
+	 * Gets the number of players stored
+	 * @return The number of players
+	 */
+	public synchronized int size(){
+		return size;
+	}
+
+	@Override
+	public synchronized String getLocale(UUID uuid) throws IOException {
+		int index = find(uuid);
+		if(index<0)return null;
+		readSlot(index);
+		int length = (slot.get(16) & 0xFF) - 1;
+		return new String(slot.array(), NAME_OFFSET, length, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public synchronized void setLocale(UUID uuid, String localeName) throws IOException {
+		byte[] name = localeName.getBytes(StandardCharsets.UTF_8);
+		if(name.length>MAX_NAME_LENGTH)throw new IllegalArgumentException("Locale name is longer than " + MAX_NAME_LENGTH + " bytes: " + localeName);
+		int index = find(uuid);
+		if(index<0){
+			if((size + 1) * 2 > capacity){
+				resize(capacity * 2);
+				index = find(uuid);
+			}
+			index = -index - 1;
+			size++;
+			writeHeader();
+		}
+		slot.clear();
+		slot.putLong(uuid.getMostSignificantBits());
+		slot.putLong(uuid.getLeastSignificantBits());
+		slot.put((byte) (name.length + 1));
+		slot.put(name);
+		while(slot.hasRemaining())slot.put((byte) 0);
+		slot.flip();
+		channel.write(slot, slotPosition(index));
+	}
+
+	@Override
+	public int getMaxNameLength() {
+		return MAX_NAME_LENGTH;
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		channel.force(false);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		channel.force(false);
+		channel.close();
+	}
+
+	/**
+	 * Finds the slot of a player
+	 * @param uuid Player's UUID
+	 * @return The slot index, or -(empty slot index) - 1 if the player isn't stored
+	 * @throws IOException If unable to read the file
+	 */
+	private int find(UUID uuid) throws IOException{
+		long most = uuid.getMostSignificantBits();
+		long least = uuid.getLeastSignificantBits();
+		int mask = capacity - 1;
+		int index = hash(most, least) & mask;
+		while(true){
+			readSlot(index);
+			if(slot.get(16)==0)return -index - 1;
+			if(slot.getLong(0)==most && slot.getLong(8)==least)return index;
+			index = (index + 1) & mask;
+		}
+	}
+
+	/**
+	 * Rehashes every slot into a new file with the capacity, then moves it over this one
+	 * @param newCapacity The new capacity, a power of two
+	 * @throws IOException If unable to write the new file
+	 */
+	private void resize(int newCapacity) throws IOException{
+		File temp = new File(file.getPath() + ".resize");
+		create(temp, newCapacity);
+		try(FileChannel target = FileChannel.open(temp.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)){
+			ByteBuffer other = ByteBuffer.allocate(SLOT_SIZE);
+			int mask = newCapacity - 1;
+			for(int i = 0; i < capacity; i++){
+				readSlot(i);
+				if(slot.get(16)==0)continue;
+				int index = hash(slot.getLong(0), slot.getLong(8)) & mask;
+				while(true){
+					other.clear();
+					target.read(other, HEADER_SIZE + (long) index * SLOT_SIZE);
+					if(other.get(16)==0)break;
+					index = (index + 1) & mask;
+				}
+				slot.rewind();
+				target.write(slot, HEADER_SIZE + (long) index * SLOT_SIZE);
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(newCapacity).putInt(size).flip();
+			target.write(header, 0);
+			target.force(false);
+		}
+		channel.close();
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		open();
+	}
+
+	/**
+	 * Opens the channel and reads the header
+	 * @throws IOException If unable to open the file or it isn't a store file
+	 */
+	private void open() throws IOException{
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		channel.read(header, 0);
+		if(header.getInt(0)!=MAGIC || header.getInt(4)!=VERSION){
+			channel.close();
+			throw new IOException("Not a player locale store: " + file);
+		}
+		capacity = header.getInt(8);
+		size = header.getInt(12);
+	}
+
+	/**
+	 * Writes the capacity and size to the header
+	 * @throws IOException If unable to write the file
+	 */
+	private void writeHeader() throws IOException{
+		ByteBuffer header = ByteBuffer.allocate(8);
+		header.putInt(capacity).putInt(size).flip();
+		channel.write(header, 8);
+	}
+
+	/**
+	 * Reads a slot into the slot buffer
+	 * @param index The slot index
+	 * @throws IOException If unable to read the file
+	 */
+	private void readSlot(int index) throws IOException{
+		slot.clear();
+		channel.read(slot, slotPosition(index));
+		slot.clear();
+	}
+
+	/**
+	 * Gets the file position of a slot
+	 * @param index The slot index
+	 * @return The position in bytes
+	 */
+	private static long slotPosition(int index){
+		return HEADER_SIZE + (long) index * SLOT_SIZE;
+	}
+
+	/**
+	 * Mixes the bits of a UUID so sequential UUIDs spread over the table
+	 * @param most The most significant bits
+	 * @param least The least significant bits
+	 * @return The hash
+	 */
+	private static int hash(long most, long least){
+		long hash = (most ^ least) * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 * Creates an empty store file with the capacity
+	 * @param target The file to create
+	 * @param capacity The number of slots, a power of two
+	 * @throws IOException If unable to write the file
+	 */
+	private static void create(File target, int capacity) throws IOException{
+		File dir = target.getAbsoluteFile().getParentFile();
+		if (!dir.isDirectory()) {
+			dir.mkdirs();
+		}
+		try(FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(capacity).putInt(0).flip();
+			out.write(header, 0);
+			//Writing the last byte sizes the file, unwritten slots read back as zeros
+			out.write(ByteBuffer.allocate(1), HEADER_SIZE + (long) capacity * SLOT_SIZE - 1);
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package me.cory.localization;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind wrapper around another player locale store
+ * setLocale only records the change in memory. A background thread appends changes to a journal file in batches,
+ * and periodically compacts the journal into the wrapped store, so saving costs O(changes) instead of O(all players).
+ * Journal records left over from a crash are replayed into the wrapped store when it is opened
+ * @author Cory Caron
+ */
+public class JournaledPlayerLocaleStore implements PlayerLocaleStore {
+
+	//Record layout: UUID most and least significant bits, name length, name bytes
+	private static final int RECORD_HEADER = 17;
+
+	private final PlayerLocaleStore store;
+	private final File journalFile;
+	private final long compactBytes;
+	//Longest name of both the journal records and the wrapped store
+	private final int maxNameLength;
+	private final FileChannel journal;
+	private final ScheduledExecutorService executor;
+	//Changes that aren't in the wrapped store yet
+	private final ConcurrentHashMap<UUID, String> unapplied;
+	//Changes that aren't in the journal yet
+	private final ConcurrentHashMap<UUID, String> queued;
+	private volatile Consumer<IOException> errorHandler;
+	private int skippedRecords;
+
+	/**
+	 * Opens the journal with a one second flush interval and a 1 MiB compaction threshold
+	 * @param store The store to compact changes into
+	 * @param journalFile The journal file, created if it does not exist
+	 * @throws IOException If unable to open or replay the journal
+	 */
+	public JournaledPlayerLocaleStore(PlayerLocaleStore store, File journalFile) throws IOException{
+		this(store, journalFile, 1000L, 1024L * 1024L);
+	}
+
+	/**
+	 * Opens the journal, replaying any records left from a crash into the wrapped store
+	 * @param store The store to compact changes into
+	 * @param journalFile The journal file, created if it does not exist
+	 * @param flushMillis Milliseconds between appending batches of changes to the journal
+	 * @param compactBytes Journal size that triggers compacting it into the wrapped store
+	 * @throws IOException If unable to open or replay the journal, the wrapped store is not closed
+	 */
+	public JournaledPlayerLocaleStore(PlayerLocaleStore store, File journalFile, long flushMillis, long compactBytes) throws IOException{
+		this.store = store;
+		this.journalFile = journalFile;
+		this.compactBytes = compactBytes;
+		this.maxNameLength = Math.min(255, store.getMaxNameLength());
+		this.unapplied = new ConcurrentHashMap<>();
+		this.queued = new ConcurrentHashMap<>();
+		this.journal = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			replay();
+		} catch (IOException | RuntimeException e) {
+			//The wrapped store is left open for the caller
+			journal.close();
+			throw e;
+		}
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "LocaleManager-journal");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(this::flushQueued, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public String getLocale(UUID uuid) throws IOException {
+		String localeName = unapplied.get(uuid);
+		if(localeName!=null)return localeName;
+		return store.getLocale(uuid);
+	}
+
+	@Override
+	public void setLocale(UUID uuid, String localeName) {
+		if(localeName.getBytes(StandardCharsets.UTF_8).length>maxNameLength)throw new IllegalArgumentException("Locale name is longer than " + maxNameLength + " bytes: " + localeName);
+		unapplied.put(uuid, localeName);
+		queued.put(uuid, localeName);
+	}
+
+	/**
+	 * Appends all queued changes to the journal and compacts it into the wrapped store, then waits for both
+	 * @throws IOException If unable to write the journal or the wrapped store
+	 */
+	@Override
+	public void flush() throws IOException {
+		try {
+			executor.submit(() -> {
+				appendQueued();
+				compact();
+				return null;
+			}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while flushing " + journalFile, e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException)throw (IOException) e.getCause();
+			throw new IOException("Unable to flush " + journalFile, e.getCause());
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			executor.shutdown();
+			try {
+				journal.close();
+			} finally {
+				store.close();
+			}
+		}
+	}
+
+	@Override
+	public int getMaxNameLength() {
+		return maxNameLength;
+	}
+
+	/**
+	 * Sets the handler for errors writing in the background, which can't be thrown to a caller
+	 * @param errorHandler The handler, called on the journal thread, or null to ignore them
+	 */
+	public void setErrorHandler(Consumer<IOException> errorHandler){
+		this.errorHandler = errorHandler;
+	}
+
+	/**
+	 * Gets the number of changes that aren't compacted into the wrapped store yet
+	 * @return The number of pending changes
+	 */
+	public int getPendingChanges(){
+		return unapplied.size();
+	}
+
+	/**
+	 * Gets the number of journal records dropped when replaying because the wrapped store rejected them
+	 * @return The number of skipped records
+	 */
+	public int getSkippedRecords(){
+		return skippedRecords;
+	}
+
+	/**
+	 * Gets the current size of the journal file
+	 * @return The size in bytes
+	 * @throws IOException If unable to read the journal size
+	 */
+	public long getJournalSize() throws IOException{
+		return journal.size();
+	}
+
+	/**
+	 * Scheduled task, appends queued changes and compacts once the journal is big enough
+	 */
+	private void flushQueued(){
+		try {
+			appendQueued();
+			if(journal.size()>=compactBytes)compact();
+		} catch (IOException e) {
+			Consumer<IOException> handler = errorHandler;
+			if(handler!=null)handler.accept(e);
+		} catch (RuntimeException e) {
+			//Thrown out of a scheduled task, it would silently cancel every later flush
+			Consumer<IOException> handler = errorHandler;
+			if(handler!=null)handler.accept(new IOException("Unable to flush " + journalFile, e));
+		}
+	}
+
+	/**
+	 * Appends every queued change to the journal as one write and forces it to disk
+	 * Must only run on the journal thread
+	 * @throws IOException If unable to write the journal
+	 */
+	private void appendQueued() throws IOException{
+		if(queued.isEmpty())return;
+		HashMap<UUID, String> batch = new HashMap<>(queued);
+		int size = 0;
+		for(String localeName : batch.values()){
+			size += RECORD_HEADER + localeName.getBytes(StandardCharsets.UTF_8).length;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		for(Entry<UUID, String> entry : batch.entrySet()){
+			byte[] name = entry.getValue().getBytes(StandardCharsets.UTF_8);
+			buffer.putLong(entry.getKey().getMostSignificantBits());
+			buffer.putLong(entry.getKey().getLeastSignificantBits());
+			buffer.put((byte) name.length);
+			buffer.put(name);
+		}
+		buffer.flip();
+		long position = journal.size();
+		while(buffer.hasRemaining()){
+			position += journal.write(buffer, position);
+		}
+		journal.force(false);
+		for(Entry<UUID, String> entry : batch.entrySet()){
+			queued.remove(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Applies every change in memory to the wrapped store, flushes it and truncates the journal
+	 * Must only run on the journal thread, after appendQueued
+	 * @throws IOException If unable to write the wrapped store or the journal
+	 */
+	private void compact() throws IOException{
+		if(unapplied.isEmpty())return;
+		HashMap<UUID, String> batch = new HashMap<>(unapplied);
+		for(Entry<UUID, String> entry : batch.entrySet()){
+			store.setLocale(entry.getKey(), entry.getValue());
+		}
+		store.flush();
+		journal.truncate(0);
+		journal.force(false);
+		//Anything changed again while compacting is still queued, so it is journaled after the truncate
+		for(Entry<UUID, String> entry : batch.entrySet()){
+			unapplied.remove(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Applies every complete record in the journal to the wrapped store and truncates it
+	 * A partial record at the end, from a crash mid write, is ignored, and records the wrapped store rejects are skipped
+	 * @throws IOException If unable to read the journal or write the wrapped store
+	 */
+	private void replay() throws IOException{
+		long size = journal.size();
+		if(size==0)return;
+		ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		while(buffer.hasRemaining() && journal.read(buffer, buffer.position())>=0);
+		buffer.flip();
+		Map<UUID, String> replayed = new HashMap<>();
+		while(buffer.remaining()>=RECORD_HEADER){
+			long most = buffer.getLong();
+			long least = buffer.getLong();
+			int length = buffer.get() & 0xFF;
+			if(buffer.remaining()<length)break;
+			byte[] name = new byte[length];
+			buffer.get(name);
+			replayed.put(new UUID(most, least), new String(name, StandardCharsets.UTF_8));
+		}
+		for(Entry<UUID, String> entry : replayed.entrySet()){
+			if(entry.getValue().getBytes(StandardCharsets.UTF_8).length>maxNameLength){
+				skippedRecords++;
+				continue;
+			}
+			store.setLocale(entry.getKey(), entry.getValue());
+		}
+		store.flush();
+		journal.truncate(0);
+		journal.force(false);
+	}
+}
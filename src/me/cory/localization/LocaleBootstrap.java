@@ -0,0 +1,117 @@
+package me.cory.localization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.cory.localization.LocaleDiscovery.LocaleFile;
+
+/**
+ * Loads all locale files in parallel for the LocaleManager
+ * Files are read on a bounded pool, then everything is registered back on the main thread
+ * @author Cory Caron
+ */
+final class LocaleBootstrap {
+
+	private final LocaleManager localeMan;
+	private final CompletableFuture<LocaleManager> ready;
+
+	/**
+	 * Construct the bootstrap for the LocaleManager
+	 * @param localeMan LocaleManager to load into
+	 */
+	LocaleBootstrap(LocaleManager localeMan){
+		this.localeMan = localeMan;
+		this.ready = new CompletableFuture<>();
+	}
+
+	/**
+	 * Gets the future completed once every locale and player locale is registered
+	 * @return The readiness future
+	 */
+	CompletableFuture<LocaleManager> getReadyFuture(){
+		return ready;
+	}
+
+	/**
+	 * Starts loading
+	 * The default locale is loaded on the calling thread so lookups made before loading finishes resolve to it
+	 */
+	void start(){
+		long start = System.nanoTime();
+		Map<String, List<LocaleFile>> found = localeMan.discoverLocales(localeMan.getFormats(), true);
+		List<LocaleFile> defaultFiles = found.get(localeMan.getDefaultLocale());
+		if(defaultFiles!=null)localeMan.registerLocale(localeMan.createConfig(localeMan.getDefaultLocale(), defaultFiles));
+
+		Map<String, List<LocaleFile>> rest = new TreeMap<>(found);
+		rest.remove(localeMan.getDefaultLocale());
+		loadAll(localeMan, rest).whenComplete((configs, error) -> localeMan.getPlatform().runSync(() -> finish(configs, found, start)));
+	}
+
+	/**
+	 * Creates the configs of discovered locales in parallel on a bounded pool
+	 * A config that fails to be created is reported to the metrics and left out
+	 * @param localeMan LocaleManager to create the configs for
+	 * @param found The files of each locale
+	 * @return The future configs, in the order of the locales found
+	 */
+	static CompletableFuture<List<LocaleConfig>> loadAll(LocaleManager localeMan, Map<String, List<LocaleFile>> found){
+		if(found.isEmpty())return CompletableFuture.completedFuture(Collections.emptyList());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(found.size(), Runtime.getRuntime().availableProcessors()), new LoaderThreadFactory());
+		List<CompletableFuture<LocaleConfig>> configs = new ArrayList<>(found.size());
+		for(Entry<String, List<LocaleFile>> entry : found.entrySet()){
+			configs.add(CompletableFuture.supplyAsync(() -> localeMan.createConfig(entry.getKey(), entry.getValue()), executor).exceptionally(error -> {
+				localeMan.getMetrics().error("load", entry.getKey(), error instanceof Exception ? (Exception) error : new Exception(error));
+				return null;
+			}));
+		}
+		return CompletableFuture.allOf(configs.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+			executor.shutdown();
+			List<LocaleConfig> loaded = new ArrayList<>(configs.size());
+			for(CompletableFuture<LocaleConfig> config : configs){
+				if(config.join()!=null)loaded.add(config.join());
+			}
+			return loaded;
+		});
+	}
+
+	/**
+	 * Registers every locale that loaded successfully, loads online players and completes the readiness future
+	 * Must be called on the main thread
+	 * @param configs The loaded configs
+	 * @param found The files of each locale, to log
+	 * @param start When discovery started
+	 */
+	private void finish(List<LocaleConfig> configs, Map<String, List<LocaleFile>> found, long start){
+		for(LocaleConfig config : configs){
+			localeMan.registerLocale(config);
+		}
+		localeMan.logLoaded(found, start);
+		localeMan.loadPlayerLocales();
+		ready.complete(localeMan);
+	}
+
+	/**
+	 * Names loader threads and keeps them from holding up shutdown
+	 */
+	private static final class LoaderThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "LocaleManager-loader-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+}
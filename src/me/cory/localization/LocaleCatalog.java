@@ -0,0 +1,145 @@
+package me.cory.localization;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * A plugin's messages in the shared {@link LocaleService}, read from the "locales" folder in the plugin's data folder
+ * Keys are namespaced with the plugin's name, so plugins can use the same keys without clashing.
+ * Lookups take the plugin's own keys, such as "welcome", and resolve "myplugin:welcome" in the shared LocaleManager
+ * @author Cory Caron
+ */
+public final class LocaleCatalog {
+
+	private final LocaleService service;
+	private final JavaPlugin plugin;
+	private final String namespace;
+	private final Map<String, LocaleFormat> formats;
+	//Plugin key to the handle of the namespaced key, so lookups don't build the namespaced key each time
+	private final ConcurrentHashMap<String, MessageKey> keys;
+
+	/**
+	 * Construct the catalog of a plugin
+	 * @param service The shared service
+	 * @param plugin The plugin
+	 * @param namespace The namespace of the plugin's keys
+	 */
+	LocaleCatalog(LocaleService service, JavaPlugin plugin, String namespace){
+		this.service = service;
+		this.plugin = plugin;
+		this.namespace = namespace;
+		LinkedHashMap<String, LocaleFormat> formats = new LinkedHashMap<>();
+		formats.put(".csv", (localeName, folder, lazy) -> new NamespacedConfig(localeName, folder, plugin, namespace, false));
+		formats.put(".yml", (localeName, folder, lazy) -> new NamespacedConfig(localeName, folder, plugin, namespace, true));
+		this.formats = Collections.unmodifiableMap(formats);
+		this.keys = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Gets the plugin this catalog belongs to
+	 * @return The plugin
+	 */
+	public JavaPlugin getPlugin(){
+		return plugin;
+	}
+
+	/**
+	 * Gets the namespace of this catalog's keys, the plugin's name in lower case
+	 * @return The namespace
+	 */
+	public String getNamespace(){
+		return namespace;
+	}
+
+	/**
+	 * Gets the LocaleManager shared by every plugin, for player locales, metrics and everything else not namespaced
+	 * @return The shared LocaleManager
+	 */
+	public LocaleManager getLocaleManager(){
+		return service.getLocaleManager();
+	}
+
+	/**
+	 * Gets the handle of a key of this catalog, to look up with a single array read
+	 * @param key The key without the namespace
+	 * @return The handle of the namespaced key
+	 */
+	public MessageKey key(String key){
+		MessageKey handle = keys.get(key);
+		if(handle==null){
+			handle = MessageKey.of(namespace + LocaleService.SEPARATOR + key);
+			keys.put(key, handle);
+		}
+		return handle;
+	}
+
+	/**
+	 * Compiles a key set of this catalog, see LocaleManager#getPlayerMessages(UUID, MessageKeySet, String[])
+	 * @param keys The keys without the namespace
+	 * @return The key set of the namespaced keys
+	 */
+	public MessageKeySet keySet(String... keys){
+		String[] namespaced = new String[keys.length];
+		for(int i = 0; i < keys.length; i++){
+			namespaced[i] = namespace + LocaleService.SEPARATOR + keys[i];
+		}
+		return MessageKeySet.of(namespaced);
+	}
+
+	/**
+	 * Gets the localized message of this catalog for the specified player, see LocaleManager#getPlayerMessage(UUID, String)
+	 * @param uuid Player's UUID to check for
+	 * @param key The key without the namespace
+	 * @return The localized message in the locale the player currently has selected
+	 */
+	public String getPlayerMessage(UUID uuid, String key){
+		return service.getLocaleManager().getPlayerMessage(uuid, key(key));
+	}
+
+	/**
+	 * Formats the localized message of this catalog for the specified player, see LocaleManager#format(UUID, String, Object...)
+	 * @param uuid Player's UUID to check for
+	 * @param key The key without the namespace
+	 * @param args The arguments for the placeholders {0}, {1} and so on
+	 * @return The color translated message with placeholders replaced or null if no locale in the chain has the key
+	 */
+	public String format(UUID uuid, String key, Object... args){
+		return service.getLocaleManager().format(uuid, key(key), args);
+	}
+
+	/**
+	 * Reads this plugin's locale files again and swaps in their messages
+	 */
+	public void reload(){
+		service.load(this);
+	}
+
+	/**
+	 * Saves every locale of this catalog to the plugin's files
+	 */
+	public void save(){
+		service.save(this);
+	}
+
+	/**
+	 * Gets the folder this plugin's locale files are in
+	 * @return The "locales" subdirectory of the plugin's data folder
+	 */
+	File getLocaleFolder(){
+		return new File(plugin.getDataFolder(), "locales");
+	}
+
+	/**
+	 * Gets the formats this plugin's locale files are read with
+	 * @return The formats by extension
+	 */
+	Map<String, LocaleFormat> getFormats(){
+		return formats;
+	}
+}
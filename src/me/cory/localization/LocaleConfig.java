@@ -1,27 +1,70 @@
 package me.cory.localization;
 
+import java.io.File;
 import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Base class for a locale's messages
+ * Messages are held in an immutable snapshot that is swapped on every change,
+ * so reads are lock-free and safe from any thread
+ * The snapshot is a flat array indexed by {@link MessageKey}, so key strings are shared with every other locale
+ */
 public abstract class LocaleConfig {
 
 	private final String localeName;
-	private final HashMap<String, String> messages;
+	private final File folder;
+	private volatile MessageTable messages;
+	private HashMap<String, String> pending;
+	private final boolean lazy;
+	private volatile boolean loaded;
+	private boolean loading;
+	private volatile boolean dirty;
+	private long loadNanos;
+	private long estimatedSize;
+	private long lastUsed;
+	private volatile Exception loadError;
+	private volatile LocaleMetrics metrics;
 	
 	/**
 	 * Constructor for abstract class, to be called from any extending class
 	 * @param localeName The locale name
 	 */
 	protected LocaleConfig(String localeName){
-		this.messages = new HashMap<>();
+		this(localeName, false);
+	}
+	
+	/**
+	 * Constructor for abstract class, to be called from any extending class
+	 * A lazy config only registers its name here and loads its messages on first use
+	 * @param localeName The locale name
+	 * @param lazy True to defer loading messages until they are first needed
+	 */
+	protected LocaleConfig(String localeName, boolean lazy){
+		this(localeName, null, lazy);
+	}
+	
+	/**
+	 * Constructor for abstract class, to be called from any extending class
+	 * A lazy config only registers its name here and loads its messages on first use
+	 * @param localeName The locale name
+	 * @param folder The folder the locale file is in, or null for the default platform's locale folder
+	 * @param lazy True to defer loading messages until they are first needed
+	 */
+	protected LocaleConfig(String localeName, File folder, boolean lazy){
+		this.messages = MessageTable.EMPTY;
 		this.localeName = localeName;
-		loadMessages();
+		this.folder = folder;
+		this.lazy = lazy;
+		if(!lazy)ensureLoaded();
 	}
 	
 	/**
 	 * Gets all registered messages
-	 * @return Returns the HashMap of all registered messages
+	 * @return Returns a read-only snapshot of all registered messages
 	 */
-	public HashMap<String, String> getMessages(){
+	public Map<String, String> getMessages(){
+		ensureLoaded();
 		return messages;
 	}
 	
@@ -31,6 +74,17 @@ public abstract class LocaleConfig {
 	 * @return The localized message
 	 */
 	public String getMessage(String key){
+		ensureLoaded();
+		return messages.get(key);
+	}
+	
+	/**
+	 * Get the localized message for the specified key handle without hashing the key
+	 * @param key The key handle
+	 * @return The localized message
+	 */
+	public String getMessage(MessageKey key){
+		ensureLoaded();
 		return messages.get(key);
 	}
 	
@@ -41,7 +95,31 @@ public abstract class LocaleConfig {
 	 * @return The previous message if one exists
 	 */
 	public String setMessage(String key, String message){
-		return messages.put(key, message);
+		ensureLoaded();
+		synchronized(this){
+			if(loading)return pending.put(key, message);
+			if(lazy)dirty = true;
+			String previous = messages.get(key);
+			messages = messages.with(key, message);
+			return previous;
+		}
+	}
+	
+	/**
+	 * Set the localized messages for all of the specified keys at once
+	 * Cheaper than calling setMessage for each since the snapshot is only copied once
+	 * @param messages Map of all key:message pairs to set
+	 */
+	public void setMessages(Map<String, String> messages){
+		ensureLoaded();
+		synchronized(this){
+			if(loading){
+				pending.putAll(messages);
+				return;
+			}
+			if(lazy)dirty = true;
+			this.messages = this.messages.with(messages);
+		}
 	}
 	
 	/**
@@ -50,6 +128,7 @@ public abstract class LocaleConfig {
 	 * @return Returns true if this LocaleConfig has a message for the specified key
 	 */
 	public boolean containsKey(String key){
+		ensureLoaded();
 		return messages.containsKey(key);
 	}
 	
@@ -60,6 +139,7 @@ public abstract class LocaleConfig {
 	 * @return Returns true if this LocaleConfig has the specified message
 	 */
 	public boolean containsMessage(String message){
+		ensureLoaded();
 		return messages.containsValue(message);
 	}
 	
@@ -71,6 +151,191 @@ public abstract class LocaleConfig {
 		return localeName;
 	}
 	
+	/**
+	 * Gets the folder the locale file is in
+	 * @return The folder given on construction, or the default platform's locale folder
+	 */
+	public File getFolder(){
+		return folder==null ? LocalePlatform.getDefault().getLocaleFolder() : folder;
+	}
+	
+	/**
+	 * Checks if this config loads its messages on first use
+	 * @return True if this config is lazy
+	 */
+	public boolean isLazy(){
+		return lazy;
+	}
+	
+	/**
+	 * Checks if this config reads its messages from outside the heap on each lookup
+	 * Fallback chains including such a config are resolved in place instead of being copied into a flattened table
+	 * @return True if messages are read off heap
+	 */
+	public boolean isOffHeap(){
+		return false;
+	}
+
+	/**
+	 * Checks if the messages of this config are currently in memory
+	 * @return True if the messages are loaded
+	 */
+	public boolean isLoaded(){
+		return loaded;
+	}
+	
+	/**
+	 * Checks if messages were set at runtime since this lazy config was loaded
+	 * Dirty configs are never unloaded so runtime changes aren't lost
+	 * @return True if the messages were changed at runtime
+	 */
+	public boolean isDirty(){
+		return dirty;
+	}
+	
+	/**
+	 * Gets how long the last load of the messages took
+	 * For a lazy config this is the latency added to the first lookup
+	 * @return The load time in nanoseconds or 0 if never loaded
+	 */
+	public long getLoadNanos(){
+		return loadNanos;
+	}
+	
+	/**
+	 * Gets the estimated heap used by the messages, measured when they were last loaded
+	 * @return The estimated size in bytes or 0 if never loaded
+	 */
+	public long getEstimatedSize(){
+		return estimatedSize;
+	}
+	
+	/**
+	 * Gets the error from the last load of the messages
+	 * @return The error or null if the last load succeeded
+	 */
+	public Exception getLoadError(){
+		return loadError;
+	}
+	
+	/**
+	 * Records that loading the messages failed, to be called from loadMessages by extending classes
+	 * @param error The error that stopped the load
+	 */
+	protected void loadFailed(Exception error){
+		loadError = error;
+	}
+	
+	/**
+	 * Reports that saving the messages failed, to be called from saveMessages by extending classes
+	 * @param error The error that stopped the save
+	 */
+	protected void saveFailed(Exception error){
+		LocaleMetrics current = metrics;
+		if(current!=null)current.error("save", localeName, error);
+	}
+	
+	/**
+	 * Attaches the metrics of the LocaleManager this config is registered with, reporting the load already done if any
+	 * @param metrics The metrics
+	 */
+	synchronized void setMetrics(LocaleMetrics metrics){
+		boolean report = this.metrics==null && loaded;
+		this.metrics = metrics;
+		if(report)metrics.recordLoad(localeName, loadNanos, loadError);
+	}
+	
+	/**
+	 * Loads the messages if this config is lazy and they aren't in memory yet
+	 */
+	public void ensureLoaded(){
+		if(loaded)return;
+		synchronized(this){
+			if(loaded || loading)return;
+			loading = true;
+			loadError = null;
+			pending = new HashMap<>(messages);
+			long start = System.nanoTime();
+			try {
+				loadMessages();
+				messages = MessageTable.of(pending);
+			} finally {
+				loading = false;
+				pending = null;
+			}
+			loadNanos = System.nanoTime() - start;
+			estimatedSize = estimateSize();
+			lastUsed = System.currentTimeMillis();
+			loaded = true;
+			if(metrics!=null)metrics.recordLoad(localeName, loadNanos, loadError);
+		}
+	}
+	
+	/**
+	 * Drops the messages of a lazy config from memory, they are loaded again on next use
+	 * Does nothing for configs that aren't lazy or have unsaved runtime changes
+	 * @return True if the messages were unloaded
+	 */
+	public synchronized boolean unloadMessages(){
+		if(!lazy || !loaded || dirty)return false;
+		loaded = false;
+		messages = MessageTable.EMPTY;
+		return true;
+	}
+	
+	/**
+	 * Drops the messages from memory even if this config isn't lazy or has runtime changes, they are loaded again on next use
+	 * Used once another config holds the messages, such as a locale shared through LocaleService
+	 */
+	synchronized void releaseMessages(){
+		loaded = false;
+		dirty = false;
+		messages = MessageTable.EMPTY;
+	}
+	
+	/**
+	 * Saves messages held by another config through this one, then drops them from memory
+	 * @param messages Map of all key:message pairs to save in place of this config's own
+	 */
+	synchronized void saveAndRelease(Map<String, String> messages){
+		this.messages = MessageTable.of(messages);
+		loaded = true;
+		try {
+			saveMessages();
+		} finally {
+			releaseMessages();
+		}
+	}
+	
+	/**
+	 * Gets the last time this config was loaded or marked as used
+	 * @return The time in milliseconds
+	 */
+	long getLastUsed(){
+		return lastUsed;
+	}
+	
+	/**
+	 * Marks this config as used, for least recently used eviction
+	 */
+	void markUsed(){
+		lastUsed = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Roughly estimates the heap held by the messages
+	 * Counts the array slots of the key range the table spans and a string per message, keys are shared so they aren't counted
+	 * @return The estimated size in bytes
+	 */
+	private long estimateSize(){
+		MessageTable table = messages;
+		long size = 32 + 8L * (table.end() - table.start());
+		for(String message : messages.values()){
+			size += 40 + 2L * message.length();
+		}
+		return size;
+	}
+	
 	//Abstract methods that must be implemented by extending class
 	public abstract void loadMessages();
 	public abstract void saveMessages();
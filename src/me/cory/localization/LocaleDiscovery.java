@@ -0,0 +1,169 @@
+package me.cory.localization;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+
+/**
+ * Finds every locale file under the locales folder in one pass, dispatching each to the format registered for its extension
+ * Subfolders are scanned too, so plugins can ship their files in locales/&lt;plugin&gt;/&lt;locale&gt;.
+ * A locale in several folders is merged, and a locale in several formats in the same folder only uses the format registered last
+ * @author Cory Caron
+ */
+final class LocaleDiscovery {
+
+	//Deepest subfolder scanned, locales/a/b/c is depth 3
+	static final int MAX_DEPTH = 8;
+
+	private LocaleDiscovery(){}
+
+	/**
+	 * Scans the folder and its subfolders for locale files
+	 * A missing folder has no locales
+	 * @param root The locales folder
+	 * @param formats The formats by extension, later formats take precedence within a folder
+	 * @param metrics The metrics to report unreadable folders to
+	 * @param logIgnored True to log the files ignored for another format of the same locale
+	 * @return The files of each locale by locale name, sorted by name, each starting with the shallowest folder
+	 */
+	static Map<String, List<LocaleFile>> scan(Path root, Map<String, LocaleFormat> formats, LocaleMetrics metrics, boolean logIgnored){
+		HashMap<String, Integer> precedence = new HashMap<>();
+		for(String extension : formats.keySet()){
+			precedence.put(extension, precedence.size());
+		}
+		TreeMap<String, List<LocaleFile>> locales = new TreeMap<>();
+		scan(root, root, 0, formats, precedence, locales, metrics, logIgnored);
+		for(List<LocaleFile> files : locales.values()){
+			files.sort((a, b) -> a.depth!=b.depth ? Integer.compare(a.depth, b.depth) : a.path.compareTo(b.path));
+		}
+		return locales;
+	}
+
+	/**
+	 * Scans one folder, then its subfolders
+	 */
+	private static void scan(Path root, Path dir, int depth, Map<String, LocaleFormat> formats, Map<String, Integer> precedence, Map<String, List<LocaleFile>> locales, LocaleMetrics metrics, boolean logIgnored){
+		HashMap<String, LocaleFile> found = new HashMap<>();
+		ArrayList<Path> subfolders = new ArrayList<>();
+		try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)){
+			for(Path path : stream){
+				if(Files.isDirectory(path)){
+					if(depth<MAX_DEPTH)subfolders.add(path);
+					continue;
+				}
+				String fileName = path.getFileName().toString();
+				String extension = extension(fileName, formats);
+				if(extension==null)continue;
+				LocaleFile file = new LocaleFile(root.relativize(path), dir.toFile(), fileName.substring(0, fileName.length() - extension.length()), extension, formats.get(extension), depth);
+				LocaleFile other = found.get(file.localeName);
+				if(other!=null){
+					boolean replaces = precedence.get(extension) > precedence.get(other.extension);
+					if(logIgnored)metrics.getLogger().log(Level.INFO, "Ignoring " + (replaces ? other : file).path + ", " + (replaces ? file : other).path + " takes precedence");
+					if(!replaces)continue;
+				}
+				found.put(file.localeName, file);
+			}
+		} catch (NoSuchFileException e) {
+			return;
+		} catch (IOException e) {
+			metrics.error("scan", dir.toString(), e);
+			return;
+		}
+		for(LocaleFile file : found.values()){
+			locales.computeIfAbsent(file.localeName, name -> new ArrayList<>()).add(file);
+		}
+		Collections.sort(subfolders);
+		for(Path subfolder : subfolders){
+			scan(root, subfolder, depth + 1, formats, precedence, locales, metrics, logIgnored);
+		}
+	}
+
+	/**
+	 * Gets the registered extension a file name ends with
+	 * The longest matching extension wins, and a file named only the extension doesn't match
+	 * @param fileName The file name
+	 * @param formats The formats by extension
+	 * @return The extension including the dot or null if no format reads the file
+	 */
+	static String extension(String fileName, Map<String, LocaleFormat> formats){
+		String match = null;
+		for(String extension : formats.keySet()){
+			if(fileName.length()>extension.length() && fileName.endsWith(extension) && (match==null || extension.length()>match.length()))match = extension;
+		}
+		return match;
+	}
+
+	/**
+	 * Counts the files of every locale found
+	 * @param locales The locales found by {@link #scan(Path, Map, LocaleMetrics, boolean)}
+	 * @return The number of files
+	 */
+	static int countFiles(Map<String, List<LocaleFile>> locales){
+		int count = 0;
+		for(List<LocaleFile> files : locales.values()){
+			count += files.size();
+		}
+		return count;
+	}
+
+	/**
+	 * A locale file found by a scan
+	 */
+	static final class LocaleFile {
+
+		private final Path path;
+		private final File folder;
+		private final String localeName;
+		private final String extension;
+		private final LocaleFormat format;
+		private final int depth;
+
+		private LocaleFile(Path path, File folder, String localeName, String extension, LocaleFormat format, int depth){
+			this.path = path;
+			this.folder = folder;
+			this.localeName = localeName;
+			this.extension = extension;
+			this.format = format;
+			this.depth = depth;
+		}
+
+		/**
+		 * Creates the config for this file, recording how long the file took to read unless it is lazy
+		 * @param lazy True to defer loading messages until they are first needed
+		 * @param metrics The metrics to record the read time in
+		 * @return The new config
+		 */
+		LocaleConfig create(boolean lazy, LocaleMetrics metrics){
+			long start = System.nanoTime();
+			LocaleConfig config = format.create(localeName, folder, lazy);
+			if(!lazy)metrics.recordFileLoad(path.toString(), System.nanoTime() - start);
+			return config;
+		}
+
+		/**
+		 * Gets the folder this file is in
+		 * @return The folder
+		 */
+		File getFolder(){
+			return folder;
+		}
+
+		/**
+		 * Gets the path of this file relative to the locales folder
+		 * @return The relative path
+		 */
+		Path getPath(){
+			return path;
+		}
+	}
+}
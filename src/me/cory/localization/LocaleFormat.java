@@ -0,0 +1,21 @@
+package me.cory.localization;
+
+import java.io.File;
+
+/**
+ * Creates the LocaleConfig for a locale file format, registered by extension with LocaleManager#registerFormat(String, LocaleFormat)
+ * The constructors of the built in configs fit, such as CsvConfig::new
+ * @author Cory Caron
+ */
+@FunctionalInterface
+public interface LocaleFormat {
+
+	/**
+	 * Creates the config for a locale file
+	 * @param localeName The locale name, the file name without the extension
+	 * @param folder The folder the locale file is in
+	 * @param lazy True to defer loading messages until they are first needed
+	 * @return The new config
+	 */
+	LocaleConfig create(String localeName, File folder, boolean lazy);
+}
@@ -0,0 +1,264 @@
+package me.cory.localization;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.NumberFormat;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Plural rules and number and date formatters for a locale, cached by locale name so nothing is built on the hot path
+ * Date formatters are immutable and number formatters are kept per thread, so an instance can be shared by every thread
+ * @author Cory Caron
+ */
+public final class LocaleFormats {
+
+	private static final ConcurrentHashMap<String, LocaleFormats> CACHE = new ConcurrentHashMap<>();
+
+	/**
+	 * Formats for the root locale, used when a message is rendered without a locale
+	 */
+	public static final LocaleFormats ROOT = new LocaleFormats("", Locale.ROOT);
+
+	private final String localeName;
+	private final Locale locale;
+	private final PluralRule pluralRule;
+	private final ThreadLocal<NumberFormat> numberFormat;
+	private final DateTimeFormatter dateFormat;
+	private final DateTimeFormatter timeFormat;
+	private final DateTimeFormatter dateTimeFormat;
+
+	private LocaleFormats(String localeName, Locale locale){
+		this.localeName = localeName;
+		this.locale = locale;
+		this.pluralRule = PluralRule.forLanguage(locale.getLanguage());
+		this.numberFormat = ThreadLocal.withInitial(() -> NumberFormat.getNumberInstance(locale));
+		ZoneId zone = ZoneId.systemDefault();
+		this.dateFormat = DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM).withLocale(locale).withZone(zone);
+		this.timeFormat = DateTimeFormatter.ofLocalizedTime(FormatStyle.SHORT).withLocale(locale).withZone(zone);
+		this.dateTimeFormat = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM, FormatStyle.SHORT).withLocale(locale).withZone(zone);
+	}
+
+	/**
+	 * Gets the formats for a locale, creating them the first time the locale is used
+	 * @param localeName The locale name as returned by LocaleConfig#getLocaleName(), such as fr_ca
+	 * @return The shared formats
+	 */
+	public static LocaleFormats forLocale(String localeName){
+		LocaleFormats formats = CACHE.get(localeName);
+		if(formats!=null)return formats;
+		return CACHE.computeIfAbsent(localeName, name -> new LocaleFormats(name, toLocale(name)));
+	}
+
+	/**
+	 * Converts a locale name such as fr_ca or pt-BR to a Locale
+	 * @param localeName The locale name
+	 * @return The Locale
+	 */
+	public static Locale toLocale(String localeName){
+		String[] parts = localeName.split("[_-]", 3);
+		if(parts.length==1)return new Locale(parts[0]);
+		if(parts.length==2)return new Locale(parts[0], parts[1].toUpperCase(Locale.ROOT));
+		return new Locale(parts[0], parts[1].toUpperCase(Locale.ROOT), parts[2]);
+	}
+
+	/**
+	 * Gets the name of the locale these formats are for
+	 * @return The locale name
+	 */
+	public String getLocaleName(){
+		return localeName;
+	}
+
+	/**
+	 * Gets the Locale these formats are for
+	 * @return The Locale
+	 */
+	public Locale getLocale(){
+		return locale;
+	}
+
+	/**
+	 * Gets the plural category of a number: zero, one, two, few, many or other
+	 * Fractions and anything that isn't a number are always other
+	 * @param number The number
+	 * @return The plural category
+	 */
+	public String getPluralCategory(Object number){
+		if(!isIntegral(number))return "other";
+		return pluralRule.select(Math.abs(((Number) number).longValue()));
+	}
+
+	/**
+	 * Appends a number with the locale's digit grouping and decimal separator
+	 * @param out The builder to append to
+	 * @param number The number, anything else is appended as is
+	 */
+	public void appendNumber(StringBuilder out, Object number){
+		if(number instanceof Number)out.append(numberFormat.get().format(number));
+		else out.append(number);
+	}
+
+	/**
+	 * Appends a date in the locale's medium style
+	 * @param out The builder to append to
+	 * @param date A TemporalAccessor, Date or epoch millis, anything else or a value without the style's fields is appended as is
+	 */
+	public void appendDate(StringBuilder out, Object date){
+		appendTemporal(out, dateFormat, date);
+	}
+
+	/**
+	 * Appends a time in the locale's short style
+	 * @param out The builder to append to
+	 * @param time A TemporalAccessor, Date or epoch millis, anything else or a value without the style's fields is appended as is
+	 */
+	public void appendTime(StringBuilder out, Object time){
+		appendTemporal(out, timeFormat, time);
+	}
+
+	/**
+	 * Appends a date and time in the locale's style
+	 * @param out The builder to append to
+	 * @param dateTime A TemporalAccessor, Date or epoch millis, anything else or a value without the style's fields is appended as is
+	 */
+	public void appendDateTime(StringBuilder out, Object dateTime){
+		appendTemporal(out, dateTimeFormat, dateTime);
+	}
+
+	private static void appendTemporal(StringBuilder out, DateTimeFormatter formatter, Object value){
+		TemporalAccessor temporal;
+		if(value instanceof TemporalAccessor)temporal = (TemporalAccessor) value;
+		else if(value instanceof Date)temporal = ((Date) value).toInstant();
+		else if(value instanceof Long)temporal = Instant.ofEpochMilli((Long) value);
+		else{
+			out.append(value);
+			return;
+		}
+		int length = out.length();
+		try {
+			formatter.formatTo(temporal, out);
+		} catch (DateTimeException e) {
+			//The value doesn't have the fields the style needs, such as a LocalDate in a time placeholder
+			out.setLength(length);
+			out.append(value);
+		}
+	}
+
+	/**
+	 * Checks if a value is a whole number
+	 * @param number The value
+	 * @return True if it is a number without a fraction
+	 */
+	static boolean isIntegral(Object number){
+		if(number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte || number instanceof BigInteger)return true;
+		if(number instanceof BigDecimal)return ((BigDecimal) number).stripTrailingZeros().scale()<=0;
+		if(number instanceof Double || number instanceof Float){
+			double value = ((Number) number).doubleValue();
+			return value==Math.rint(value) && !Double.isInfinite(value);
+		}
+		return false;
+	}
+
+	/**
+	 * CLDR cardinal plural rules for whole numbers, grouped by languages that share them
+	 */
+	private enum PluralRule {
+		//Japanese, Chinese, Korean and others without plural forms
+		OTHER_ONLY {
+			@Override
+			String select(long n){
+				return "other";
+			}
+		},
+		//English, German, Spanish, Italian, Dutch, Swedish and most others
+		ONE_OTHER {
+			@Override
+			String select(long n){
+				return n==1 ? "one" : "other";
+			}
+		},
+		//French and Portuguese, where 0 is also singular
+		ZERO_ONE_OTHER {
+			@Override
+			String select(long n){
+				return n<=1 ? "one" : "other";
+			}
+		},
+		//Russian, Ukrainian and Belarusian
+		EAST_SLAVIC {
+			@Override
+			String select(long n){
+				long mod10 = n % 10;
+				long mod100 = n % 100;
+				if(mod10==1 && mod100!=11)return "one";
+				if(mod10>=2 && mod10<=4 && (mod100<12 || mod100>14))return "few";
+				return "many";
+			}
+		},
+		POLISH {
+			@Override
+			String select(long n){
+				long mod10 = n % 10;
+				long mod100 = n % 100;
+				if(n==1)return "one";
+				if(mod10>=2 && mod10<=4 && (mod100<12 || mod100>14))return "few";
+				return "many";
+			}
+		},
+		//Czech and Slovak
+		WEST_SLAVIC {
+			@Override
+			String select(long n){
+				if(n==1)return "one";
+				if(n>=2 && n<=4)return "few";
+				return "other";
+			}
+		},
+		ARABIC {
+			@Override
+			String select(long n){
+				long mod100 = n % 100;
+				if(n==0)return "zero";
+				if(n==1)return "one";
+				if(n==2)return "two";
+				if(mod100>=3 && mod100<=10)return "few";
+				if(mod100>=11)return "many";
+				return "other";
+			}
+		};
+
+		abstract String select(long n);
+
+		/**
+		 * Gets the rule for a language
+		 * @param language The ISO 639 language code
+		 * @return The plural rule, one and other if the language isn't known
+		 */
+		static PluralRule forLanguage(String language){
+			switch(language){
+			case "ja": case "zh": case "ko": case "vi": case "th": case "id": case "ms":
+				return OTHER_ONLY;
+			case "fr": case "pt":
+				return ZERO_ONE_OTHER;
+			case "ru": case "uk": case "be":
+				return EAST_SLAVIC;
+			case "pl":
+				return POLISH;
+			case "cs": case "sk":
+				return WEST_SLAVIC;
+			case "ar":
+				return ARABIC;
+			default:
+				return ONE_OTHER;
+			}
+		}
+	}
+}
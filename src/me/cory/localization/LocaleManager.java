@@ -1,33 +1,220 @@
 package me.cory.localization;
 
 import java.io.File;
-import java.io.FilenameFilter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
 
+import me.cory.localization.LocaleDiscovery.LocaleFile;
+
+/**
+ * Manages all locales and player selected locales
+ * Lookups are lock-free and safe from any thread, such as async chat handlers.
+ * Changes can be made from any thread and are published as new immutable snapshots
+ */
 public class LocaleManager {
 
-	private final HashMap<String, LocaleConfig> locales;
-	private final HashMap<UUID, String> playerLocales;
-	private String defaultLocale;
+	//Ticks between eviction passes in lazy mode
+	private static final long EVICTION_PERIOD = 1200L;
+	//How long a context preloaded on pre-login waits for the player's login before it is dropped
+	private static final long PRELOAD_TIMEOUT = 60000L;
+	//Decoded messages kept on the heap when messages are stored off heap
+	private static final int OFF_HEAP_CACHE_SIZE = 4096;
+
+	private final LocalePlatform platform;
+	private final LocaleMetrics metrics;
+	private volatile Map<String, LocaleConfig> locales;
+	private volatile Map<String, LocaleFormat> formats;
+	//Configs created from discovered files, weak so replaced configs are dropped
+	private final Set<LocaleConfig> discovered;
+	private final ConcurrentHashMap<UUID, PlayerLocaleContext> players;
+	private final ConcurrentHashMap<UUID, PlayerLocaleContext> preloaded;
+	private volatile PlayerLocaleStore store;
+	private final MessageResolver resolver;
+	private final CompletableFuture<LocaleManager> ready;
+	private final boolean lazy;
+	private final boolean offHeap;
+	private final MessageArena arena;
+	private volatile String defaultLocale;
+	private volatile long memoryBudget;
+	private volatile int broadcastBatchSize;
+	private final AtomicLong evictions;
+	private final AtomicLong joins;
+	private final AtomicLong joinNanos;
+	private final AtomicLong maxJoinNanos;
+	private final AtomicLong preloadHits;
+	private LocaleWatcher watcher;
+	private volatile LocaleSync sync;
 	
 	/**
 	 * Construct the LocaleManager instance
+	 * All locales are loaded before this returns
 	 * @param defaultLocale The default locale
 	 */
 	public LocaleManager(String defaultLocale){
+		this(defaultLocale, false);
+	}
+	
+	/**
+	 * Construct the LocaleManager instance
+	 * If async, only the default locale is loaded before this returns and the rest are loaded in parallel.
+	 * Until {@link #getReadyFuture()} completes, getPlayerMessage resolves every player to the default locale
+	 * @param defaultLocale The default locale
+	 * @param async True to load locale files in parallel off the main thread
+	 */
+	public LocaleManager(String defaultLocale, boolean async){
+		this(defaultLocale, async, false);
+	}
+	
+	/**
+	 * Construct the LocaleManager instance
+	 * If lazy, only locale names are registered here and each locale's messages are loaded on first use.
+	 * Loaded locales with no online players are evicted once they go over the memory budget, see {@link #setMemoryBudget(long)}
+	 * @param defaultLocale The default locale
+	 * @param async True to load locale files in parallel off the main thread
+	 * @param lazy True to load each locale's messages on first use
+	 */
+	public LocaleManager(String defaultLocale, boolean async, boolean lazy){
+		this(defaultLocale, async, lazy, false);
+	}
+	
+	/**
+	 * Construct the LocaleManager instance, see {@link #LocaleManager(LocalePlatform, String, boolean, boolean, boolean)}
+	 * @param defaultLocale The default locale
+	 * @param async True to load locale files in parallel off the main thread
+	 * @param lazy True to load each locale's messages on first use
+	 * @param offHeap True to keep the messages of discovered locales off heap
+	 */
+	public LocaleManager(String defaultLocale, boolean async, boolean lazy, boolean offHeap){
+		this(LocalePlatform.getDefault(), defaultLocale, async, lazy, offHeap);
+	}
+	
+	/**
+	 * Construct the LocaleManager instance on a platform, such as {@link LocalePlatform#standalone(File)} to run without a server
+	 * All locales are loaded before this returns
+	 * @param platform The platform to keep files in and schedule work on
+	 * @param defaultLocale The default locale
+	 */
+	public LocaleManager(LocalePlatform platform, String defaultLocale){
+		this(platform, defaultLocale, false, false);
+	}
+	
+	/**
+	 * Construct the LocaleManager instance on a platform, see {@link #LocaleManager(String, boolean, boolean)}
+	 * @param platform The platform to keep files in and schedule work on
+	 * @param defaultLocale The default locale
+	 * @param async True to load locale files in parallel off the main thread
+	 * @param lazy True to load each locale's messages on first use
+	 */
+	public LocaleManager(LocalePlatform platform, String defaultLocale, boolean async, boolean lazy){
+		this(platform, defaultLocale, async, lazy, false);
+	}
+	
+	/**
+	 * Construct the LocaleManager instance on a platform, see {@link #LocaleManager(String, boolean, boolean)}
+	 * If offHeap, discovered locales keep their messages UTF-8 encoded in a {@link MessageArena} shared by every locale.
+	 * Identical messages are stored once across locales and decoded on lookup, with a small cache of the messages in use,
+	 * which keeps very large catalogs out of the old generation at the cost of slower lookups
+	 * @param platform The platform to keep files in and schedule work on
+	 * @param defaultLocale The default locale
+	 * @param async True to load locale files in parallel off the main thread
+	 * @param lazy True to load each locale's messages on first use
+	 * @param offHeap True to keep the messages of discovered locales off heap
+	 */
+	public LocaleManager(LocalePlatform platform, String defaultLocale, boolean async, boolean lazy, boolean offHeap){
+		this.platform = platform;
+		this.metrics = new LocaleMetrics(platform);
 		this.defaultLocale = defaultLocale;
-		locales = new HashMap<>();
-		playerLocales = new HashMap<>();
-		registerAllCsvConfigs();
-		registerAllYamlConfigs();
-		loadPlayerLocales();
+		this.lazy = lazy;
+		this.offHeap = offHeap;
+		this.arena = offHeap ? new MessageArena(OFF_HEAP_CACHE_SIZE) : null;
+		this.memoryBudget = Long.MAX_VALUE;
+		this.broadcastBatchSize = Integer.MAX_VALUE;
+		this.evictions = new AtomicLong();
+		this.joins = new AtomicLong();
+		this.joinNanos = new AtomicLong();
+		this.maxJoinNanos = new AtomicLong();
+		this.preloadHits = new AtomicLong();
+		locales = Collections.emptyMap();
+		LinkedHashMap<String, LocaleFormat> defaults = new LinkedHashMap<>();
+		defaults.put(".csv", CsvConfig::new);
+		defaults.put(".yml", YamlConfig::new);
+		defaults.put(BundleUtil.EXTENSION, BundleConfig::new);
+		formats = Collections.unmodifiableMap(defaults);
+		discovered = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+		players = new ConcurrentHashMap<>();
+		preloaded = new ConcurrentHashMap<>();
+		resolver = new MessageResolver(players, defaultLocale, metrics);
+		store = openDefaultStore();
+		if(async){
+			LocaleBootstrap bootstrap = new LocaleBootstrap(this);
+			ready = bootstrap.getReadyFuture();
+			bootstrap.start();
+		}else{
+			registerAllConfigs();
+			loadPlayerLocales();
+			ready = CompletableFuture.completedFuture(this);
+		}
+		if(lazy){
+			platform.runRepeating(this::evictColdLocales, EVICTION_PERIOD, EVICTION_PERIOD);
+		}
+	}
+	
+	/**
+	 * Gets the platform this LocaleManager keeps its files in and schedules work on
+	 * @return The platform
+	 */
+	public LocalePlatform getPlatform(){
+		return platform;
+	}
+	
+	/**
+	 * Gets the lookup, fallback and load metrics, disabled until LocaleMetrics#setEnabled(boolean)
+	 * @return The metrics
+	 */
+	public LocaleMetrics getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * Gets the future that completes on the main thread once all locales are loaded
+	 * Already complete if this LocaleManager was not constructed async
+	 * @return The readiness future
+	 */
+	public CompletableFuture<LocaleManager> getReadyFuture(){
+		return ready;
+	}
+	
+	/**
+	 * Checks if all locales are loaded
+	 * @return True if loading has finished
+	 */
+	public boolean isReady(){
+		return ready.isDone();
 	}
 	
 	/**
@@ -42,21 +229,22 @@ public class LocaleManager {
 	 * Sets the default locale
 	 * @param defaultLocale The new default locale
 	 */
-	public void setDefaultLocale(String defaultLocale){
+	public synchronized void setDefaultLocale(String defaultLocale){
 		this.defaultLocale = defaultLocale;
+		resolver.setDefaultLocale(defaultLocale);
 	}
 	
 	/**
 	 * Get all locales registered
-	 * @return A map of all LocaleConfigs
+	 * @return A read-only snapshot of all LocaleConfigs
 	 */
-	public HashMap<String, LocaleConfig> getLocales(){
+	public Map<String, LocaleConfig> getLocales(){
 		return locales;
 	}
 	
 	/**
 	 * List the names of all registered locales
-	 * @return A set of all registered locale names
+	 * @return A read-only snapshot of all registered locale names
 	 */
 	public Set<String> listLocales(){
 		return locales.keySet();
@@ -74,6 +262,18 @@ public class LocaleManager {
 		return config.getMessage(key);
 	}
 	
+	/**
+	 * Gets the localized message by key handle
+	 * @param locale The locale to get the message
+	 * @param key The key handle
+	 * @return The localized message
+	 */
+	public String getMessage(String locale, MessageKey key){
+		LocaleConfig config = locales.get(locale);
+		if(config==null)return null;
+		return config.getMessage(key);
+	}
+	
 	/**
 	 * Sets the localized message
 	 * @param locale The locale to set the message
@@ -84,7 +284,9 @@ public class LocaleManager {
 	public String setMessage(String locale, String key, String message){
 		LocaleConfig config = locales.get(locale);
 		if(config==null)return null;
-		return config.setMessage(key, message);
+		String previous = config.setMessage(key, message);
+		resolver.messageChanged(locale, key);
+		return previous;
 	}
 	
 	/**
@@ -96,7 +298,7 @@ public class LocaleManager {
 	public boolean containsMessage(String locale, String key){
 		LocaleConfig config = locales.get(locale);
 		if(config==null)return false;
-		return config.containsMessage(key);
+		return config.containsKey(key);
 	}
 	
 	/**
@@ -110,130 +312,960 @@ public class LocaleManager {
 	
 	/**
 	 * Register the specified LocaleConfig object
+	 * If the locale is shared by plugins through {@link LocaleService}, the config only replaces the messages without a namespace
 	 * @param config LocaleConfig to register
 	 * @return The previous LocaleConfig if it was already registered
 	 */
-	public LocaleConfig registerLocale(LocaleConfig config){
-		return locales.put(config.getLocaleName(), config);
+	public synchronized LocaleConfig registerLocale(LocaleConfig config){
+		LocaleConfig current = locales.get(config.getLocaleName());
+		if(current instanceof SharedConfig && !(config instanceof SharedConfig))return replaceLocale(config.getLocaleName(), ((SharedConfig) current).withPart("", config));
+		return replaceLocale(config.getLocaleName(), config);
 	}
 	
 	/**
 	 * Unregister the specified LocaleConfig
+	 * If the locale is shared by plugins through {@link LocaleService}, only the messages without a namespace are dropped
 	 * @param localeName The locale to unregister
 	 * @return The LocaleConfig if it was registered
 	 */
-	public LocaleConfig unregisterLocale(String localeName){
-		return locales.remove(localeName);
+	public synchronized LocaleConfig unregisterLocale(String localeName){
+		LocaleConfig current = locales.get(localeName);
+		if(current instanceof SharedConfig)return replaceLocale(localeName, ((SharedConfig) current).withPart("", null));
+		return replaceLocale(localeName, null);
+	}
+	
+	/**
+	 * Swaps the registered config of a locale as is
+	 * @param localeName The locale
+	 * @param config The new config or null to unregister the locale
+	 * @return The previous LocaleConfig if it was registered
+	 */
+	synchronized LocaleConfig replaceLocale(String localeName, LocaleConfig config){
+		if(config==null && !locales.containsKey(localeName))return null;
+		if(config!=null)config.setMetrics(metrics);
+		HashMap<String, LocaleConfig> next = new HashMap<>(locales);
+		LocaleConfig previous = config==null ? next.remove(localeName) : next.put(localeName, config);
+		locales = Collections.unmodifiableMap(next);
+		resolver.localeChanged(locales, localeName);
+		return previous;
+	}
+	
+	/**
+	 * Rebuilds the lookup tables that depend on the specified locale
+	 * Should be called after a registered LocaleConfig is changed directly instead of through this class
+	 * @param localeName The locale that was changed
+	 */
+	public synchronized void refreshLocale(String localeName){
+		resolver.localeChanged(locales, localeName);
+	}
+	
+	/**
+	 * Gets the fallback chain for the specified locale
+	 * For example fr_ca falls back to fr if it is registered, then to the default locale
+	 * @param localeName The locale to check
+	 * @return The names of all locales in the chain, starting with the locale itself
+	 */
+	public List<String> getFallbackChain(String localeName){
+		return resolver.getChain(localeName);
+	}
+	
+	/**
+	 * Gets the flattened lookup table for the specified locale with its whole fallback chain applied
+	 * @param localeName The locale to get
+	 * @return A read-only map of every key resolvable in this locale or null if it isn't registered
+	 */
+	public Map<String, String> getResolvedMessages(String localeName){
+		return resolver.getFlattened(localeName);
 	}
 	
 	/**
-	 * Register all CSV formatted Locale Configs in the plugin's data folder under the "locales" subdirectory
+	 * Registers a locale file format, files ending with the extension are read with it when locales are discovered
+	 * Within a folder, a locale in several formats uses the one registered last, so compiled bundles replace the CSV or YAML they came from.
+	 * Locales are discovered on construction, call {@link #registerAllConfigs()} to read the files of a format registered after
+	 * @param extension The file extension including the dot
+	 * @param format The format
+	 */
+	public synchronized void registerFormat(String extension, LocaleFormat format){
+		LinkedHashMap<String, LocaleFormat> next = new LinkedHashMap<>(formats);
+		next.remove(extension);
+		next.put(extension, format);
+		formats = Collections.unmodifiableMap(next);
+	}
+	
+	/**
+	 * Gets the registered locale file formats
+	 * @return A read-only map of the formats by extension, from lowest to highest precedence
+	 */
+	public Map<String, LocaleFormat> getFormats(){
+		return formats;
+	}
+	
+	/**
+	 * Register all Locale Configs in any registered format in the platform's "locales" folder and its subfolders
+	 * The folder is listed once and files are read in parallel
+	 */
+	public void registerAllConfigs(){
+		registerAll(formats);
+	}
+	
+	/**
+	 * Register all CSV formatted Locale Configs in the platform's "locales" folder and its subfolders
 	 */
 	public void registerAllCsvConfigs(){
-		FilenameFilter filter = new FilenameFilter(){
-
-			@Override
-			public boolean accept(File dir, String name) {
-				return name.endsWith(".csv");
-			}
-			
-		};
-		File[] files = new File(JavaPlugin.getProvidingPlugin(LocaleManager.class).getDataFolder(), "locales").listFiles(filter);
-		for(File file : files){
-			registerLocale(new CsvConfig(file.getName().replace(".csv", "")));
-		}
+		registerAll(Collections.singletonMap(".csv", formats.get(".csv")));
 	}
 	
 	/**
-	 * Register all YAML formatted Locale Configs in the plugin's data folder under the "locales" subdirectory
+	 * Register all YAML formatted Locale Configs in the platform's "locales" folder and its subfolders
 	 */
 	public void registerAllYamlConfigs(){
-		FilenameFilter filter = new FilenameFilter(){
-
-			@Override
-			public boolean accept(File dir, String name) {
-				return name.endsWith(".yml");
-			}
-			
-		};
-		File[] files = new File(JavaPlugin.getProvidingPlugin(LocaleManager.class).getDataFolder(), "locales").listFiles(filter);
-		for(File file : files){
-			registerLocale(new YamlConfig(file.getName().replace(".yml", "")));
+		registerAll(Collections.singletonMap(".yml", formats.get(".yml")));
+	}
+	
+	/**
+	 * Register all compiled bundle Locale Configs in the platform's "locales" folder and its subfolders
+	 * Call after the CSV and YAML configs so a compiled bundle replaces the locale it was compiled from
+	 */
+	public void registerAllBundleConfigs(){
+		registerAll(Collections.singletonMap(BundleUtil.EXTENSION, formats.get(BundleUtil.EXTENSION)));
+	}
+	
+	/**
+	 * Discovers the locale files in the formats, reads them in parallel and registers them in locale name order
+	 * @param formats The formats to read
+	 */
+	private void registerAll(Map<String, LocaleFormat> formats){
+		long start = System.nanoTime();
+		Map<String, List<LocaleFile>> found = discoverLocales(formats, true);
+		for(LocaleConfig config : LocaleBootstrap.loadAll(this, found).join()){
+			registerLocale(config);
 		}
+		logLoaded(found, start);
 	}
 	
 	/**
-	 * Gets the localized message for the specified player or the default if the localized message doesnt exist in that locale
+	 * Scans the platform's locale folder and its subfolders for locale files
+	 * @param formats The formats to look for
+	 * @param logIgnored True to log the files ignored for another format of the same locale
+	 * @return The files of each locale by locale name, sorted by name
+	 */
+	Map<String, List<LocaleFile>> discoverLocales(Map<String, LocaleFormat> formats, boolean logIgnored){
+		return LocaleDiscovery.scan(platform.getLocaleFolder().toPath(), formats, metrics, logIgnored);
+	}
+	
+	/**
+	 * Creates the LocaleConfig for a discovered locale, lazy if this LocaleManager is
+	 * A locale with files in several folders gets a config merging them
+	 * @param localeName The locale name
+	 * @param files The files of the locale, starting with the shallowest folder
+	 * @return The new LocaleConfig
+	 */
+	LocaleConfig createConfig(String localeName, List<LocaleFile> files){
+		LocaleConfig config = offHeap ? new OffHeapConfig(localeName, files.get(0).getFolder(), () -> createConfig(localeName, files, true), arena, lazy) : createConfig(localeName, files, lazy);
+		discovered.add(config);
+		return config;
+	}
+	
+	/**
+	 * Creates the LocaleConfig of the files' own format for a discovered locale
+	 * @param localeName The locale name
+	 * @param files The files of the locale, starting with the shallowest folder
+	 * @param lazy True to defer loading messages until they are first needed
+	 * @return The new LocaleConfig
+	 */
+	private LocaleConfig createConfig(String localeName, List<LocaleFile> files, boolean lazy){
+		return files.size()==1 ? files.get(0).create(lazy, metrics) : new MergedConfig(localeName, files, lazy, metrics);
+	}
+	
+	/**
+	 * Checks if discovered locales keep their messages off heap, chosen on construction
+	 * @return True if messages are stored off heap
+	 */
+	public boolean isOffHeap(){
+		return offHeap;
+	}
+	
+	/**
+	 * Gets the off heap store of messages, to compare its footprint with heap storage
+	 * @return The arena or null if messages aren't stored off heap
+	 */
+	public MessageArena getMessageArena(){
+		return arena;
+	}
+	
+	/**
+	 * Checks if the registered config of a locale was created from discovered files, rather than registered directly
+	 * @param localeName The locale to check
+	 * @return True if the locale's files were discovered
+	 */
+	boolean isDiscovered(String localeName){
+		LocaleConfig config = locales.get(localeName);
+		if(config instanceof SharedConfig)config = ((SharedConfig) config).getParts().get("");
+		return config!=null && discovered.contains(config);
+	}
+	
+	/**
+	 * Logs how many locales and files were loaded and how long it took
+	 * @param found The files of each locale
+	 * @param start When discovery started
+	 */
+	void logLoaded(Map<String, List<LocaleFile>> found, long start){
+		long millis = (System.nanoTime() - start) / 1000000L;
+		platform.getLogger().log(Level.INFO, "Loaded " + found.size() + " locales from " + LocaleDiscovery.countFiles(found) + " files in " + millis + "ms");
+	}
+	
+	/**
+	 * Checks if locale messages are loaded on first use
+	 * @return True if this LocaleManager is lazy
+	 */
+	public boolean isLazy(){
+		return lazy;
+	}
+	
+	/**
+	 * Gets the memory budget for loaded lazy locales
+	 * @return The budget in estimated bytes
+	 */
+	public long getMemoryBudget(){
+		return memoryBudget;
+	}
+	
+	/**
+	 * Sets the memory budget for loaded lazy locales
+	 * Locales with no online players are evicted, least recently used first, while the loaded locales are over this budget
+	 * @param memoryBudget The budget in estimated bytes, Long.MAX_VALUE to never evict
+	 */
+	public void setMemoryBudget(long memoryBudget){
+		this.memoryBudget = memoryBudget;
+	}
+	
+	/**
+	 * Evicts loaded lazy locales that no online player is using until the loaded locales fit the memory budget
+	 * Runs periodically in lazy mode, but can be called at any time from the main thread
+	 * @return The number of locales evicted
+	 */
+	public synchronized int evictColdLocales(){
+		HashSet<String> inUse = new HashSet<>(getFallbackChain(defaultLocale));
+		for(UUID uuid : platform.getOnlinePlayers()){
+			PlayerLocaleContext context = players.get(uuid);
+			if(context!=null && context.getLocale()!=null)inUse.addAll(getFallbackChain(context.getLocale()));
+		}
+		ArrayList<LocaleConfig> cold = new ArrayList<>();
+		long loadedBytes = 0;
+		for(LocaleConfig config : locales.values()){
+			if(!config.isLazy() || !config.isLoaded())continue;
+			loadedBytes += config.getEstimatedSize();
+			if(inUse.contains(config.getLocaleName()))config.markUsed();
+			else cold.add(config);
+		}
+		cold.sort(Comparator.comparingLong(LocaleConfig::getLastUsed));
+		int evicted = 0;
+		for(LocaleConfig config : cold){
+			if(loadedBytes<=memoryBudget)break;
+			if(!config.unloadMessages())continue;
+			resolver.localeEvicted(config.getLocaleName());
+			loadedBytes -= config.getEstimatedSize();
+			evicted++;
+		}
+		evictions.addAndGet(evicted);
+		return evicted;
+	}
+	
+	/**
+	 * Gets the estimated heap held by the messages of all loaded locales
+	 * @return The estimated size in bytes
+	 */
+	public long getLoadedBytes(){
+		long bytes = 0;
+		for(LocaleConfig config : locales.values()){
+			if(config.isLoaded())bytes += config.getEstimatedSize();
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Gets the estimated heap saved by lazy locales that are registered but not loaded
+	 * Locales that were never loaded aren't counted since their size isn't known yet
+	 * @return The estimated size in bytes
+	 */
+	public long getUnloadedBytes(){
+		long bytes = 0;
+		for(LocaleConfig config : locales.values()){
+			if(!config.isLoaded())bytes += config.getEstimatedSize();
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Gets the number of locales evicted since this LocaleManager was constructed
+	 * @return The eviction count
+	 */
+	public long getEvictionCount(){
+		return evictions.get();
+	}
+	
+	/**
+	 * Saves a locale's messages to its file, timing the save in the metrics
+	 * Failures are reported to the metrics
+	 * @param localeName The locale to save
+	 * @return True if the locale is registered
+	 */
+	public boolean saveLocale(String localeName){
+		LocaleConfig config = locales.get(localeName);
+		if(config==null)return false;
+		long start = System.nanoTime();
+		config.saveMessages();
+		metrics.recordSave(System.nanoTime() - start);
+		return true;
+	}
+	
+	/**
+	 * Saves the messages of every registered locale to their files, see {@link #saveLocale(String)}
+	 */
+	public void saveLocales(){
+		for(String localeName : locales.keySet()){
+			saveLocale(localeName);
+		}
+	}
+	
+	/**
+	 * Gets the latency of the last load of a locale's messages
+	 * For lazy locales this is the time added to the first lookup after registering or eviction
+	 * @param localeName The locale to check
+	 * @return The load time in nanoseconds or -1 if the locale isn't registered
+	 */
+	public long getLoadNanos(String localeName){
+		LocaleConfig config = locales.get(localeName);
+		if(config==null)return -1;
+		return config.getLoadNanos();
+	}
+	
+	/**
+	 * Gets the localized message for the specified player, falling back through the locale chain (fr_ca -> fr -> default) if it doesnt exist in that locale
 	 * This is the main method that should be used to retrieve messages
 	 * @param uuid Player's UUID to check for
 	 * @param key The key to the message to retrieve
 	 * @return The localized message in the locale the player currently has selected
 	 */
 	public String getPlayerMessage(UUID uuid, String key){
-		if(!containsLocale(playerLocales.get(uuid)))return getMessage(defaultLocale, key);
-		else if(containsMessage(playerLocales.get(uuid), key))return getMessage(playerLocales.get(uuid), key);
-		else return getMessage(defaultLocale, key);
+		return resolver.resolve(uuid, key);
+	}
+	
+	/**
+	 * Gets the localized message for the specified player by key handle, falling back through the locale chain like getPlayerMessage(UUID, String)
+	 * Resolves with a single array read, get the handle once with MessageKey#of(String) and reuse it
+	 * @param uuid Player's UUID to check for
+	 * @param key The key handle to the message to retrieve
+	 * @return The localized message in the locale the player currently has selected
+	 */
+	public String getPlayerMessage(UUID uuid, MessageKey key){
+		return resolver.resolve(uuid, key);
+	}
+	
+	/**
+	 * Gets the localized messages of several keys for the specified player, such as the lines of a scoreboard
+	 * The player's locale and fallback chain are only resolved once for the whole batch
+	 * @param uuid Player's UUID to check for
+	 * @param keys The keys to the messages to retrieve
+	 * @param messages The array to fill, at least as long as keys
+	 * @return The filled array with the messages in key order, null where no locale in the chain has the key
+	 */
+	public String[] getPlayerMessages(UUID uuid, String[] keys, String[] messages){
+		resolver.resolveAll(uuid, Arrays.asList(keys), messages);
+		return messages;
+	}
+	
+	/**
+	 * Gets the localized messages of several keys for the specified player, see getPlayerMessages(UUID, String[], String[])
+	 * @param uuid Player's UUID to check for
+	 * @param keys The keys to the messages to retrieve
+	 * @param messages The array to fill, at least as long as keys
+	 * @return The filled array with the messages in key order, null where no locale in the chain has the key
+	 */
+	public String[] getPlayerMessages(UUID uuid, List<String> keys, String[] messages){
+		resolver.resolveAll(uuid, keys, messages);
+		return messages;
+	}
+	
+	/**
+	 * Gets the localized messages of several keys for the specified player by key handle, see getPlayerMessages(UUID, String[], String[])
+	 * @param uuid Player's UUID to check for
+	 * @param keys The key handles to the messages to retrieve
+	 * @param messages The array to fill, at least as long as keys
+	 * @return The filled array with the messages in key order, null where no locale in the chain has the key
+	 */
+	public String[] getPlayerMessages(UUID uuid, MessageKey[] keys, String[] messages){
+		resolver.resolveAll(uuid, keys, messages);
+		return messages;
+	}
+	
+	/**
+	 * Gets the localized messages of a precompiled key set for the specified player
+	 * The messages are cached per locale and only resolved again after that locale or its fallback chain changes,
+	 * so this is a single array copy for every player in the same locale
+	 * @param uuid Player's UUID to check for
+	 * @param keys The key set, compiled once with MessageKeySet#of(String...)
+	 * @param messages The array to fill, at least as long as the key set
+	 * @return The filled array with the messages in key order, null where no locale in the chain has the key
+	 */
+	public String[] getPlayerMessages(UUID uuid, MessageKeySet keys, String[] messages){
+		resolver.resolveAll(uuid, keys, messages);
+		return messages;
+	}
+	
+	/**
+	 * Formats the localized message for the specified player, falling back through the locale chain like getPlayerMessage(UUID, String)
+	 * Messages are compiled once on first use, so this only appends color translated text and arguments into a reused StringBuilder
+	 * Number, date and plural placeholders are formatted with cached formatters for the locale the message came from,
+	 * which is a fallback locale when the player's own locale doesn't have the key
+	 * @param uuid Player's UUID to check for
+	 * @param key The key to the message to retrieve
+	 * @param args The arguments for the placeholders {0}, {1} and so on
+	 * @return The color translated message with placeholders replaced or null if no locale in the chain has the key
+	 */
+	public String format(UUID uuid, String key, Object... args){
+		MessageKey handle = MessageKey.find(key);
+		return handle==null ? null : format(uuid, handle, args);
+	}
+	
+	/**
+	 * Formats the localized message for the specified player by key handle
+	 * @param uuid Player's UUID to check for
+	 * @param key The key handle to the message to retrieve
+	 * @param args The arguments for the placeholders {0}, {1} and so on
+	 * @return The color translated message with placeholders replaced or null if no locale in the chain has the key
+	 */
+	public String format(UUID uuid, MessageKey key, Object... args){
+		MessageTemplate template = resolver.resolveTemplate(uuid, key);
+		return template==null ? null : template.render(getFormats(uuid, key, template), args);
+	}
+	
+	/**
+	 * Formats the localized message for the specified player with named placeholders such as {player}
+	 * @param uuid Player's UUID to check for
+	 * @param key The key to the message to retrieve
+	 * @param args The arguments by placeholder name
+	 * @return The color translated message with placeholders replaced or null if no locale in the chain has the key
+	 */
+	public String format(UUID uuid, String key, Map<String, ?> args){
+		MessageKey handle = MessageKey.find(key);
+		MessageTemplate template = handle==null ? null : resolver.resolveTemplate(uuid, handle);
+		return template==null ? null : template.render(getFormats(uuid, handle, template), args);
+	}
+	
+	/**
+	 * Gets the compiled message for the specified player, to render into a StringBuilder of your own with getPlayerFormats(UUID, MessageKey)
+	 * @param uuid Player's UUID to check for
+	 * @param key The key handle to the message to retrieve
+	 * @return The compiled message or null if no locale in the chain has the key
+	 */
+	public MessageTemplate getPlayerTemplate(UUID uuid, MessageKey key){
+		return resolver.resolveTemplate(uuid, key);
+	}
+	
+	/**
+	 * Sends a message to every online player in their own locale
+	 * The message is resolved and rendered once per locale in use rather than once per player
+	 * Must be called on the main thread
+	 * @param key The key to the message to send
+	 * @param args The arguments for the placeholders {0}, {1} and so on
+	 * @return The number of players the message is being sent to
+	 */
+	public int broadcast(String key, Object... args){
+		MessageKey handle = MessageKey.find(key);
+		return handle==null ? 0 : broadcast(Bukkit.getOnlinePlayers(), handle, args);
+	}
+	
+	/**
+	 * Sends a message to every online player in their own locale by key handle
+	 * Must be called on the main thread
+	 * @param key The key handle to the message to send
+	 * @param args The arguments for the placeholders {0}, {1} and so on
+	 * @return The number of players the message is being sent to
+	 */
+	public int broadcast(MessageKey key, Object... args){
+		return broadcast(Bukkit.getOnlinePlayers(), key, args);
+	}
+	
+	/**
+	 * Sends a message to each of the recipients in their own locale, rendering it once per locale
+	 * If there are more recipients than the broadcast batch size, the rest are sent over the following ticks
+	 * Must be called on the main thread
+	 * @param recipients The players to send to
+	 * @param key The key handle to the message to send
+	 * @param args The arguments for the placeholders {0}, {1} and so on
+	 * @return The number of players the message is being sent to, players whose locale chain doesn't have the key are skipped
+	 */
+	public int broadcast(Collection<? extends Player> recipients, MessageKey key, Object... args){
+		return Broadcaster.broadcast(platform, resolver, recipients, key, args, broadcastBatchSize);
+	}
+	
+	/**
+	 * Gets the most players a broadcast sends to per tick
+	 * @return The batch size
+	 */
+	public int getBroadcastBatchSize(){
+		return broadcastBatchSize;
+	}
+	
+	/**
+	 * Sets the most players a broadcast sends to per tick, the rest are sent over the following ticks
+	 * @param broadcastBatchSize The batch size, Integer.MAX_VALUE to always send in the same tick
+	 */
+	public void setBroadcastBatchSize(int broadcastBatchSize){
+		this.broadcastBatchSize = broadcastBatchSize;
+	}
+	
+	/**
+	 * Gets the cached plural rules and formatters for the locale the specified player's messages resolve in
+	 * Use getPlayerFormats(UUID, MessageKey) to render a message, which may have come from a fallback locale
+	 * @param uuid Player's UUID to check for
+	 * @return The shared formats
+	 */
+	public LocaleFormats getPlayerFormats(UUID uuid){
+		return LocaleFormats.forLocale(resolver.getResolvedLocale(uuid));
+	}
+	
+	/**
+	 * Gets the cached plural rules and formatters to render a message with for the specified player
+	 * @param uuid Player's UUID to check for
+	 * @param key The key handle to the message
+	 * @return The formats of the locale in the player's chain the message came from
+	 */
+	public LocaleFormats getPlayerFormats(UUID uuid, MessageKey key){
+		return resolver.getFormats(uuid, key);
+	}
+	
+	/**
+	 * Gets the formats to render a template with, skipping the lookup if the template has nothing localized
+	 * @param uuid Player's UUID
+	 * @param key The key handle the template was resolved from
+	 * @param template The template to render
+	 * @return The formats
+	 */
+	private LocaleFormats getFormats(UUID uuid, MessageKey key, MessageTemplate template){
+		return template.isLocalized() ? resolver.getFormats(uuid, key) : LocaleFormats.ROOT;
 	}
 	
 	/**
 	 * Gets a players currently selected locale
+	 * Online players are answered from memory, anyone else is read from the player locale store
 	 * @param uuid Player's UUID to check
 	 * @return The name of the currently selected locale
 	 */
 	public String getPlayerLocale(UUID uuid){
-		return playerLocales.get(uuid);
+		PlayerLocaleContext context = players.get(uuid);
+		if(context!=null)return context.getLocale();
+		try {
+			return store.getLocale(uuid);
+		} catch (IOException e) {
+			metrics.error("read the locale of", uuid.toString(), e);
+			return null;
+		}
 	}
 	
 	/**
 	 * Sets a players currently selected locale
+	 * The selection is written to the player locale store, and kept in memory if the player is loaded
+	 * While syncing, a change is also sent to the other servers
 	 * @param uuid Player's UUID
 	 * @param localeName The name of the locale
 	 * @return The previous locale
 	 */
 	public String setPlayerLocale(UUID uuid, String localeName){
-		return playerLocales.put(uuid, localeName);
+		String previous = getPlayerLocale(uuid);
+		applyPlayerLocale(uuid, localeName);
+		LocaleSync sync = this.sync;
+		if(sync!=null)sync.publish(uuid, localeName);
+		return previous;
+	}
+	
+	/**
+	 * Sets a players currently selected locale without sending it to other servers, used for changes received from them
+	 * @param uuid Player's UUID
+	 * @param localeName The name of the locale
+	 */
+	void applyPlayerLocale(UUID uuid, String localeName){
+		PlayerLocaleContext context = players.get(uuid);
+		if(context!=null)context.setLocale(localeName);
+		context = preloaded.get(uuid);
+		if(context!=null)context.setLocale(localeName);
+		try {
+			store.setLocale(uuid, localeName);
+		} catch (IOException e) {
+			metrics.error("write the locale of", uuid.toString(), e);
+		}
+	}
+	
+	/**
+	 * Sets the locale of a loaded player who hasn't selected one, such as their client locale, in memory only
+	 * Nothing is stored, so the player keeps following their client until a locale is selected with {@link #setPlayerLocale(UUID, String)}
+	 * @param uuid Player's UUID
+	 * @param localeName The name of the locale
+	 */
+	void assignPlayerLocale(UUID uuid, String localeName){
+		PlayerLocaleContext context = players.get(uuid);
+		if(context!=null)context.assignLocale(localeName);
+		context = preloaded.get(uuid);
+		if(context!=null)context.assignLocale(localeName);
 	}
 	
 	/**
 	 * Checks if the player has a locale selected currently
-	 * Should only be false if the player has never logged in before
+	 * False for offline players who have never selected a locale, online players always have one
 	 * @param uuid Player's UUID to check
 	 * @return True if the player has a locale selected
 	 */
 	public boolean containsPlayer(UUID uuid){
-		return playerLocales.containsKey(uuid);
+		return getPlayerLocale(uuid)!=null;
 	}
 	
 	/**
-	 * Load all player selected locales from file
+	 * Loads a player's selected locale from the store into memory and creates their context
+	 * Called on login, the player stays loaded until {@link #unloadPlayer(UUID)}
+	 * If the player was preloaded on pre-login, the preloaded context is attached without any I/O
+	 * @param uuid Player's UUID
+	 * @return The player's selected locale or null if they have none yet
 	 */
-	public void loadPlayerLocales(){
-		FileConfiguration config;
+	public String loadPlayer(UUID uuid){
+		PlayerLocaleContext context = preloaded.remove(uuid);
+		if(context!=null){
+			preloadHits.incrementAndGet();
+			players.put(uuid, context);
+			return context.getLocale();
+		}
+		String localeName;
+		try {
+			localeName = store.getLocale(uuid);
+		} catch (IOException e) {
+			metrics.error("read the locale of", uuid.toString(), e);
+			localeName = null;
+		}
+		players.put(uuid, new PlayerLocaleContext(uuid, localeName, resolver));
+		return localeName;
+	}
+	
+	/**
+	 * Drops a player's selected locale and context from memory, called on logout
+	 * The selection stays in the player locale store
+	 * @param uuid Player's UUID
+	 */
+	public void unloadPlayer(UUID uuid){
+		players.remove(uuid);
+		preloaded.remove(uuid);
+	}
+	
+	/**
+	 * Reads a player's selected locale from the store and resolves their table ahead of login, loading any lazy locale they need
+	 * Called off the main thread on AsyncPlayerPreLoginEvent, so {@link #loadPlayer(UUID)} on login only attaches the result
+	 * Preloads that never reach login are dropped after a minute
+	 * @param uuid Player's UUID
+	 */
+	public void preloadPlayer(UUID uuid){
+		long now = System.currentTimeMillis();
+		preloaded.values().removeIf(context -> now - context.getCreated() > PRELOAD_TIMEOUT);
+		String localeName;
+		try {
+			localeName = store.getLocale(uuid);
+		} catch (IOException e) {
+			metrics.error("read the locale of", uuid.toString(), e);
+			return;
+		}
+		PlayerLocaleContext context = new PlayerLocaleContext(uuid, localeName, resolver);
+		context.warm();
+		preloaded.put(uuid, context);
+	}
+	
+	/**
+	 * Drops a player preloaded on pre-login, called if the login was denied
+	 * @param uuid Player's UUID
+	 */
+	public void discardPreloaded(UUID uuid){
+		preloaded.remove(uuid);
+	}
+	
+	/**
+	 * Records how long a player's login took on the main thread
+	 * @param nanos The main thread time in nanoseconds
+	 */
+	void recordJoin(long nanos){
+		joins.incrementAndGet();
+		joinNanos.addAndGet(nanos);
+		maxJoinNanos.accumulateAndGet(nanos, Math::max);
+	}
+	
+	/**
+	 * Gets the number of logins handled by the login event
+	 * @return The login count
+	 */
+	public long getJoinCount(){
+		return joins.get();
+	}
+	
+	/**
+	 * Gets the average main thread time the login event spent loading a player
+	 * @return The average time in nanoseconds or 0 if nobody logged in yet
+	 */
+	public long getAverageJoinNanos(){
+		long count = joins.get();
+		return count==0 ? 0 : joinNanos.get() / count;
+	}
+	
+	/**
+	 * Gets the longest main thread time the login event spent loading a player
+	 * @return The longest time in nanoseconds
+	 */
+	public long getMaxJoinNanos(){
+		return maxJoinNanos.get();
+	}
+	
+	/**
+	 * Gets the number of logins that attached a context preloaded on pre-login instead of reading the store on the main thread
+	 * @return The preload hit count
+	 */
+	public long getPreloadHits(){
+		return preloadHits.get();
+	}
+	
+	/**
+	 * Gets the context of a loaded player, which caches their resolved lookup table
+	 * Keep it while the player is online and look messages up through it to skip the UUID map entirely
+	 * @param uuid Player's UUID
+	 * @return The player's context or null if the player isn't loaded
+	 */
+	public PlayerLocaleContext getPlayerContext(UUID uuid){
+		return players.get(uuid);
+	}
+	
+	/**
+	 * Checks if a player's selected locale is in memory
+	 * @param uuid Player's UUID
+	 * @return True if the player is loaded
+	 */
+	public boolean isPlayerLoaded(UUID uuid){
+		return players.containsKey(uuid);
+	}
+	
+	/**
+	 * Gets the store player selected locales are persisted to
+	 * @return The player locale store
+	 */
+	public PlayerLocaleStore getPlayerLocaleStore(){
+		return store;
+	}
+	
+	/**
+	 * Replaces the store player selected locales are persisted to and reloads all online players from it
+	 * The previous store is flushed and closed
+	 * @param store The new player locale store
+	 */
+	public void setPlayerLocaleStore(PlayerLocaleStore store){
+		PlayerLocaleStore previous = this.store;
+		savePlayerLocales();
+		this.store = store;
+		players.clear();
+		loadPlayerLocales();
 		try {
-			config = YamlUtil.getConfig("player-locales");
+			previous.close();
 		} catch (IOException e) {
-			//LOG IO ERROR MESSAGE HERE
+			metrics.error("close", "player locales", e);
 			return;
 		}
-		for(String string : config.getKeys(false)){
-			playerLocales.put(UUID.fromString(string), config.getString(string));
+	}
+	
+	/**
+	 * Load the selected locales of all online players from the player locale store
+	 * Only needed if players are already online when the LocaleManager is constructed, such as after a reload
+	 */
+	public void loadPlayerLocales(){
+		for(UUID uuid : platform.getOnlinePlayers()){
+			loadPlayer(uuid);
 		}
 	}
-
 	
 	/**
-	 * Save all player selected locales to file
+	 * Flush all player selected locales to disk
+	 * With the default store this writes any pending journal entries and compacts them into player-locales.dat
 	 */
 	public void savePlayerLocales(){
 		try {
-			FileConfiguration config = YamlUtil.getConfig("player-locales");
-			for(Entry<UUID, String> entry : playerLocales.entrySet()){
-				config.set(entry.getKey().toString(), entry.getValue());
-			}
-			YamlUtil.saveConfig(config, "player-locales");
+			store.flush();
 		} catch (IOException e) {
-			//LOG IO ERROR MESSAGE HERE
+			metrics.error("flush", "player locales", e);
 			return;
 		}
 	}
+	
+	/**
+	 * Starts watching the "locales" subdirectory and hot reloading locale files when they change
+	 * Does nothing if already watching
+	 * @param debounceMillis How long a file must go without changes before it is reloaded
+	 * @return The watcher, which exposes reload counts and timings
+	 * @throws IOException If unable to watch the folder
+	 */
+	public synchronized LocaleWatcher startWatching(long debounceMillis) throws IOException{
+		if(watcher!=null)return watcher;
+		watcher = new LocaleWatcher(this, platform.getLocaleFolder().toPath(), debounceMillis);
+		watcher.start();
+		return watcher;
+	}
+	
+	/**
+	 * Stops watching locale files
+	 */
+	public synchronized void stopWatching(){
+		if(watcher==null)return;
+		watcher.stop();
+		watcher = null;
+	}
+	
+	/**
+	 * Gets the watcher hot reloading locale files
+	 * @return The watcher or null if not watching
+	 */
+	public synchronized LocaleWatcher getWatcher(){
+		return watcher;
+	}
+	
+	/**
+	 * Starts syncing player locale selections with other servers through a transport, see {@link LocaleSync}
+	 * Does nothing if already syncing
+	 * @param transport The transport to the other servers, such as a {@link DatagramSyncTransport}
+	 * @param flushMillis Milliseconds between sending batches of changes
+	 * @return The sync, which exposes change and batch counts
+	 * @throws IOException If unable to open the transport
+	 */
+	public synchronized LocaleSync startSync(LocaleSyncTransport transport, long flushMillis) throws IOException{
+		if(sync!=null)return sync;
+		LocaleSync started = new LocaleSync(this, transport, flushMillis);
+		started.start();
+		sync = started;
+		return started;
+	}
+	
+	/**
+	 * Sends any queued changes and stops syncing player locale selections
+	 */
+	public synchronized void stopSync(){
+		if(sync==null)return;
+		sync.stop();
+		sync = null;
+	}
+	
+	/**
+	 * Gets the sync of player locale selections with other servers
+	 * @return The sync or null if not syncing
+	 */
+	public LocaleSync getSync(){
+		return sync;
+	}
+	
+	/**
+	 * Stops watching locale files and syncing, then flushes and closes the player locale store, should be called on disable
+	 * This LocaleManager can't be used afterwards
+	 */
+	public void shutdown(){
+		stopWatching();
+		stopSync();
+		try {
+			store.close();
+		} catch (IOException e) {
+			metrics.error("close", "player locales", e);
+			return;
+		}
+	}
+	
+	/**
+	 * Imports every entry of the old player-locales.yml into a new store file, then renames the YAML file to player-locales.yml.old
+	 * The store is built in a temp file and moved into place once complete, so an import that fails partway is started over on next start
+	 * Entries with locale names too long for the store are skipped and logged
+	 * @param legacy The old YAML file
+	 * @param file The store file to create
+	 * @throws IOException If unable to write the store
+	 */
+	private void importLegacyStore(File legacy, File file) throws IOException{
+		Path temp = new File(file.getPath() + ".tmp").toPath();
+		Files.deleteIfExists(temp);
+		IndexedPlayerLocaleStore imported = new IndexedPlayerLocaleStore(temp.toFile());
+		try {
+			for(Entry<UUID, String> entry : new YamlPlayerLocaleStore(legacy).getEntries().entrySet()){
+				if(entry.getValue()==null)continue;
+				if(entry.getValue().getBytes(StandardCharsets.UTF_8).length>IndexedPlayerLocaleStore.MAX_NAME_LENGTH){
+					platform.getLogger().warning("Skipping the locale of " + entry.getKey() + " in " + legacy.getName() + ", " + entry.getValue() + " is longer than " + IndexedPlayerLocaleStore.MAX_NAME_LENGTH + " bytes");
+					continue;
+				}
+				imported.setLocale(entry.getKey(), entry.getValue());
+			}
+		} finally {
+			imported.close();
+		}
+		try {
+			Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, file.toPath());
+		}
+		if(legacy.getName().equals("player-locales.yml"))legacy.renameTo(new File(legacy.getParentFile(), "player-locales.yml.old"));
+	}
+	
+	/**
+	 * Opens the default player locale store, player-locales.dat in the platform's data folder behind the player-locales.journal write-behind journal
+	 * If only the old player-locales.yml exists, every entry in it is imported and the YAML file is renamed to player-locales.yml.old.
+	 * If the import fails the YAML file is used as is until it succeeds, and a player-locales.dat that can't be opened is rebuilt
+	 * @return The opened store
+	 * @throws IllegalStateException If the store can't be opened or rebuilt
+	 */
+	private PlayerLocaleStore openDefaultStore(){
+		File dataFolder = platform.getDataFolder();
+		File file = new File(dataFolder, "player-locales.dat");
+		File legacy = new File(dataFolder, "player-locales.yml");
+		if(!file.exists() && legacy.isFile()){
+			try {
+				importLegacyStore(legacy, file);
+			} catch (IOException e) {
+				//Nothing was renamed, so the YAML file still has every selection
+				metrics.error("import", legacy.getName(), e);
+				return new YamlPlayerLocaleStore(legacy);
+			}
+		}
+		IndexedPlayerLocaleStore indexed;
+		try {
+			indexed = new IndexedPlayerLocaleStore(file);
+		} catch (IOException e) {
+			metrics.error("open", file.getName(), e);
+			indexed = rebuildStore(file);
+		}
+		try {
+			JournaledPlayerLocaleStore journaled = new JournaledPlayerLocaleStore(indexed, new File(dataFolder, "player-locales.journal"));
+			journaled.setErrorHandler(e -> metrics.error("write", "player-locales.journal", e));
+			if(journaled.getSkippedRecords()>0)platform.getLogger().warning("Skipped " + journaled.getSkippedRecords() + " records in player-locales.journal with locale names longer than " + journaled.getMaxNameLength() + " bytes");
+			return journaled;
+		} catch (IOException e) {
+			try {
+				indexed.close();
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw new IllegalStateException("Unable to open player-locales.journal", e);
+		}
+	}
+
+	/**
+	 * Moves a player locale store that can't be opened aside and creates a new one, importing player-locales.yml.old into it if it exists
+	 * Changes still in player-locales.journal are replayed into the new store when the journal is opened
+	 * @param file The store file
+	 * @return The new store
+	 * @throws IllegalStateException If unable to move the file or create the new store
+	 */
+	private IndexedPlayerLocaleStore rebuildStore(File file){
+		File corrupt = new File(file.getParentFile(), file.getName() + ".corrupt-" + System.currentTimeMillis());
+		try {
+			Files.move(file.toPath(), corrupt.toPath());
+			platform.getLogger().severe("Moved " + file.getName() + " to " + corrupt.getName() + " and rebuilt it, selections only in the moved file are lost");
+			File backup = new File(file.getParentFile(), "player-locales.yml.old");
+			if(backup.isFile())importLegacyStore(backup, file);
+			return new IndexedPlayerLocaleStore(file);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to open or rebuild " + file, e);
+		}
+	}
 }
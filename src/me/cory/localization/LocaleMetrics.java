@@ -0,0 +1,532 @@
+package me.cory.localization;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Lookup, fallback and load statistics of a LocaleManager
+ * Counters are striped LongAdders so lookups from many threads don't contend, and while disabled a lookup only pays for one flag check
+ * Errors are always counted, logged and passed to every sink, even while disabled
+ * Read it with {@link #snapshot()}, export it with {@link #addSink(MetricsSink, long)} or {@link #registerMBean(String)}
+ * @author Cory Caron
+ */
+public final class LocaleMetrics implements LocaleMetricsMXBean {
+
+	//Distinct missing keys tracked per locale, further keys are only counted
+	private static final int MAX_MISSING_KEYS = 1000;
+
+	private final LocalePlatform platform;
+	private final CopyOnWriteArrayList<MetricsSink> sinks;
+	private volatile boolean enabled;
+	private final LongAdder lookups;
+	private final LongAdder misses;
+	private final LongAdder fallbacks;
+	private final ConcurrentHashMap<String, LongAdder> missesByLocale;
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, LongAdder>> missingKeys;
+	private final Timer loads;
+	private final Timer saves;
+	private final ConcurrentHashMap<String, Long> fileLoads;
+	private final LongAdder errors;
+	private volatile String lastError;
+
+	/**
+	 * Construct the metrics of a LocaleManager, disabled until {@link #setEnabled(boolean)}
+	 * @param platform The platform to log errors and schedule sinks on
+	 */
+	LocaleMetrics(LocalePlatform platform){
+		this.platform = platform;
+		this.sinks = new CopyOnWriteArrayList<>();
+		this.lookups = new LongAdder();
+		this.misses = new LongAdder();
+		this.fallbacks = new LongAdder();
+		this.missesByLocale = new ConcurrentHashMap<>();
+		this.missingKeys = new ConcurrentHashMap<>();
+		this.loads = new Timer();
+		this.saves = new Timer();
+		this.fileLoads = new ConcurrentHashMap<>();
+		this.errors = new LongAdder();
+	}
+
+	@Override
+	public boolean isEnabled(){
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled){
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Records a lookup that found its message
+	 * @param fallback True if the message came from a locale other than the one the player selected
+	 */
+	void recordHit(boolean fallback){
+		lookups.increment();
+		if(fallback)fallbacks.increment();
+	}
+
+	/**
+	 * Records a lookup that no locale in the chain had a message for
+	 * @param localeName The locale the lookup resolved in
+	 * @param key The missing key
+	 */
+	void recordMiss(String localeName, String key){
+		lookups.increment();
+		misses.increment();
+		missesByLocale.computeIfAbsent(localeName, name -> new LongAdder()).increment();
+		ConcurrentHashMap<String, LongAdder> keys = missingKeys.computeIfAbsent(localeName, name -> new ConcurrentHashMap<>());
+		LongAdder count = keys.get(key);
+		if(count==null){
+			if(keys.size()>=MAX_MISSING_KEYS)return;
+			count = keys.computeIfAbsent(key, name -> new LongAdder());
+		}
+		count.increment();
+	}
+
+	/**
+	 * Records a load of a locale's messages, and its error if it failed
+	 * @param localeName The locale
+	 * @param nanos How long the load took
+	 * @param error The error that stopped the load or null if it succeeded
+	 */
+	void recordLoad(String localeName, long nanos, Exception error){
+		if(error!=null)error("load", localeName, error);
+		if(enabled)loads.record(nanos);
+	}
+
+	/**
+	 * Records how long a locale file took to read when it was discovered
+	 * Always recorded, since discovery happens before metrics can be enabled
+	 * @param path The file path relative to the locales folder
+	 * @param nanos How long the file took to read
+	 */
+	void recordFileLoad(String path, long nanos){
+		fileLoads.put(path, nanos);
+	}
+
+	/**
+	 * Records a save of a locale's messages
+	 * @param nanos How long the save took
+	 */
+	void recordSave(long nanos){
+		if(enabled)saves.record(nanos);
+	}
+
+	/**
+	 * Reports an I/O error, logging it and passing it to every sink
+	 * @param operation What was being done, such as "load" or "save"
+	 * @param target What it was being done to, such as a locale or file name
+	 * @param error The error
+	 */
+	public void error(String operation, String target, Exception error){
+		errors.increment();
+		lastError = operation + " " + target + ": " + error;
+		platform.getLogger().log(Level.WARNING, "Unable to " + operation + " " + target, error);
+		for(MetricsSink sink : sinks){
+			sink.error(operation, target, error);
+		}
+	}
+
+	@Override
+	public long getLookups(){
+		return lookups.sum();
+	}
+
+	@Override
+	public long getMisses(){
+		return misses.sum();
+	}
+
+	@Override
+	public long getFallbacks(){
+		return fallbacks.sum();
+	}
+
+	@Override
+	public Map<String, Long> getMissesByLocale(){
+		return sum(missesByLocale);
+	}
+
+	/**
+	 * Gets the keys missing in a locale, up to the first thousand distinct keys
+	 * @param localeName The locale the lookups resolved in
+	 * @return The number of misses by key
+	 */
+	public Map<String, Long> getMissingKeys(String localeName){
+		ConcurrentHashMap<String, LongAdder> keys = missingKeys.get(localeName);
+		return keys==null ? Collections.emptyMap() : sum(keys);
+	}
+
+	@Override
+	public long getLoadCount(){
+		return loads.count.sum();
+	}
+
+	@Override
+	public long getLoadMaxNanos(){
+		return loads.max.get();
+	}
+
+	@Override
+	public Map<String, Long> getFileLoadNanos(){
+		return Collections.unmodifiableMap(new HashMap<>(fileLoads));
+	}
+
+	@Override
+	public long getSaveCount(){
+		return saves.count.sum();
+	}
+
+	@Override
+	public long getSaveMaxNanos(){
+		return saves.max.get();
+	}
+
+	@Override
+	public long getErrors(){
+		return errors.sum();
+	}
+
+	@Override
+	public String getLastError(){
+		return lastError;
+	}
+
+	@Override
+	public void reset(){
+		lookups.reset();
+		misses.reset();
+		fallbacks.reset();
+		missesByLocale.clear();
+		missingKeys.clear();
+		loads.reset();
+		saves.reset();
+		fileLoads.clear();
+		errors.reset();
+		lastError = null;
+	}
+
+	/**
+	 * Takes a consistent enough copy of every metric, counters keep moving while it is taken
+	 * @return The snapshot
+	 */
+	public Snapshot snapshot(){
+		HashMap<String, Map<String, Long>> missing = new HashMap<>();
+		for(Entry<String, ConcurrentHashMap<String, LongAdder>> entry : missingKeys.entrySet()){
+			missing.put(entry.getKey(), sum(entry.getValue()));
+		}
+		return new Snapshot(getLookups(), getMisses(), getFallbacks(), getMissesByLocale(), Collections.unmodifiableMap(missing), loads.snapshot(), saves.snapshot(), getErrors());
+	}
+
+	/**
+	 * Gets the logger errors are logged to
+	 * @return The platform's logger
+	 */
+	Logger getLogger(){
+		return platform.getLogger();
+	}
+
+	/**
+	 * Adds a sink that is given every error and a snapshot every period
+	 * @param sink The sink
+	 * @param periodTicks Ticks between snapshots
+	 * @return The publishing task, cancel it to remove the sink
+	 */
+	public LocalePlatform.Task addSink(MetricsSink sink, long periodTicks){
+		sinks.add(sink);
+		LocalePlatform.Task task = platform.runRepeating(() -> sink.publish(snapshot()), periodTicks, periodTicks);
+		return () -> {
+			task.cancel();
+			sinks.remove(sink);
+		};
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server, to be read with JConsole or any JMX exporter
+	 * @param name The name to register under, such as the plugin name
+	 * @return The name the MBean was registered with
+	 * @throws JMException If unable to register the MBean
+	 */
+	public ObjectName registerMBean(String name) throws JMException{
+		ObjectName objectName = new ObjectName("me.cory.localization:type=LocaleMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	/**
+	 * Unregisters these metrics from the platform MBean server
+	 * @param objectName The name returned by {@link #registerMBean(String)}
+	 * @throws JMException If unable to unregister the MBean
+	 */
+	public void unregisterMBean(ObjectName objectName) throws JMException{
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+	}
+
+	/**
+	 * Sums a map of counters
+	 * @param counters The counters
+	 * @return A read-only copy of the sums
+	 */
+	private static Map<String, Long> sum(Map<String, LongAdder> counters){
+		HashMap<String, Long> sums = new HashMap<>();
+		for(Entry<String, LongAdder> entry : counters.entrySet()){
+			sums.put(entry.getKey(), entry.getValue().sum());
+		}
+		return Collections.unmodifiableMap(sums);
+	}
+
+	/**
+	 * Histogram of durations in power of two buckets
+	 */
+	private static final class Timer {
+
+		private final LongAdder[] buckets;
+		private final LongAdder count;
+		private final LongAdder total;
+		private final LongAccumulator max;
+
+		private Timer(){
+			buckets = new LongAdder[64];
+			for(int i = 0; i < buckets.length; i++){
+				buckets[i] = new LongAdder();
+			}
+			count = new LongAdder();
+			total = new LongAdder();
+			max = new LongAccumulator(Math::max, 0L);
+		}
+
+		private void record(long nanos){
+			buckets[63 - Long.numberOfLeadingZeros(Math.max(1L, nanos))].increment();
+			count.increment();
+			total.add(nanos);
+			max.accumulate(nanos);
+		}
+
+		private void reset(){
+			for(LongAdder bucket : buckets){
+				bucket.reset();
+			}
+			count.reset();
+			total.reset();
+			max.reset();
+		}
+
+		private Timing snapshot(){
+			long[] counts = new long[buckets.length];
+			long recorded = 0;
+			for(int i = 0; i < buckets.length; i++){
+				counts[i] = buckets[i].sum();
+				recorded += counts[i];
+			}
+			return new Timing(recorded, total.sum(), max.get(), percentile(counts, recorded, 0.5), percentile(counts, recorded, 0.99));
+		}
+
+		/**
+		 * Gets the upper bound of the bucket a percentile falls in
+		 * @param counts The bucket counts
+		 * @param recorded The sum of the counts
+		 * @param percentile The percentile between 0 and 1
+		 * @return The upper bound in nanoseconds, accurate to a factor of two, or 0 if nothing was recorded
+		 */
+		private static long percentile(long[] counts, long recorded, double percentile){
+			if(recorded==0)return 0;
+			long rank = (long) Math.ceil(recorded * percentile);
+			long seen = 0;
+			for(int i = 0; i < counts.length; i++){
+				seen += counts[i];
+				if(seen>=rank)return i>=62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+			}
+			return Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Durations recorded by a timer
+	 */
+	public static final class Timing {
+
+		private final long count;
+		private final long totalNanos;
+		private final long maxNanos;
+		private final long p50Nanos;
+		private final long p99Nanos;
+
+		private Timing(long count, long totalNanos, long maxNanos, long p50Nanos, long p99Nanos){
+			this.count = count;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+			this.p50Nanos = p50Nanos;
+			this.p99Nanos = p99Nanos;
+		}
+
+		/**
+		 * Gets the number of durations recorded
+		 * @return The count
+		 */
+		public long getCount(){
+			return count;
+		}
+
+		/**
+		 * Gets the sum of all durations
+		 * @return The total in nanoseconds
+		 */
+		public long getTotalNanos(){
+			return totalNanos;
+		}
+
+		/**
+		 * Gets the mean duration
+		 * @return The mean in nanoseconds or 0 if nothing was recorded
+		 */
+		public long getMeanNanos(){
+			return count==0 ? 0 : totalNanos / count;
+		}
+
+		/**
+		 * Gets the longest duration
+		 * @return The max in nanoseconds
+		 */
+		public long getMaxNanos(){
+			return maxNanos;
+		}
+
+		/**
+		 * Gets the median duration, accurate to a factor of two
+		 * @return The median in nanoseconds
+		 */
+		public long getP50Nanos(){
+			return p50Nanos;
+		}
+
+		/**
+		 * Gets the 99th percentile duration, accurate to a factor of two
+		 * @return The 99th percentile in nanoseconds
+		 */
+		public long getP99Nanos(){
+			return p99Nanos;
+		}
+	}
+
+	/**
+	 * Immutable copy of every metric
+	 */
+	public static final class Snapshot {
+
+		private final long timestamp;
+		private final long lookups;
+		private final long misses;
+		private final long fallbacks;
+		private final Map<String, Long> missesByLocale;
+		private final Map<String, Map<String, Long>> missingKeys;
+		private final Timing loads;
+		private final Timing saves;
+		private final long errors;
+
+		private Snapshot(long lookups, long misses, long fallbacks, Map<String, Long> missesByLocale, Map<String, Map<String, Long>> missingKeys, Timing loads, Timing saves, long errors){
+			this.timestamp = System.currentTimeMillis();
+			this.lookups = lookups;
+			this.misses = misses;
+			this.fallbacks = fallbacks;
+			this.missesByLocale = missesByLocale;
+			this.missingKeys = missingKeys;
+			this.loads = loads;
+			this.saves = saves;
+			this.errors = errors;
+		}
+
+		/**
+		 * Gets when this snapshot was taken
+		 * @return The time in milliseconds
+		 */
+		public long getTimestamp(){
+			return timestamp;
+		}
+
+		/**
+		 * Gets the number of player message lookups
+		 * @return The lookup count
+		 */
+		public long getLookups(){
+			return lookups;
+		}
+
+		/**
+		 * Gets the number of lookups no locale in the chain had a message for
+		 * @return The miss count
+		 */
+		public long getMisses(){
+			return misses;
+		}
+
+		/**
+		 * Gets the number of lookups answered by a locale other than the one the player selected
+		 * @return The fallback count
+		 */
+		public long getFallbacks(){
+			return fallbacks;
+		}
+
+		/**
+		 * Gets the share of found messages that came from a fallback locale
+		 * @return The rate between 0 and 1
+		 */
+		public double getFallbackRate(){
+			long hits = lookups - misses;
+			return hits<=0 ? 0 : (double) fallbacks / hits;
+		}
+
+		/**
+		 * Gets the misses of each locale the lookups resolved in
+		 * @return The miss count by locale name
+		 */
+		public Map<String, Long> getMissesByLocale(){
+			return missesByLocale;
+		}
+
+		/**
+		 * Gets the missing keys of each locale the lookups resolved in
+		 * @return The miss count by key by locale name
+		 */
+		public Map<String, Map<String, Long>> getMissingKeys(){
+			return missingKeys;
+		}
+
+		/**
+		 * Gets the durations of locale loads
+		 * @return The load timings
+		 */
+		public Timing getLoads(){
+			return loads;
+		}
+
+		/**
+		 * Gets the durations of locale saves made through LocaleManager#saveLocale(String)
+		 * @return The save timings
+		 */
+		public Timing getSaves(){
+			return saves;
+		}
+
+		/**
+		 * Gets the number of I/O errors
+		 * @return The error count
+		 */
+		public long getErrors(){
+			return errors;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package me.cory.localization;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link LocaleMetrics}, see LocaleMetrics#registerMBean(String)
+ * @author Cory Caron
+ */
+public interface LocaleMetricsMXBean {
+
+	/**
+	 * Checks if lookups and timings are being recorded
+	 * @return True if enabled
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Starts or stops recording lookups and timings, errors are always recorded
+	 * @param enabled True to record
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Gets the number of player message lookups
+	 * @return The lookup count
+	 */
+	long getLookups();
+
+	/**
+	 * Gets the number of lookups no locale in the chain had a message for
+	 * @return The miss count
+	 */
+	long getMisses();
+
+	/**
+	 * Gets the number of lookups answered by a locale other than the one the player selected
+	 * @return The fallback count
+	 */
+	long getFallbacks();
+
+	/**
+	 * Gets the misses of each locale the lookups resolved in
+	 * @return The miss count by locale name
+	 */
+	Map<String, Long> getMissesByLocale();
+
+	/**
+	 * Gets the number of locale loads
+	 * @return The load count
+	 */
+	long getLoadCount();
+
+	/**
+	 * Gets the longest locale load
+	 * @return The max in nanoseconds
+	 */
+	long getLoadMaxNanos();
+
+	/**
+	 * Gets how long each locale file took to read when it was last discovered, lazy locales are only timed per locale on first use
+	 * @return The read time in nanoseconds by file path relative to the locales folder
+	 */
+	Map<String, Long> getFileLoadNanos();
+
+	/**
+	 * Gets the number of locale saves
+	 * @return The save count
+	 */
+	long getSaveCount();
+
+	/**
+	 * Gets the longest locale save
+	 * @return The max in nanoseconds
+	 */
+	long getSaveMaxNanos();
+
+	/**
+	 * Gets the number of I/O errors
+	 * @return The error count
+	 */
+	long getErrors();
+
+	/**
+	 * Gets the last I/O error
+	 * @return The operation, target and error or null if there were none
+	 */
+	String getLastError();
+
+	/**
+	 * Clears every metric
+	 */
+	void reset();
+}
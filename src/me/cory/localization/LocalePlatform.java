@@ -0,0 +1,215 @@
+package me.cory.localization;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Where the LocaleManager keeps its files and how it schedules work
+ * Every load and save goes through the platform's data folder, so the same locale engine runs on a Bukkit server,
+ * on a proxy, in build tools or in headless load tests
+ * Use {@link #bukkit(Plugin)} on a server and {@link #standalone(File)} anywhere else
+ * @author Cory Caron
+ */
+public abstract class LocalePlatform {
+
+	private static volatile LocalePlatform defaultPlatform;
+
+	/**
+	 * Gets the platform used by LocaleManager constructors and util methods that don't take one
+	 * Unless set, this is the Bukkit platform of the plugin providing this library, looked up once on first use
+	 * @return The default platform
+	 */
+	public static LocalePlatform getDefault(){
+		LocalePlatform platform = defaultPlatform;
+		if(platform==null){
+			synchronized(LocalePlatform.class){
+				if(defaultPlatform==null)defaultPlatform = bukkit(JavaPlugin.getProvidingPlugin(LocalePlatform.class));
+				platform = defaultPlatform;
+			}
+		}
+		return platform;
+	}
+
+	/**
+	 * Sets the platform used by LocaleManager constructors and util methods that don't take one
+	 * @param platform The default platform
+	 */
+	public static void setDefault(LocalePlatform platform){
+		defaultPlatform = platform;
+	}
+
+	/**
+	 * Gets the platform of a Bukkit plugin, files are kept in the plugin's data folder and tasks run on the server's main thread
+	 * @param plugin The plugin
+	 * @return The Bukkit platform
+	 */
+	public static LocalePlatform bukkit(Plugin plugin){
+		return new BukkitPlatform(plugin);
+	}
+
+	/**
+	 * Gets a platform without a server, for proxies, tools and tests
+	 * With no main thread, synchronous tasks run on the calling thread and repeating tasks on a daemon thread,
+	 * and no players are online unless the caller loads them
+	 * @param dataFolder The folder to keep files in
+	 * @return The standalone platform
+	 */
+	public static LocalePlatform standalone(File dataFolder){
+		return new StandalonePlatform(dataFolder);
+	}
+
+	/**
+	 * Gets the folder all files are kept in
+	 * @return The data folder
+	 */
+	public abstract File getDataFolder();
+
+	/**
+	 * Gets the folder locale files are kept in
+	 * @return The "locales" subdirectory of the data folder
+	 */
+	public File getLocaleFolder(){
+		return new File(getDataFolder(), "locales");
+	}
+
+	/**
+	 * Runs a task on the main thread
+	 * @param task The task
+	 */
+	public abstract void runSync(Runnable task);
+
+	/**
+	 * Runs a task on the main thread repeatedly
+	 * @param task The task
+	 * @param delayTicks Ticks before the first run
+	 * @param periodTicks Ticks between runs
+	 * @return The scheduled task
+	 */
+	public abstract Task runRepeating(Runnable task, long delayTicks, long periodTicks);
+
+	/**
+	 * Gets the players that are online
+	 * @return The UUIDs of all online players
+	 */
+	public abstract Collection<UUID> getOnlinePlayers();
+
+	/**
+	 * Gets the logger errors are reported to
+	 * @return The logger
+	 */
+	public Logger getLogger(){
+		return Logger.getLogger("LocaleManager");
+	}
+
+	/**
+	 * A scheduled repeating task
+	 */
+	public interface Task {
+
+		/**
+		 * Stops the task from running again
+		 */
+		void cancel();
+	}
+
+	/**
+	 * Platform of a Bukkit plugin
+	 */
+	private static final class BukkitPlatform extends LocalePlatform {
+
+		private final Plugin plugin;
+
+		private BukkitPlatform(Plugin plugin){
+			this.plugin = plugin;
+		}
+
+		@Override
+		public File getDataFolder() {
+			return plugin.getDataFolder();
+		}
+
+		@Override
+		public void runSync(Runnable task) {
+			Bukkit.getScheduler().runTask(plugin, task);
+		}
+
+		@Override
+		public Task runRepeating(Runnable task, long delayTicks, long periodTicks) {
+			BukkitTask scheduled = Bukkit.getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks);
+			return scheduled::cancel;
+		}
+
+		@Override
+		public Collection<UUID> getOnlinePlayers() {
+			Collection<? extends Player> online = Bukkit.getOnlinePlayers();
+			ArrayList<UUID> uuids = new ArrayList<>(online.size());
+			for(Player player : online){
+				uuids.add(player.getUniqueId());
+			}
+			return uuids;
+		}
+
+		@Override
+		public Logger getLogger() {
+			return plugin.getLogger();
+		}
+	}
+
+	/**
+	 * Platform without a server
+	 */
+	private static final class StandalonePlatform extends LocalePlatform {
+
+		//Milliseconds per server tick
+		private static final long TICK = 50L;
+
+		private final File dataFolder;
+		private ScheduledExecutorService executor;
+
+		private StandalonePlatform(File dataFolder){
+			this.dataFolder = dataFolder;
+		}
+
+		@Override
+		public File getDataFolder() {
+			return dataFolder;
+		}
+
+		@Override
+		public void runSync(Runnable task) {
+			task.run();
+		}
+
+		@Override
+		public synchronized Task runRepeating(Runnable task, long delayTicks, long periodTicks) {
+			if(executor==null){
+				executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+					Thread thread = new Thread(runnable, "LocaleManager-scheduler");
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+			ScheduledFuture<?> scheduled = executor.scheduleAtFixedRate(task, delayTicks * TICK, periodTicks * TICK, TimeUnit.MILLISECONDS);
+			return () -> scheduled.cancel(false);
+		}
+
+		@Override
+		public Collection<UUID> getOnlinePlayers() {
+			return Collections.emptyList();
+		}
+	}
+}
@@ -0,0 +1,376 @@
+package me.cory.localization;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.RegisteredServiceProvider;
+import org.bukkit.plugin.ServicePriority;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import me.cory.localization.LocaleDiscovery.LocaleFile;
+
+/**
+ * One LocaleManager shared by every plugin on the server, registered with Bukkit's ServicesManager
+ * The service keeps a single player locale store in plugins/LocaleManager and a single login listener,
+ * and each plugin attaches a {@link LocaleCatalog} with its own locale files, whose keys are namespaced with the plugin's name
+ * The first plugin to ask for the service owns its listener and tasks; when it is disabled they are handed to another attached plugin
+ * Plugins detach at the end of onDisable, after their last save, and the service shuts down once the last one has
+ * Every plugin must use the same copy of this library, either provided by one plugin or shaded without relocation,
+ * since each relocated copy is a different class with its own service
+ * @author Cory Caron
+ */
+public final class LocaleService implements Listener {
+
+	//Separates the namespace from the plugin's key, "myplugin:welcome"
+	static final String SEPARATOR = ":";
+	//Folder under the plugins folder the shared files are kept in
+	static final String FOLDER = "LocaleManager";
+
+	private final ServicePlatform platform;
+	private final LocaleManager localeMan;
+	//Namespace to the catalog of each attached plugin, in the order they attached
+	private final LinkedHashMap<String, LocaleCatalog> catalogs;
+	//Set once the LocaleManager is shut down
+	private boolean closed;
+
+	/**
+	 * Construct the service, loading the shared locales and player locales
+	 * @param owner The plugin that owns the listener and tasks
+	 * @param defaultLocale The default locale
+	 */
+	private LocaleService(JavaPlugin owner, String defaultLocale){
+		this.platform = new ServicePlatform(owner, new File(owner.getDataFolder().getParentFile(), FOLDER));
+		this.localeMan = new LocaleManager(platform, defaultLocale);
+		this.catalogs = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Gets the shared service, creating and registering it if no plugin has yet
+	 * The default locale is only used if the service is created by this call
+	 * @param plugin The plugin asking for the service, the owner if it is created
+	 * @param defaultLocale The default locale
+	 * @return The shared service
+	 */
+	public static synchronized LocaleService get(JavaPlugin plugin, String defaultLocale){
+		RegisteredServiceProvider<LocaleService> registration = Bukkit.getServicesManager().getRegistration(LocaleService.class);
+		if(registration!=null)return registration.getProvider();
+		LocaleService service = new LocaleService(plugin, defaultLocale);
+		service.register();
+		return service;
+	}
+
+	/**
+	 * Gets the shared service and attaches the plugin's catalog, see {@link #get(JavaPlugin, String)} and {@link #attach(JavaPlugin)}
+	 * @param plugin The plugin
+	 * @param defaultLocale The default locale
+	 * @return The plugin's catalog
+	 */
+	public static LocaleCatalog attach(JavaPlugin plugin, String defaultLocale){
+		return get(plugin, defaultLocale).attach(plugin);
+	}
+
+	/**
+	 * Registers the service, the login listener and the disable listener under the current owner
+	 */
+	private void register(){
+		JavaPlugin owner = platform.getOwner();
+		Bukkit.getServicesManager().register(LocaleService.class, this, owner, ServicePriority.Normal);
+		Bukkit.getPluginManager().registerEvents(new LoginEvent(localeMan), owner);
+		Bukkit.getPluginManager().registerEvents(this, owner);
+	}
+
+	/**
+	 * Gets the namespace of a shared key
+	 * @param key The key
+	 * @return The part before the separator or "" if the key has no namespace
+	 */
+	static String namespaceOf(String key){
+		int index = key.indexOf(SEPARATOR);
+		return index<0 ? "" : key.substring(0, index);
+	}
+
+	/**
+	 * Gets the LocaleManager shared by every plugin
+	 * Registering, unregistering or reloading a locale through it only replaces the shared folder's own messages, plugins keep theirs
+	 * @return The shared LocaleManager
+	 */
+	public LocaleManager getLocaleManager(){
+		return localeMan;
+	}
+
+	/**
+	 * Gets the plugin currently owning the listener and tasks
+	 * @return The owner
+	 */
+	public JavaPlugin getOwner(){
+		return platform.getOwner();
+	}
+
+	/**
+	 * Attaches a plugin, loading the locale files in its data folder under "locales" into the shared locales
+	 * Attaching a plugin again returns its existing catalog
+	 * @param plugin The plugin
+	 * @return The plugin's catalog
+	 */
+	public synchronized LocaleCatalog attach(JavaPlugin plugin){
+		String namespace = plugin.getName().toLowerCase(Locale.ROOT);
+		LocaleCatalog catalog = catalogs.get(namespace);
+		if(catalog!=null)return catalog;
+		catalog = new LocaleCatalog(this, plugin, namespace);
+		catalogs.put(namespace, catalog);
+		load(catalog);
+		return catalog;
+	}
+
+	/**
+	 * Detaches a plugin, dropping its messages from the shared locales
+	 * Call at the end of the plugin's onDisable, after its last save, since Bukkit fires PluginDisableEvent before onDisable.
+	 * Plugins that don't are detached once another plugin is disabled.
+	 * The listener and tasks move to another plugin if this one owned them, and the service shuts down when the last plugin detaches
+	 * @param plugin The plugin
+	 * @return True if the plugin was attached
+	 */
+	public synchronized boolean detach(JavaPlugin plugin){
+		String namespace = plugin.getName().toLowerCase(Locale.ROOT);
+		LocaleCatalog catalog = catalogs.get(namespace);
+		if(catalog==null || catalog.getPlugin()!=plugin)return false;
+		catalogs.remove(namespace);
+		for(String localeName : localesOf(namespace)){
+			publish(localeName, namespace, null);
+		}
+		if(catalogs.isEmpty())shutdown();
+		else if(plugin==platform.getOwner())handOver();
+		return true;
+	}
+
+	/**
+	 * Gets the catalogs of every attached plugin
+	 * @return A read-only snapshot of the catalogs
+	 */
+	public synchronized Collection<LocaleCatalog> getCatalogs(){
+		return new ArrayList<>(catalogs.values());
+	}
+
+	/**
+	 * Hands the listener and tasks to another plugin if the owner is being disabled
+	 * The event fires before the plugin's onDisable, so its messages stay until it detaches, see {@link #detach(JavaPlugin)}.
+	 * Plugins already disabled without detaching are detached here
+	 * @param event The event
+	 */
+	@EventHandler(priority=EventPriority.MONITOR)
+	public synchronized void onPluginDisable(PluginDisableEvent event){
+		if(!(event.getPlugin() instanceof JavaPlugin))return;
+		JavaPlugin plugin = (JavaPlugin) event.getPlugin();
+		for(LocaleCatalog catalog : new ArrayList<>(catalogs.values())){
+			if(catalog.getPlugin()!=plugin && !catalog.getPlugin().isEnabled())detach(catalog.getPlugin());
+		}
+		if(plugin!=platform.getOwner() || closed)return;
+		//An owner that never attached leaves nothing to save
+		if(catalogs.isEmpty())shutdown();
+		else handOver();
+	}
+
+	/**
+	 * Moves the listener and tasks from the owner to another enabled attached plugin, the owner keeps them if there is none
+	 * Bukkit drops the old owner's listeners, service and tasks once it is disabled
+	 */
+	private void handOver(){
+		JavaPlugin owner = platform.getOwner();
+		for(LocaleCatalog catalog : catalogs.values()){
+			JavaPlugin plugin = catalog.getPlugin();
+			if(plugin==owner || !plugin.isEnabled())continue;
+			Bukkit.getServicesManager().unregister(this);
+			platform.setOwner(plugin);
+			register();
+			return;
+		}
+	}
+
+	/**
+	 * Shuts the shared LocaleManager down and unregisters the service, a plugin asking for it afterwards creates a new one
+	 */
+	private void shutdown(){
+		closed = true;
+		localeMan.shutdown();
+		Bukkit.getServicesManager().unregister(this);
+	}
+
+	/**
+	 * Reads a plugin's locale files and swaps their messages into the shared locales
+	 * Locales the plugin no longer has files for lose its messages
+	 * @param catalog The plugin's catalog
+	 */
+	synchronized void load(LocaleCatalog catalog){
+		if(catalogs.get(catalog.getNamespace())!=catalog)return;
+		long start = System.nanoTime();
+		LocaleMetrics metrics = localeMan.getMetrics();
+		Map<String, List<LocaleFile>> found = LocaleDiscovery.scan(catalog.getLocaleFolder().toPath(), catalog.getFormats(), metrics, true);
+		TreeSet<String> localeNames = new TreeSet<>(found.keySet());
+		localeNames.addAll(localesOf(catalog.getNamespace()));
+		for(String localeName : localeNames){
+			List<LocaleFile> files = found.get(localeName);
+			LocaleConfig part = null;
+			if(files!=null)part = files.size()==1 ? files.get(0).create(true, metrics) : new MergedConfig(localeName, files, true, metrics);
+			publish(localeName, catalog.getNamespace(), part);
+		}
+		platform.getLogger().info("Loaded " + found.size() + " locales for " + catalog.getPlugin().getName() + " in " + (System.nanoTime() - start) / 1000000L + " ms");
+	}
+
+	/**
+	 * Saves every shared locale containing a plugin's messages back to its files
+	 * @param catalog The plugin's catalog
+	 */
+	synchronized void save(LocaleCatalog catalog){
+		for(String localeName : localesOf(catalog.getNamespace())){
+			LocaleConfig config = localeMan.getLocales().get(localeName);
+			LocaleConfig part = ((SharedConfig) config).getParts().get(catalog.getNamespace());
+			HashMap<String, String> messages = new HashMap<>();
+			for(Entry<String, String> entry : config.getMessages().entrySet()){
+				if(namespaceOf(entry.getKey()).equals(catalog.getNamespace()))messages.put(entry.getKey(), entry.getValue());
+			}
+			part.saveAndRelease(messages);
+		}
+	}
+
+	/**
+	 * Gets the shared locales containing a namespace
+	 * @param namespace The namespace
+	 * @return The locale names
+	 */
+	private List<String> localesOf(String namespace){
+		ArrayList<String> localeNames = new ArrayList<>();
+		for(LocaleConfig config : localeMan.getLocales().values()){
+			if(config instanceof SharedConfig && ((SharedConfig) config).getParts().containsKey(namespace))localeNames.add(config.getLocaleName());
+		}
+		return localeNames;
+	}
+
+	/**
+	 * Replaces a namespace's messages in a shared locale with a single atomic swap
+	 * The locale is unregistered once no namespace has it
+	 * @param localeName The locale
+	 * @param namespace The namespace
+	 * @param part The namespace's new config or null to drop the namespace from the locale
+	 */
+	private void publish(String localeName, String namespace, LocaleConfig part){
+		if(part!=null){
+			part.ensureLoaded();
+			if(part.getLoadError()!=null)localeMan.getMetrics().error("load", namespace + SEPARATOR + localeName, part.getLoadError());
+		}
+		//The shared folder's own locales become the part without a namespace
+		SharedConfig current = SharedConfig.of(localeName, localeMan.getLocales().get(localeName));
+		localeMan.replaceLocale(localeName, current.withPart(namespace, part));
+	}
+
+	/**
+	 * Platform of the service, files are kept in the shared folder and tasks run under the current owner
+	 * Repeating tasks are moved to the new owner when the owner changes
+	 */
+	private static final class ServicePlatform extends LocalePlatform {
+
+		private final File dataFolder;
+		private final List<RepeatingTask> tasks;
+		private volatile JavaPlugin owner;
+		private volatile LocalePlatform delegate;
+
+		private ServicePlatform(JavaPlugin owner, File dataFolder){
+			this.dataFolder = dataFolder;
+			this.tasks = new ArrayList<>();
+			this.owner = owner;
+			this.delegate = LocalePlatform.bukkit(owner);
+		}
+
+		/**
+		 * Gets the plugin tasks currently run under
+		 * @return The owner
+		 */
+		private JavaPlugin getOwner(){
+			return owner;
+		}
+
+		/**
+		 * Moves every repeating task to a new owner
+		 * @param owner The new owner
+		 */
+		private synchronized void setOwner(JavaPlugin owner){
+			this.owner = owner;
+			this.delegate = LocalePlatform.bukkit(owner);
+			for(RepeatingTask task : tasks){
+				task.schedule(delegate);
+			}
+		}
+
+		@Override
+		public File getDataFolder() {
+			return dataFolder;
+		}
+
+		@Override
+		public void runSync(Runnable task) {
+			delegate.runSync(task);
+		}
+
+		@Override
+		public synchronized Task runRepeating(Runnable task, long delayTicks, long periodTicks) {
+			RepeatingTask repeating = new RepeatingTask(task, delayTicks, periodTicks);
+			repeating.schedule(delegate);
+			tasks.add(repeating);
+			return () -> {
+				synchronized(this){
+					tasks.remove(repeating);
+					repeating.scheduled.cancel();
+				}
+			};
+		}
+
+		@Override
+		public Collection<UUID> getOnlinePlayers() {
+			return delegate.getOnlinePlayers();
+		}
+
+		@Override
+		public Logger getLogger() {
+			return delegate.getLogger();
+		}
+	}
+
+	/**
+	 * A repeating task of the service, kept so it can be scheduled again under a new owner
+	 */
+	private static final class RepeatingTask {
+
+		private final Runnable task;
+		private final long delayTicks;
+		private final long periodTicks;
+		private LocalePlatform.Task scheduled;
+
+		private RepeatingTask(Runnable task, long delayTicks, long periodTicks){
+			this.task = task;
+			this.delayTicks = delayTicks;
+			this.periodTicks = periodTicks;
+		}
+
+		/**
+		 * Schedules the task on a platform, the previous owner's task is already cancelled by Bukkit
+		 * @param platform The platform
+		 */
+		private void schedule(LocalePlatform platform){
+			scheduled = platform.runRepeating(task, delayTicks, periodTicks);
+		}
+	}
+}
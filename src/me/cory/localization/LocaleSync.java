@@ -0,0 +1,363 @@
+package me.cory.localization;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps player locale selections in sync across the servers of a network
+ * Every LocaleManager#setPlayerLocale(UUID, String) that changes a player's locale is queued here, and queued changes are
+ * sent through the transport in compact batches every flush period. A player changed several times in one period is only sent once,
+ * so a login storm costs a few batches instead of a message per player. Changes from other servers are applied to the players
+ * in memory and written to this server's own store, so its file has every server's latest selections when it is saved on disable.
+ * When two servers change the same player, the later change wins, and a change made after receiving another always wins over it.
+ * Changes to a locale this server doesn't have, or timed further ahead of its clock than the allowed skew, are dropped
+ * @author Cory Caron
+ */
+public class LocaleSync {
+
+	//Batch layout: version, server id, name count, names as length and UTF-8 bytes, record count, records
+	static final byte VERSION = 1;
+	private static final int HEADER = 1 + 8 + 2 + 2;
+	//Record layout: UUID most and least significant bits, change time in microseconds, index of the locale name in the batch
+	private static final int RECORD = 8 + 8 + 8 + 2;
+	//Largest encoded batch, below the size of a UDP datagram
+	static final int MAX_BATCH_BYTES = 60000;
+	//How long a change is remembered to drop older changes arriving after it
+	private static final long CHANGE_WINDOW = 60000L;
+	//How far ahead of this server's clock a change from another server may be, so one bad clock can't outrank every later change
+	static final long MAX_SKEW = 5000L;
+
+	private final LocaleManager localeMan;
+	private final LocaleSyncTransport transport;
+	private final long flushMillis;
+	private final long serverId;
+	//Microseconds of the last change made or applied, so every change on this server is later than the ones before it
+	private final AtomicLong clock;
+	private final ScheduledExecutorService executor;
+	//Changes that haven't been sent yet, only the last change of each player
+	private final ConcurrentHashMap<UUID, Change> queued;
+	//Latest change of each player seen from any server within the change window
+	private final ConcurrentHashMap<UUID, Change> latest;
+	private final AtomicLong published;
+	private final AtomicLong batches;
+	private final AtomicLong coalesced;
+	private final AtomicLong applied;
+	private final AtomicLong stale;
+	private final AtomicLong rejected;
+
+	/**
+	 * Construct the sync, call {@link #start()} to open the transport
+	 * @param localeMan LocaleManager to apply changes from other servers to
+	 * @param transport The transport to other servers
+	 * @param flushMillis Milliseconds between sending batches of changes
+	 */
+	public LocaleSync(LocaleManager localeMan, LocaleSyncTransport transport, long flushMillis){
+		this.localeMan = localeMan;
+		this.transport = transport;
+		this.flushMillis = flushMillis;
+		this.serverId = ThreadLocalRandom.current().nextLong();
+		this.clock = new AtomicLong();
+		this.queued = new ConcurrentHashMap<>();
+		this.latest = new ConcurrentHashMap<>();
+		this.published = new AtomicLong();
+		this.batches = new AtomicLong();
+		this.coalesced = new AtomicLong();
+		this.applied = new AtomicLong();
+		this.stale = new AtomicLong();
+		this.rejected = new AtomicLong();
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "LocaleManager-sync");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Opens the transport and starts sending batches
+	 * @throws IOException If unable to open the transport
+	 */
+	public void start() throws IOException{
+		transport.open(this::receive);
+		executor.scheduleWithFixedDelay(this::flushQueued, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sends every queued change, then closes the transport
+	 */
+	public void stop(){
+		try {
+			executor.submit(this::flushQueued).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			localeMan.getMetrics().error("sync", "player locales", e);
+		}
+		executor.shutdown();
+		try {
+			transport.close();
+		} catch (IOException e) {
+			localeMan.getMetrics().error("close", "sync transport", e);
+		}
+	}
+
+	/**
+	 * Gets the random id this server's batches are sent with, so it can ignore its own
+	 * @return The server id
+	 */
+	public long getServerId(){
+		return serverId;
+	}
+
+	/**
+	 * Gets the number of changes sent to other servers
+	 * @return The sent change count
+	 */
+	public long getPublishedChanges(){
+		return published.get();
+	}
+
+	/**
+	 * Gets the number of batches sent to other servers
+	 * @return The batch count
+	 */
+	public long getPublishedBatches(){
+		return batches.get();
+	}
+
+	/**
+	 * Gets the number of changes replaced by a later change to the same player before they were sent
+	 * @return The coalesced change count
+	 */
+	public long getCoalescedChanges(){
+		return coalesced.get();
+	}
+
+	/**
+	 * Gets the number of changes from other servers applied to this server
+	 * @return The applied change count
+	 */
+	public long getAppliedChanges(){
+		return applied.get();
+	}
+
+	/**
+	 * Gets the number of changes from other servers dropped for being older than the player's latest change
+	 * @return The stale change count
+	 */
+	public long getStaleChanges(){
+		return stale.get();
+	}
+
+	/**
+	 * Gets the number of changes from other servers dropped for a locale this server can't use or a time too far ahead
+	 * @return The rejected change count
+	 */
+	public long getRejectedChanges(){
+		return rejected.get();
+	}
+
+	/**
+	 * Gets the number of changes waiting to be sent
+	 * @return The queued change count
+	 */
+	public int getPendingChanges(){
+		return queued.size();
+	}
+
+	/**
+	 * Queues a change made on this server to be sent with the next batch
+	 * @param uuid Player's UUID
+	 * @param localeName The player's new locale
+	 */
+	void publish(UUID uuid, String localeName){
+		int maxLength = Math.min(255, localeMan.getPlayerLocaleStore().getMaxNameLength());
+		if(localeName.getBytes(StandardCharsets.UTF_8).length>maxLength)throw new IllegalArgumentException("Locale name is longer than " + maxLength + " bytes: " + localeName);
+		long now = System.currentTimeMillis() * 1000L;
+		Change change = new Change(localeName, clock.updateAndGet(last -> Math.max(last + 1, now)), serverId);
+		latest.put(uuid, change);
+		if(queued.put(uuid, change)!=null)coalesced.incrementAndGet();
+	}
+
+	/**
+	 * Scheduled task, sends queued changes and forgets changes older than the change window
+	 */
+	private void flushQueued(){
+		ArrayList<Map.Entry<UUID, Change>> changes = new ArrayList<>(queued.size());
+		for(Map.Entry<UUID, Change> entry : queued.entrySet()){
+			if(queued.remove(entry.getKey(), entry.getValue()))changes.add(entry);
+		}
+		if(!changes.isEmpty()){
+			for(byte[] batch : encode(serverId, changes, MAX_BATCH_BYTES)){
+				try {
+					transport.publish(batch);
+					batches.incrementAndGet();
+				} catch (IOException e) {
+					localeMan.getMetrics().error("sync", "player locales", e);
+				}
+			}
+			published.addAndGet(changes.size());
+		}
+		long expired = (System.currentTimeMillis() - CHANGE_WINDOW) * 1000L;
+		latest.values().removeIf(change -> change.time<expired);
+	}
+
+	/**
+	 * Applies a batch from another server, called by the transport
+	 * @param batch The encoded batch
+	 */
+	private void receive(byte[] batch){
+		ByteBuffer buffer = ByteBuffer.wrap(batch);
+		try {
+			if(buffer.get()!=VERSION)return;
+			long sender = buffer.getLong();
+			if(sender==serverId)return;
+			int maxLength = localeMan.getPlayerLocaleStore().getMaxNameLength();
+			//Names this server can't store or hasn't registered stay null, and their changes are dropped
+			String[] names = new String[buffer.getShort() & 0xFFFF];
+			for(int i = 0; i < names.length; i++){
+				byte[] name = new byte[buffer.get() & 0xFF];
+				buffer.get(name);
+				String localeName = new String(name, StandardCharsets.UTF_8);
+				if(name.length<=maxLength && localeMan.containsLocale(localeName))names[i] = localeName;
+			}
+			long limit = (System.currentTimeMillis() + MAX_SKEW) * 1000L;
+			int count = buffer.getShort() & 0xFFFF;
+			for(int i = 0; i < count; i++){
+				UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+				long time = buffer.getLong();
+				String localeName = names[buffer.getShort() & 0xFFFF];
+				if(localeName==null || time>limit){
+					rejected.incrementAndGet();
+					continue;
+				}
+				apply(uuid, new Change(localeName, time, sender));
+			}
+		} catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+			localeMan.getMetrics().error("sync", "malformed batch", e);
+			return;
+		} catch (RuntimeException e) {
+			//Never let a bad batch stop the transport's receiver
+			localeMan.getMetrics().error("sync", "player locales", e);
+		}
+	}
+
+	/**
+	 * Applies a change from another server unless this server has seen a later change to the player
+	 * @param uuid Player's UUID
+	 * @param change The change
+	 */
+	private void apply(UUID uuid, Change change){
+		Change current = latest.get(uuid);
+		while(true){
+			if(current!=null && !change.isAfter(current)){
+				stale.incrementAndGet();
+				return;
+			}
+			if(current==null ? latest.putIfAbsent(uuid, change)==null : latest.replace(uuid, current, change))break;
+			current = latest.get(uuid);
+		}
+		clock.accumulateAndGet(change.time, Math::max);
+		//A local change queued before this one is outdated
+		Change local = queued.get(uuid);
+		if(local!=null && change.isAfter(local))queued.remove(uuid, local);
+		localeMan.applyPlayerLocale(uuid, change.localeName);
+		applied.incrementAndGet();
+	}
+
+	/**
+	 * Encodes changes into batches, each with a table of the locale names it uses so records are a fixed 26 bytes
+	 * @param serverId The id of the sending server
+	 * @param changes The changes
+	 * @param maxBytes The largest batch
+	 * @return The encoded batches
+	 */
+	static List<byte[]> encode(long serverId, List<Map.Entry<UUID, Change>> changes, int maxBytes){
+		ArrayList<byte[]> encoded = new ArrayList<>();
+		LinkedHashMap<String, Integer> names = new LinkedHashMap<>();
+		int start = 0;
+		int size = HEADER;
+		for(int i = 0; i < changes.size(); i++){
+			String localeName = changes.get(i).getValue().localeName;
+			int added = RECORD + (names.containsKey(localeName) ? 0 : 1 + localeName.getBytes(StandardCharsets.UTF_8).length);
+			if(i>start && (size + added > maxBytes || i - start==0xFFFF)){
+				encoded.add(encode(serverId, changes.subList(start, i), names, size));
+				names.clear();
+				start = i;
+				size = HEADER;
+				added = RECORD + 1 + localeName.getBytes(StandardCharsets.UTF_8).length;
+			}
+			if(!names.containsKey(localeName))names.put(localeName, names.size());
+			size += added;
+		}
+		if(start<changes.size())encoded.add(encode(serverId, changes.subList(start, changes.size()), names, size));
+		return encoded;
+	}
+
+	/**
+	 * Encodes one batch
+	 * @param serverId The id of the sending server
+	 * @param changes The changes in the batch
+	 * @param names The index of each locale name in the batch
+	 * @param size The encoded size
+	 * @return The encoded batch
+	 */
+	private static byte[] encode(long serverId, List<Map.Entry<UUID, Change>> changes, Map<String, Integer> names, int size){
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.put(VERSION);
+		buffer.putLong(serverId);
+		buffer.putShort((short) names.size());
+		for(String localeName : names.keySet()){
+			byte[] name = localeName.getBytes(StandardCharsets.UTF_8);
+			buffer.put((byte) name.length);
+			buffer.put(name);
+		}
+		buffer.putShort((short) changes.size());
+		for(Map.Entry<UUID, Change> entry : changes){
+			buffer.putLong(entry.getKey().getMostSignificantBits());
+			buffer.putLong(entry.getKey().getLeastSignificantBits());
+			buffer.putLong(entry.getValue().time);
+			buffer.putShort((short) names.get(entry.getValue().localeName).intValue());
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * A player's locale change
+	 */
+	static final class Change {
+
+		private final String localeName;
+		private final long time;
+		private final long serverId;
+
+		Change(String localeName, long time, long serverId){
+			this.localeName = localeName;
+			this.time = time;
+			this.serverId = serverId;
+		}
+
+		/**
+		 * Checks if this change wins over another, by time then by server id so every server picks the same one
+		 * @param other The other change
+		 * @return True if this change is later
+		 */
+		boolean isAfter(Change other){
+			if(time!=other.time)return time>other.time;
+			return serverId>other.serverId;
+		}
+	}
+}
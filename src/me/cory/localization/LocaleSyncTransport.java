@@ -0,0 +1,34 @@
+package me.cory.localization;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Carries batches of player locale changes between servers, for LocaleSync
+ * Batches are opaque bytes; a transport only has to deliver each one to the other servers, in any order, and may drop them
+ * Use {@link DatagramSyncTransport} without any external service, or implement this over a proxy's plugin messages or a message broker
+ * @author Cory Caron
+ */
+public interface LocaleSyncTransport {
+
+	/**
+	 * Starts receiving batches published by other servers
+	 * @param receiver Called with each batch received, from any thread
+	 * @throws IOException If unable to open the transport
+	 */
+	void open(Consumer<byte[]> receiver) throws IOException;
+
+	/**
+	 * Sends a batch to every other server
+	 * Called from the sync thread, so it may block
+	 * @param batch The encoded batch
+	 * @throws IOException If unable to send the batch
+	 */
+	void publish(byte[] batch) throws IOException;
+
+	/**
+	 * Stops receiving and releases the transport
+	 * @throws IOException If unable to close the transport
+	 */
+	void close() throws IOException;
+}
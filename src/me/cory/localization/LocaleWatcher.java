@@ -0,0 +1,241 @@
+package me.cory.localization;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.cory.localization.LocaleDiscovery.LocaleFile;
+
+/**
+ * Watches the locales folder and its subfolders and hot reloads locale files when they change
+ * Changed files are parsed on the watcher thread into a new LocaleConfig, which replaces the old one in a single atomic swap,
+ * so readers see either the old or the new locale and never a half loaded one. Removed keys are dropped with the old config
+ * @author Cory Caron
+ */
+public class LocaleWatcher implements Runnable {
+
+	private final LocaleManager localeMan;
+	private final Path folder;
+	private final long debounceMillis;
+	private final WatchService watchService;
+	private final Thread thread;
+	//Locale name to the time of its last change event, waiting for its files to settle
+	private final HashMap<String, Long> pending;
+	private final AtomicLong reloads;
+	private final AtomicLong failures;
+	private final AtomicLong totalReloadNanos;
+	private volatile long lastReloadNanos;
+	private volatile boolean running;
+
+	/**
+	 * Construct the watcher, call {@link #start()} to begin watching
+	 * @param localeMan LocaleManager to register reloaded locales with
+	 * @param folder The locales folder
+	 * @param debounceMillis How long a file must go without changes before it is reloaded, so editors that write in bursts only cause one reload
+	 * @throws IOException If unable to watch the folder
+	 */
+	public LocaleWatcher(LocaleManager localeMan, Path folder, long debounceMillis) throws IOException{
+		this.localeMan = localeMan;
+		this.folder = folder;
+		this.debounceMillis = debounceMillis;
+		this.pending = new HashMap<>();
+		this.reloads = new AtomicLong();
+		this.failures = new AtomicLong();
+		this.totalReloadNanos = new AtomicLong();
+		Files.createDirectories(folder);
+		this.watchService = FileSystems.getDefault().newWatchService();
+		register(folder);
+		this.thread = new Thread(this, "LocaleManager-watcher");
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * Watches a folder and its subfolders, as deep as locales are discovered
+	 * @param dir The folder
+	 * @throws IOException If unable to watch the folder
+	 */
+	private void register(Path dir) throws IOException{
+		dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		if(folder.relativize(dir).getNameCount()>=LocaleDiscovery.MAX_DEPTH)return;
+		try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir, Files::isDirectory)){
+			for(Path subfolder : stream){
+				register(subfolder);
+			}
+		}
+	}
+
+	/**
+	 * Starts watching on a background thread
+	 */
+	public void start(){
+		running = true;
+		thread.start();
+	}
+
+	/**
+	 * Stops watching, pending changes are dropped
+	 */
+	public void stop(){
+		running = false;
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			localeMan.getMetrics().error("stop watching", folder.toString(), e);
+		}
+		thread.interrupt();
+	}
+
+	/**
+	 * Gets the number of locales successfully reloaded
+	 * @return The reload count
+	 */
+	public long getReloadCount(){
+		return reloads.get();
+	}
+
+	/**
+	 * Gets the number of locales that failed to reload, the old locale is kept for those
+	 * @return The failure count
+	 */
+	public long getFailureCount(){
+		return failures.get();
+	}
+
+	/**
+	 * Gets how long the last successful reload took to parse and publish
+	 * @return The reload time in nanoseconds or 0 if nothing was reloaded yet
+	 */
+	public long getLastReloadNanos(){
+		return lastReloadNanos;
+	}
+
+	/**
+	 * Gets the average time successful reloads took to parse and publish
+	 * @return The average reload time in nanoseconds or 0 if nothing was reloaded yet
+	 */
+	public long getAverageReloadNanos(){
+		long count = reloads.get();
+		return count==0 ? 0 : totalReloadNanos.get() / count;
+	}
+
+	@Override
+	public void run() {
+		while(running){
+			WatchKey key;
+			try {
+				key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				return;
+			} catch (ClosedWatchServiceException e) {
+				return;
+			}
+			if(key!=null){
+				long now = System.currentTimeMillis();
+				Path dir = (Path) key.watchable();
+				Map<String, LocaleFormat> formats = localeMan.getFormats();
+				for(WatchEvent<?> event : key.pollEvents()){
+					if(event.kind()==StandardWatchEventKinds.OVERFLOW){
+						queueAll(now);
+						continue;
+					}
+					Path path = dir.resolve((Path) event.context());
+					if(event.kind()==StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)){
+						//Files can land in a new folder before it is watched, so check everything
+						try {
+							register(path);
+						} catch (IOException e) {
+							localeMan.getMetrics().error("watch", path.toString(), e);
+						}
+						queueAll(now);
+						continue;
+					}
+					String name = path.getFileName().toString();
+					String extension = LocaleDiscovery.extension(name, formats);
+					if(extension!=null)pending.put(name.substring(0, name.length() - extension.length()), now);
+				}
+				key.reset();
+			}
+			reloadSettled();
+		}
+	}
+
+	/**
+	 * Queues every discovered or registered file based locale, used when the watch service drops events
+	 * @param now The current time
+	 */
+	private void queueAll(long now){
+		for(String name : localeMan.discoverLocales(localeMan.getFormats(), false).keySet()){
+			pending.put(name, now);
+		}
+		for(String name : localeMan.getLocales().keySet()){
+			if(localeMan.isDiscovered(name))pending.put(name, now);
+		}
+	}
+
+	/**
+	 * Reloads every pending locale that has gone the debounce time without changes
+	 * The folder is scanned once for all of them
+	 */
+	private void reloadSettled(){
+		long now = System.currentTimeMillis();
+		List<String> settled = new ArrayList<>();
+		Iterator<Entry<String, Long>> iterator = pending.entrySet().iterator();
+		while(iterator.hasNext()){
+			Entry<String, Long> entry = iterator.next();
+			if(now - entry.getValue() < debounceMillis)continue;
+			iterator.remove();
+			settled.add(entry.getKey());
+		}
+		if(settled.isEmpty())return;
+		Map<String, List<LocaleFile>> found = localeMan.discoverLocales(localeMan.getFormats(), false);
+		for(String localeName : settled){
+			reload(localeName, found.get(localeName));
+		}
+	}
+
+	/**
+	 * Parses a changed locale's files into a new LocaleConfig and swaps it in, or unregisters the locale if its files were deleted
+	 * @param localeName The changed locale
+	 * @param files The locale's files or null if none are left
+	 */
+	private void reload(String localeName, List<LocaleFile> files){
+		if(files==null){
+			if(localeMan.isDiscovered(localeName))localeMan.unregisterLocale(localeName);
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			LocaleConfig config = localeMan.createConfig(localeName, files);
+			config.ensureLoaded();
+			if(config.getLoadError()!=null){
+				localeMan.getMetrics().error("reload", localeName, config.getLoadError());
+				failures.incrementAndGet();
+				return;
+			}
+			localeMan.registerLocale(config);
+		} catch (RuntimeException e) {
+			localeMan.getMetrics().error("reload", localeName, e);
+			failures.incrementAndGet();
+			return;
+		}
+		long elapsed = System.nanoTime() - start;
+		lastReloadNanos = elapsed;
+		totalReloadNanos.addAndGet(elapsed);
+		reloads.incrementAndGet();
+	}
+}
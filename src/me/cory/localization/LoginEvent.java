@@ -1,9 +1,15 @@
 package me.cory.localization;
 
+import java.util.UUID;
+
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerLocaleChangeEvent;
 import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 public class LoginEvent implements Listener{
 
@@ -18,18 +24,79 @@ public class LoginEvent implements Listener{
 	}
 	
 	/**
-	 * Register player's locale or default if they have never joined before
+	 * Read player's locale and load the locales they need off the main thread, before they log in
+	 * @param event AsyncPlayerPreLoginEvent
+	 */
+	@EventHandler
+	public void onPlayerPreLogin(AsyncPlayerPreLoginEvent event){
+		localeMan.preloadPlayer(event.getUniqueId());
+	}
+	
+	/**
+	 * Drop player's preloaded locale if another plugin denied the login
+	 * @param event AsyncPlayerPreLoginEvent
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerPreLoginResult(AsyncPlayerPreLoginEvent event){
+		if(event.getLoginResult()!=AsyncPlayerPreLoginEvent.Result.ALLOWED)localeMan.discardPreloaded(event.getUniqueId());
+	}
+	
+	/**
+	 * Attach player's preloaded locale, or assign their minecraft locale if they have never selected one
 	 * We register it in the Login event so it's already loaded if we want to send a message on the join event
+	 * The assigned locale isn't stored, so a player who joins while locales are still loading isn't stuck with the default
 	 * @param event PlayerLoginEvent
 	 */
 	@EventHandler
 	public void onPlayerLogin(PlayerLoginEvent event){
+		long start = System.nanoTime();
 		Player player = event.getPlayer();
-		if(!localeMan.containsPlayer(player.getUniqueId())){
+		if(localeMan.loadPlayer(player.getUniqueId())==null){
+			UUID uuid = player.getUniqueId();
 			String locale = player.getLocale();
-			if(localeMan.containsLocale(locale))localeMan.setPlayerLocale(player.getUniqueId(), locale);
-			else localeMan.setPlayerLocale(player.getUniqueId(), localeMan.getDefaultLocale());
+			assignLocale(uuid, locale);
+			//The minecraft locale may not be registered yet, assign it again once everything is loaded
+			if(!localeMan.isReady())localeMan.getReadyFuture().thenRun(() -> assignLocale(uuid, locale));
 		}
+		localeMan.recordJoin(System.nanoTime() - start);
+	}
+	
+	/**
+	 * Assign a player their minecraft locale if it exists, otherwise the default
+	 * @param uuid Player's UUID
+	 * @param locale Player's minecraft locale
+	 */
+	private void assignLocale(UUID uuid, String locale){
+		localeMan.assignPlayerLocale(uuid, localeMan.containsLocale(locale) ? locale : localeMan.getDefaultLocale());
+	}
+	
+	/**
+	 * Unload player's locale if another plugin denied the login, since they will never quit
+	 * @param event PlayerLoginEvent
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerLoginResult(PlayerLoginEvent event){
+		if(event.getResult()!=PlayerLoginEvent.Result.ALLOWED)localeMan.unloadPlayer(event.getPlayer().getUniqueId());
+	}
+	
+	/**
+	 * Switch the player to their new minecraft locale if it exists and they have never selected one, their context picks up the change on next lookup
+	 * The client sends its locale on every join, so this only changes the player in memory and never replaces a selected locale
+	 * @param event PlayerLocaleChangeEvent
+	 */
+	@EventHandler
+	public void onPlayerLocaleChange(PlayerLocaleChangeEvent event){
+		String locale = event.getLocale();
+		if(localeMan.containsLocale(locale))localeMan.assignPlayerLocale(event.getPlayer().getUniqueId(), locale);
+	}
+	
+	/**
+	 * Unload player's locale and context from memory, it stays in the player locale store
+	 * @param event PlayerQuitEvent
+	 */
+	@EventHandler
+	public void onPlayerQuit(PlayerQuitEvent event){
+		localeMan.unloadPlayer(event.getPlayer().getUniqueId());
 	}
 	
 }
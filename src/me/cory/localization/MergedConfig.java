@@ -0,0 +1,98 @@
+package me.cory.localization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import me.cory.localization.LocaleDiscovery.LocaleFile;
+
+/**
+ * A locale with files in several folders, such as locales/fr.csv and locales/myplugin/fr.yml
+ * Files closer to the locales folder replace messages of the same key in deeper folders
+ * @author Cory Caron
+ */
+final class MergedConfig extends LocaleConfig {
+
+	private final List<LocaleFile> files;
+	private final List<LocaleConfig> parts;
+	private final LocaleMetrics metrics;
+	private final boolean lazy;
+
+	/**
+	 * Construct the merged config
+	 * @param localeName The locale name
+	 * @param files The files of the locale, starting with the shallowest folder
+	 * @param lazy True to defer loading messages until they are first needed
+	 * @param metrics The metrics to record each file's load time in
+	 */
+	MergedConfig(String localeName, List<LocaleFile> files, boolean lazy, LocaleMetrics metrics){
+		//Always lazy here since the parts don't exist until after the super constructor
+		super(localeName, files.get(0).getFolder(), true);
+		this.files = files;
+		this.parts = new ArrayList<>(files.size());
+		for(LocaleFile file : files){
+			parts.add(file.create(true, metrics));
+		}
+		this.metrics = metrics;
+		this.lazy = lazy;
+		if(!lazy)ensureLoaded();
+	}
+
+	@Override
+	public boolean isLazy(){
+		return lazy;
+	}
+
+	@Override
+	public synchronized boolean unloadMessages(){
+		if(!lazy)return false;
+		return super.unloadMessages();
+	}
+
+	/**
+	 * Loads every file, deepest first so shallower files replace their messages
+	 * Each file is dropped from memory once merged
+	 */
+	@Override
+	public void loadMessages() {
+		for(int i = parts.size() - 1; i>=0; i--){
+			LocaleConfig part = parts.get(i);
+			part.ensureLoaded();
+			metrics.recordFileLoad(files.get(i).getPath().toString(), part.getLoadNanos());
+			if(part.getLoadError()!=null)loadFailed(part.getLoadError());
+			setMessages(part.getMessages());
+			part.unloadMessages();
+		}
+	}
+
+	/**
+	 * Saves each message to the file it was loaded from, new messages go to the shallowest file
+	 */
+	@Override
+	public void saveMessages() {
+		ArrayList<Map<String, String>> split = new ArrayList<>(parts.size());
+		for(int i = 0; i<parts.size(); i++){
+			split.add(new HashMap<>());
+		}
+		for(Entry<String, String> entry : getMessages().entrySet()){
+			int owner = 0;
+			for(int i = 0; i<parts.size(); i++){
+				if(parts.get(i).containsKey(entry.getKey())){
+					owner = i;
+					break;
+				}
+			}
+			split.get(owner).put(entry.getKey(), entry.getValue());
+		}
+		for(int i = 0; i<parts.size(); i++){
+			LocaleConfig part = parts.get(i);
+			part.setMessages(split.get(i));
+			part.saveMessages();
+			//The merged config keeps the messages
+			part.releaseMessages();
+		}
+	}
+
+}
@@ -0,0 +1,246 @@
+package me.cory.localization;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Off heap store of UTF-8 encoded messages shared by every off heap locale of a LocaleManager
+ * Messages are appended to direct buffers and identical messages are only stored once, no matter how many locales use them.
+ * Messages are decoded on each read, and a small direct mapped cache on the heap holds the decoded messages in use.
+ * Reads take no lock: the buffers are published as an immutable array and each cache slot holds an immutable entry
+ * The store only grows: a reload that changes messages appends the new ones, unchanged messages are found and reused
+ * Enable with LocaleManager#LocaleManager(LocalePlatform, String, boolean, boolean, boolean)
+ * @author Cory Caron
+ */
+public final class MessageArena {
+
+	//Size of each direct buffer, larger messages get a buffer of their own
+	private static final int CHUNK_SIZE = 1 << 20;
+
+	private volatile ByteBuffer[] chunks;
+	private ByteBuffer current;
+	//Open addressed index of every stored message by hash of its bytes, guarded by this
+	private long[] slots;
+	private int[] hashes;
+	private int size;
+	private long bytes;
+	private long stores;
+	//Decoded messages by a hash of their reference, a slot holds whichever message was read last
+	private final Cached[] cache;
+	private final LongAdder hits;
+	private final LongAdder misses;
+
+	/**
+	 * Construct an empty store
+	 * @param cacheSize The number of decoded messages kept on the heap
+	 */
+	MessageArena(int cacheSize){
+		this.chunks = new ByteBuffer[0];
+		this.slots = new long[1024];
+		this.hashes = new int[1024];
+		this.cache = new Cached[Integer.highestOneBit(Math.max(1, cacheSize - 1) << 1)];
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+	}
+
+	/**
+	 * Stores a message, reusing the stored copy if an identical message is already stored
+	 * @param message The message
+	 * @return The reference to read the message with, never 0
+	 */
+	synchronized long store(String message){
+		byte[] encoded = message.getBytes(StandardCharsets.UTF_8);
+		int hash = hash(encoded);
+		stores++;
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		while(slots[slot]!=0){
+			if(hashes[slot]==hash && matches(slots[slot], encoded))return slots[slot];
+			slot = (slot + 1) & mask;
+		}
+		long ref = append(encoded);
+		slots[slot] = ref;
+		hashes[slot] = hash;
+		if(++size * 4 > slots.length * 3)grow();
+		return ref;
+	}
+
+	/**
+	 * Gets a stored message, decoding it unless it is cached
+	 * @param ref The reference from {@link #store(String)}
+	 * @return The message
+	 */
+	String get(long ref){
+		int slot = slot(ref);
+		Cached cached = cache[slot];
+		if(cached!=null && cached.ref==ref){
+			hits.increment();
+			return cached.message;
+		}
+		misses.increment();
+		String message = decode(ref);
+		//Racing writers only replace each other's entry, and a reader seeing a stale slot just decodes again
+		cache[slot] = new Cached(ref, message);
+		return message;
+	}
+
+	/**
+	 * Gets the number of distinct messages stored
+	 * @return The message count
+	 */
+	public synchronized int getMessageCount(){
+		return size;
+	}
+
+	/**
+	 * Gets the number of messages stored, including the ones that were already stored and reused
+	 * @return The store count
+	 */
+	public synchronized long getStoreCount(){
+		return stores;
+	}
+
+	/**
+	 * Gets the off heap memory used by the stored messages
+	 * @return The size in bytes
+	 */
+	public synchronized long getStoredBytes(){
+		return bytes;
+	}
+
+	/**
+	 * Gets the off heap memory reserved, including the unused end of the last buffer
+	 * @return The size in bytes
+	 */
+	public long getReservedBytes(){
+		long reserved = 0;
+		for(ByteBuffer chunk : chunks){
+			reserved += chunk.capacity();
+		}
+		return reserved;
+	}
+
+	/**
+	 * Gets the number of reads answered by the cache of decoded messages
+	 * @return The hit count
+	 */
+	public long getCacheHits(){
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the number of reads that had to decode the message
+	 * @return The miss count
+	 */
+	public long getCacheMisses(){
+		return misses.sum();
+	}
+
+	/**
+	 * Appends an encoded message to the current buffer, starting a new one if it doesn't fit
+	 * @param encoded The UTF-8 bytes
+	 * @return The reference to the message
+	 */
+	private long append(byte[] encoded){
+		int length = 4 + encoded.length;
+		if(current==null || current.remaining()<length){
+			current = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, length));
+			ByteBuffer[] next = Arrays.copyOf(chunks, chunks.length + 1);
+			next[chunks.length] = current;
+			chunks = next;
+		}
+		int offset = current.position();
+		current.putInt(encoded.length);
+		current.put(encoded);
+		bytes += length;
+		//Chunk numbers start at 1 so no reference is 0
+		return ((long) chunks.length << 32) | offset;
+	}
+
+	/**
+	 * Decodes a stored message
+	 * @param ref The reference to the message
+	 * @return The message
+	 */
+	private String decode(long ref){
+		ByteBuffer chunk = chunks[(int) (ref >>> 32) - 1].duplicate();
+		int offset = (int) ref;
+		byte[] encoded = new byte[chunk.getInt(offset)];
+		chunk.position(offset + 4);
+		chunk.get(encoded);
+		return new String(encoded, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Checks if a stored message has exactly the bytes
+	 * @param ref The reference to the stored message
+	 * @param encoded The UTF-8 bytes
+	 * @return True if they match
+	 */
+	private boolean matches(long ref, byte[] encoded){
+		ByteBuffer chunk = chunks[(int) (ref >>> 32) - 1];
+		int offset = (int) ref;
+		if(chunk.getInt(offset)!=encoded.length)return false;
+		offset += 4;
+		for(int i = 0; i < encoded.length; i++){
+			if(chunk.get(offset + i)!=encoded[i])return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Doubles the index, placing every reference again
+	 */
+	private void grow(){
+		long[] oldSlots = slots;
+		int[] oldHashes = hashes;
+		slots = new long[oldSlots.length * 2];
+		hashes = new int[oldSlots.length * 2];
+		int mask = slots.length - 1;
+		for(int i = 0; i < oldSlots.length; i++){
+			if(oldSlots[i]==0)continue;
+			int slot = oldHashes[i] & mask;
+			while(slots[slot]!=0){
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = oldSlots[i];
+			hashes[slot] = oldHashes[i];
+		}
+	}
+
+	/**
+	 * Gets the cache slot of a reference
+	 * @param ref The reference
+	 * @return The slot index
+	 */
+	private int slot(long ref){
+		long hash = ref * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 32) & (cache.length - 1);
+	}
+
+	/**
+	 * Hashes encoded bytes, spreading the bits so the low bits index the table well
+	 * @param encoded The bytes
+	 * @return The hash
+	 */
+	private static int hash(byte[] encoded){
+		int hash = Arrays.hashCode(encoded);
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * A decoded message in the cache, immutable so it can be shared between threads without a lock
+	 */
+	private static final class Cached {
+
+		private final long ref;
+		private final String message;
+
+		private Cached(long ref, String message){
+			this.ref = ref;
+			this.message = message;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package me.cory.localization;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Handle to a message key shared by every locale
+ * Each key is registered once in a global registry and given a dense index, so locales store their messages
+ * in flat arrays indexed by it and each key string is only held once no matter how many locales use it
+ * Get handles once, e.g. in a static final field, and pass them to LocaleManager#getPlayerMessage(UUID, MessageKey) to skip hashing the key
+ * @author Cory Caron
+ */
+public final class MessageKey {
+
+	private static final ConcurrentHashMap<String, MessageKey> KEYS = new ConcurrentHashMap<>();
+	//Handles by index, grown under the registry lock and only read through the volatile field
+	private static volatile MessageKey[] byIndex = new MessageKey[64];
+	private static volatile int count;
+
+	private final String name;
+	private final int index;
+
+	private MessageKey(String name, int index){
+		this.name = name;
+		this.index = index;
+	}
+
+	/**
+	 * Gets the handle for a key, registering it if this is the first time it is seen
+	 * @param name The key
+	 * @return The handle for the key
+	 */
+	public static MessageKey of(String name){
+		MessageKey key = KEYS.get(name);
+		if(key!=null)return key;
+		synchronized(KEYS){
+			key = KEYS.get(name);
+			if(key!=null)return key;
+			MessageKey[] current = byIndex;
+			if(count==current.length)current = Arrays.copyOf(current, current.length * 2);
+			key = new MessageKey(name, count);
+			current[count] = key;
+			byIndex = current;
+			count++;
+			KEYS.put(name, key);
+			return key;
+		}
+	}
+
+	/**
+	 * Gets the handle for a key without registering it
+	 * @param name The key
+	 * @return The handle or null if no locale or caller has used the key yet
+	 */
+	public static MessageKey find(String name){
+		return KEYS.get(name);
+	}
+
+	/**
+	 * Gets the number of registered keys, every index is below this
+	 * @return The key count
+	 */
+	public static int count(){
+		return count;
+	}
+
+	/**
+	 * Gets the handle with the index
+	 * @param index The index, must be below {@link #count()}
+	 * @return The handle
+	 */
+	static MessageKey byIndex(int index){
+		return byIndex[index];
+	}
+
+	/**
+	 * Gets the key
+	 * @return The key
+	 */
+	public String getName(){
+		return name;
+	}
+
+	/**
+	 * Gets the dense index of this key
+	 * @return The index
+	 */
+	public int getIndex(){
+		return index;
+	}
+
+	@Override
+	public String toString(){
+		return name;
+	}
+}
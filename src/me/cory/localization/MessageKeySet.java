@@ -0,0 +1,102 @@
+package me.cory.localization;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A fixed list of message keys looked up together, such as the lines of a scoreboard or the items of a menu
+ * The messages are resolved once per locale and cached with the table they came from, so a locale change only invalidates
+ * the locales whose table changed. Build it once, e.g. in a static final field, and pass it to LocaleManager#getPlayerMessages(UUID, MessageKeySet, String[])
+ * @author Cory Caron
+ */
+public final class MessageKeySet {
+
+	private final MessageKey[] keys;
+	//Resolved locale name to the messages resolved from its current table
+	private final ConcurrentHashMap<String, Resolved> resolved;
+
+	private MessageKeySet(MessageKey[] keys){
+		this.keys = keys;
+		this.resolved = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Compiles a key set
+	 * @param keys The keys, in the order their messages are filled in
+	 * @return The key set
+	 */
+	public static MessageKeySet of(String... keys){
+		return of(Arrays.asList(keys));
+	}
+
+	/**
+	 * Compiles a key set
+	 * @param keys The keys, in the order their messages are filled in
+	 * @return The key set
+	 */
+	public static MessageKeySet of(List<String> keys){
+		MessageKey[] handles = new MessageKey[keys.size()];
+		for(int i = 0; i < handles.length; i++){
+			handles[i] = MessageKey.of(keys.get(i));
+		}
+		return new MessageKeySet(handles);
+	}
+
+	/**
+	 * Gets the number of keys in this set
+	 * @return The size
+	 */
+	public int size(){
+		return keys.length;
+	}
+
+	/**
+	 * Gets the keys in this set
+	 * @return A read-only list of the key handles
+	 */
+	public List<MessageKey> getKeys(){
+		return Collections.unmodifiableList(Arrays.asList(keys));
+	}
+
+	/**
+	 * Gets the handles of the keys, not to be modified
+	 * @return The key handles
+	 */
+	MessageKey[] handles(){
+		return keys;
+	}
+
+	/**
+	 * Gets the messages of every key in a locale, resolving them only if the locale's table changed since last time
+	 * @param localeName The locale the table resolves
+	 * @param table The locale's current table from the resolver, may be null
+	 * @return The messages in key order, not to be modified
+	 */
+	String[] resolve(String localeName, Map<String, String> table){
+		Resolved current = resolved.get(localeName);
+		if(current!=null && current.table==table)return current.messages;
+		String[] messages = new String[keys.length];
+		for(int i = 0; i < keys.length; i++){
+			messages[i] = MessageResolver.lookup(table, keys[i]);
+		}
+		resolved.put(localeName, new Resolved(table, messages));
+		return messages;
+	}
+
+	/**
+	 * Messages resolved from one version of a locale's table
+	 */
+	private static final class Resolved {
+
+		private final Map<String, String> table;
+		private final String[] messages;
+
+		private Resolved(Map<String, String> table, String[] messages){
+			this.table = table;
+			this.messages = messages;
+		}
+	}
+}
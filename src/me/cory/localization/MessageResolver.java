@@ -0,0 +1,579 @@
+package me.cory.localization;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves player messages for the LocaleManager
+ * Each locale gets a fallback chain (fr_ca -> fr -> default) flattened into a single lookup table indexed by MessageKey
+ * so any key resolves with one array read no matter how deep the chain is
+ * Tables of lazy locales are only built on first use
+ * All state is held in immutable snapshots, so lookups are lock-free and safe from any thread
+ * @author Cory Caron
+ */
+final class MessageResolver {
+
+	private final Map<UUID, PlayerLocaleContext> players;
+	private final LocaleMetrics metrics;
+	//Both maps are immutable snapshots, replaced as a whole under this object's lock so reads never block
+	private volatile Map<String, LocaleConfig> locales;
+	private volatile Map<String, Map<String, String>> tables;
+	private volatile String defaultLocale;
+
+	/**
+	 * Construct the resolver over the LocaleManager's loaded players
+	 * @param players The contexts of all loaded players
+	 * @param defaultLocale The locale at the end of every chain
+	 * @param metrics The metrics to record lookups in
+	 */
+	MessageResolver(Map<UUID, PlayerLocaleContext> players, String defaultLocale, LocaleMetrics metrics){
+		this.players = players;
+		this.metrics = metrics;
+		this.locales = Collections.emptyMap();
+		this.tables = Collections.emptyMap();
+		this.defaultLocale = defaultLocale;
+	}
+
+	/**
+	 * Resolves the message for the specified player
+	 * Uses the player's flattened table, or the default locale's table if the player's locale isn't registered
+	 * @param uuid Player's UUID
+	 * @param key The key to the message
+	 * @return The localized message or null if no locale in the chain has the key
+	 */
+	String resolve(UUID uuid, String key){
+		PlayerLocaleContext context = players.get(uuid);
+		Map<String, String> table = context==null ? getTable(null) : context.getTable();
+		String message = table==null ? null : table.get(key);
+		record(context, key, message!=null);
+		return message;
+	}
+
+	/**
+	 * Resolves the message for the specified player by key handle, skipping the registry lookup
+	 * @param uuid Player's UUID
+	 * @param key The key handle
+	 * @return The localized message or null if no locale in the chain has the key
+	 */
+	String resolve(UUID uuid, MessageKey key){
+		PlayerLocaleContext context = players.get(uuid);
+		String message = lookup(context==null ? getTable(null) : context.getTable(), key);
+		record(context, key.getName(), message!=null);
+		return message;
+	}
+
+	/**
+	 * Resolves the messages of several keys for the specified player, finding the player's table only once
+	 * @param uuid Player's UUID
+	 * @param keys The keys to the messages
+	 * @param messages The array to fill with the messages in key order, null where no locale in the chain has the key
+	 */
+	void resolveAll(UUID uuid, List<String> keys, String[] messages){
+		PlayerLocaleContext context = players.get(uuid);
+		Map<String, String> table = context==null ? getTable(null) : context.getTable();
+		for(int i = 0; i < keys.size(); i++){
+			messages[i] = table==null ? null : table.get(keys.get(i));
+		}
+		record(context, keys, messages);
+	}
+
+	/**
+	 * Resolves the messages of several keys for the specified player by key handle, finding the player's table only once
+	 * @param uuid Player's UUID
+	 * @param keys The key handles
+	 * @param messages The array to fill with the messages in key order, null where no locale in the chain has the key
+	 */
+	void resolveAll(UUID uuid, MessageKey[] keys, String[] messages){
+		PlayerLocaleContext context = players.get(uuid);
+		if(context!=null){
+			context.getMessages(keys, messages);
+			return;
+		}
+		Map<String, String> table = getTable(null);
+		for(int i = 0; i < keys.length; i++){
+			messages[i] = lookup(table, keys[i]);
+		}
+		record(null, keys, messages);
+	}
+
+	/**
+	 * Resolves the messages of a key set for the specified player, reusing the messages cached for the player's locale
+	 * @param uuid Player's UUID
+	 * @param keys The key set
+	 * @param messages The array to fill with the messages in key order, null where no locale in the chain has the key
+	 */
+	void resolveAll(UUID uuid, MessageKeySet keys, String[] messages){
+		PlayerLocaleContext context = players.get(uuid);
+		if(context!=null){
+			context.getMessages(keys, messages);
+			return;
+		}
+		String[] resolved = keys.resolve(defaultLocale, getTable(null));
+		System.arraycopy(resolved, 0, messages, 0, resolved.length);
+		record(null, keys.handles(), messages);
+	}
+
+	/**
+	 * Records several player lookups in the metrics, see {@link #record(PlayerLocaleContext, String, boolean)}
+	 * @param context The player's context or null if they aren't loaded
+	 * @param keys The keys looked up
+	 * @param messages The messages found in key order
+	 */
+	void record(PlayerLocaleContext context, List<String> keys, String[] messages){
+		if(!metrics.isEnabled())return;
+		for(int i = 0; i < keys.size(); i++){
+			record(context, keys.get(i), messages[i]!=null);
+		}
+	}
+
+	/**
+	 * Records several player lookups by key handle in the metrics, see {@link #record(PlayerLocaleContext, String, boolean)}
+	 * @param context The player's context or null if they aren't loaded
+	 * @param keys The key handles looked up
+	 * @param messages The messages found in key order
+	 */
+	void record(PlayerLocaleContext context, MessageKey[] keys, String[] messages){
+		if(!metrics.isEnabled())return;
+		for(int i = 0; i < keys.length; i++){
+			record(context, keys[i].getName(), messages[i]!=null);
+		}
+	}
+
+	/**
+	 * Records a player lookup in the metrics if they are enabled
+	 * A found message counts as a fallback if the player selected another locale or their locale doesn't have the key itself
+	 * @param context The player's context or null if they aren't loaded
+	 * @param key The key looked up
+	 * @param found True if the message was found
+	 */
+	void record(PlayerLocaleContext context, String key, boolean found){
+		if(!metrics.isEnabled())return;
+		String resolvedLocale = context==null ? defaultLocale : context.getResolvedLocale();
+		if(!found){
+			metrics.recordMiss(resolvedLocale, key);
+			return;
+		}
+		String selected = context==null || context.getLocale()==null ? defaultLocale : context.getLocale();
+		LocaleConfig config = locales.get(resolvedLocale);
+		metrics.recordHit(!resolvedLocale.equals(selected) || config==null || config.getMessage(key)==null);
+	}
+
+	/**
+	 * Gets a message from a table by key handle
+	 * @param table A table from this resolver, may be null
+	 * @param key The key handle
+	 * @return The message or null if the table doesn't have it
+	 */
+	static String lookup(Map<String, String> table, MessageKey key){
+		if(table instanceof MessageTable)return ((MessageTable) table).get(key);
+		if(table instanceof ChainTable)return ((ChainTable) table).get(key);
+		return null;
+	}
+
+	/**
+	 * Gets a compiled message from a table by key handle
+	 * @param table A table from this resolver, may be null
+	 * @param key The key handle
+	 * @return The compiled message or null if the table doesn't have it
+	 */
+	static MessageTemplate template(Map<String, String> table, MessageKey key){
+		if(table instanceof MessageTable)return ((MessageTable) table).getTemplate(key);
+		if(table instanceof ChainTable)return ((ChainTable) table).getTemplate(key);
+		return null;
+	}
+
+	/**
+	 * Gets the formats of the locale a message in a table came from
+	 * @param table A table from this resolver, may be null
+	 * @param key The key handle
+	 * @param fallback The formats to use if the table doesn't record where the message came from
+	 * @return The formats
+	 */
+	static LocaleFormats formats(Map<String, String> table, MessageKey key, LocaleFormats fallback){
+		LocaleFormats formats = null;
+		if(table instanceof MessageTable)formats = ((MessageTable) table).getFormats(key);
+		else if(table instanceof ChainTable)formats = ((ChainTable) table).getFormats(key);
+		return formats==null ? fallback : formats;
+	}
+
+	/**
+	 * Gets the formats a message should be rendered with for the specified player
+	 * @param uuid Player's UUID
+	 * @param key The key handle
+	 * @return The formats of the locale in the player's chain the message came from, or of the player's locale if no locale has it
+	 */
+	LocaleFormats getFormats(UUID uuid, MessageKey key){
+		PlayerLocaleContext context = players.get(uuid);
+		return context==null ? getFormats((String) null, key) : context.getFormats(key);
+	}
+
+	/**
+	 * Gets the formats a message should be rendered with in a locale
+	 * @param localeName The locale name, falls back to the default locale if it is null or isn't registered
+	 * @param key The key handle
+	 * @return The formats of the locale in the chain the message came from, or of the locale itself if no locale has it
+	 */
+	LocaleFormats getFormats(String localeName, MessageKey key){
+		return formats(getTable(localeName), key, LocaleFormats.forLocale(getResolvedLocale(localeName)));
+	}
+
+	/**
+	 * Gets the current version of the tables, which changes whenever any table or registered locale changes
+	 * @return An object only equal by identity to itself
+	 */
+	Object getVersion(){
+		return tables;
+	}
+
+	/**
+	 * Gets the locale whose table resolves messages for the specified player
+	 * @param uuid Player's UUID
+	 * @return The player's locale, or the default locale if the player's locale isn't registered
+	 */
+	String getResolvedLocale(UUID uuid){
+		PlayerLocaleContext context = players.get(uuid);
+		return context==null ? defaultLocale : context.getResolvedLocale();
+	}
+
+	/**
+	 * Gets the locale whose table resolves messages for a selected locale
+	 * @param localeName The selected locale, may be null
+	 * @return The selected locale, or the default locale if it is null or isn't registered
+	 */
+	String getResolvedLocale(String localeName){
+		if(localeName!=null && locales.containsKey(localeName))return localeName;
+		return defaultLocale;
+	}
+
+	/**
+	 * Resolves the compiled message for the specified player
+	 * @param uuid Player's UUID
+	 * @param key The key to the message
+	 * @return The compiled message or null if no locale in the chain has the key
+	 */
+	MessageTemplate resolveTemplate(UUID uuid, String key){
+		MessageKey handle = MessageKey.find(key);
+		return handle==null ? null : resolveTemplate(uuid, handle);
+	}
+
+	/**
+	 * Resolves the compiled message for the specified player by key handle
+	 * @param uuid Player's UUID
+	 * @param key The key handle
+	 * @return The compiled message or null if no locale in the chain has the key
+	 */
+	MessageTemplate resolveTemplate(UUID uuid, MessageKey key){
+		PlayerLocaleContext context = players.get(uuid);
+		MessageTemplate template = template(context==null ? getTable(null) : context.getTable(), key);
+		record(context, key.getName(), template!=null);
+		return template;
+	}
+
+	/**
+	 * Resolves the compiled message in a locale by key handle
+	 * @param localeName The locale name, falls back to the default locale if it is null or isn't registered
+	 * @param key The key handle
+	 * @return The compiled message or null if no locale in the chain has the key
+	 */
+	MessageTemplate resolveTemplate(String localeName, MessageKey key){
+		return template(getTable(localeName), key);
+	}
+
+	/**
+	 * Gets the flattened lookup table for the locale, falling back to the default locale's table
+	 * @param localeName The locale name, may be null
+	 * @return The read-only table or null if neither locale is registered
+	 */
+	Map<String, String> getTable(String localeName){
+		Map<String, String> table = localeName==null ? null : table(localeName);
+		if(table==null)table = table(defaultLocale);
+		return table;
+	}
+	
+	/**
+	 * Gets the table for a locale, building it if the locale is lazy and hasn't been used yet
+	 * @param localeName The locale name
+	 * @return The read-only table or null if the locale isn't registered
+	 */
+	private Map<String, String> table(String localeName){
+		Map<String, String> table = tables.get(localeName);
+		if(table==null && locales.containsKey(localeName))table = buildTable(localeName);
+		return table;
+	}
+	
+	/**
+	 * Builds and publishes the table for a lazy locale
+	 * The chain is loaded before taking the lock so a slow load doesn't block other lookups
+	 * @param localeName The locale name
+	 * @return The read-only table or null if the locale was unregistered meanwhile
+	 */
+	private Map<String, String> buildTable(String localeName){
+		Map<String, LocaleConfig> current = locales;
+		for(String name : getChain(current, localeName)){
+			current.get(name).ensureLoaded();
+		}
+		synchronized(this){
+			Map<String, String> table = tables.get(localeName);
+			if(table!=null || !locales.containsKey(localeName))return table;
+			HashMap<String, Map<String, String>> next = new HashMap<>(tables);
+			table = flatten(localeName);
+			next.put(localeName, table);
+			tables = Collections.unmodifiableMap(next);
+			return table;
+		}
+	}
+
+	/**
+	 * Gets the flattened lookup table for the locale
+	 * @param localeName The locale name
+	 * @return The read-only table or null if the locale isn't registered
+	 */
+	Map<String, String> getFlattened(String localeName){
+		return table(localeName);
+	}
+
+	/**
+	 * Builds the fallback chain for a locale
+	 * Each "_" suffix is stripped to find registered parents, and the default locale is always last
+	 * @param localeName The locale name
+	 * @return The chain starting with the locale itself
+	 */
+	List<String> getChain(String localeName){
+		return getChain(locales, localeName);
+	}
+
+	/**
+	 * Builds the fallback chain for a locale from a snapshot of the registered locales, see {@link #getChain(String)}
+	 * @param current The snapshot, every locale in the chain is registered in it
+	 * @param localeName The locale name
+	 * @return The chain starting with the locale itself
+	 */
+	private List<String> getChain(Map<String, LocaleConfig> current, String localeName){
+		String fallback = defaultLocale;
+		ArrayList<String> chain = new ArrayList<>();
+		String name = localeName;
+		while(name!=null){
+			if(current.containsKey(name) && !chain.contains(name))chain.add(name);
+			int split = name.lastIndexOf('_');
+			name = split>0 ? name.substring(0, split) : null;
+		}
+		if(current.containsKey(fallback) && !chain.contains(fallback))chain.add(fallback);
+		return chain;
+	}
+
+	/**
+	 * Sets the default locale and rebuilds every table since the default is in every chain
+	 * @param defaultLocale The new default locale
+	 */
+	synchronized void setDefaultLocale(String defaultLocale){
+		this.defaultLocale = defaultLocale;
+		rebuildAll();
+	}
+
+	/**
+	 * Replaces the registered locales and rebuilds the tables of every locale whose chain can include the changed locale
+	 * Called when a locale is registered, unregistered or reloaded
+	 * @param locales The new read-only snapshot of all registered locales
+	 * @param localeName The changed locale
+	 */
+	synchronized void localeChanged(Map<String, LocaleConfig> locales, String localeName){
+		this.locales = locales;
+		if(localeName.equals(defaultLocale)){
+			rebuildAll();
+			return;
+		}
+		HashMap<String, Map<String, String>> next = new HashMap<>(tables);
+		next.remove(localeName);
+		String prefix = localeName + "_";
+		for(LocaleConfig config : locales.values()){
+			String name = config.getLocaleName();
+			if(!name.equals(localeName) && !name.startsWith(prefix))continue;
+			if(config.isLazy())next.remove(name);
+			else next.put(name, flatten(name));
+		}
+		tables = Collections.unmodifiableMap(next);
+	}
+	
+	/**
+	 * Drops the tables of every locale whose chain can include the evicted locale
+	 * They are built again on next use
+	 * @param localeName The evicted locale
+	 */
+	synchronized void localeEvicted(String localeName){
+		if(localeName.equals(defaultLocale)){
+			//A new map rather than the shared empty map, so the version always changes
+			tables = Collections.unmodifiableMap(new HashMap<String, Map<String, String>>());
+			return;
+		}
+		HashMap<String, Map<String, String>> next = new HashMap<>(tables);
+		String prefix = localeName + "_";
+		next.keySet().removeIf(name -> name.equals(localeName) || name.startsWith(prefix));
+		tables = Collections.unmodifiableMap(next);
+	}
+
+	/**
+	 * Updates a single key in every table whose chain includes the changed locale
+	 * Each affected table is copied, so this costs the size of those tables
+	 * @param localeName The locale the message was set in
+	 * @param key The key that changed
+	 */
+	synchronized void messageChanged(String localeName, String key){
+		HashMap<String, Map<String, String>> next = new HashMap<>(tables);
+		for(Entry<String, Map<String, String>> entry : tables.entrySet()){
+			List<String> chain = getChain(entry.getKey());
+			if(!chain.contains(localeName))continue;
+			//Chain tables read the configs in place, only their compiled messages need dropping
+			if(entry.getValue() instanceof ChainTable){
+				next.put(entry.getKey(), ((ChainTable) entry.getValue()).copy());
+				continue;
+			}
+			String message = null;
+			LocaleFormats source = null;
+			for(String name : chain){
+				message = locales.get(name).getMessage(key);
+				if(message==null)continue;
+				source = LocaleFormats.forLocale(name);
+				break;
+			}
+			next.put(entry.getKey(), ((MessageTable) entry.getValue()).with(key, message, source));
+		}
+		tables = Collections.unmodifiableMap(next);
+	}
+
+	/**
+	 * Rebuilds the tables of all registered locales
+	 */
+	synchronized void rebuildAll(){
+		HashMap<String, Map<String, String>> next = new HashMap<>();
+		for(LocaleConfig config : locales.values()){
+			if(!config.isLazy())next.put(config.getLocaleName(), flatten(config.getLocaleName()));
+		}
+		tables = Collections.unmodifiableMap(next);
+	}
+
+	/**
+	 * Flattens the chain of a locale into a single table
+	 * Entries are applied from the end of the chain so the most specific locale wins
+	 * @param localeName The locale to flatten
+	 * @return The read-only flattened table
+	 */
+	private Map<String, String> flatten(String localeName){
+		List<String> chain = getChain(localeName);
+		LocaleConfig[] configs = new LocaleConfig[chain.size()];
+		boolean offHeap = false;
+		for(int i = 0; i < configs.length; i++){
+			configs[i] = locales.get(chain.get(i));
+			offHeap |= configs[i].isOffHeap();
+		}
+		if(offHeap)return new ChainTable(configs);
+		MessageTable[] tables = new MessageTable[configs.length];
+		LocaleFormats[] formats = new LocaleFormats[configs.length];
+		for(int i = 0; i < configs.length; i++){
+			tables[i] = MessageTable.of(configs[i].getMessages());
+			formats[i] = LocaleFormats.forLocale(chain.get(i));
+		}
+		//Only span the key indices the chain uses
+		int start = Integer.MAX_VALUE;
+		int end = Integer.MIN_VALUE;
+		for(MessageTable table : tables){
+			if(table.isEmpty())continue;
+			start = Math.min(start, table.start());
+			end = Math.max(end, table.end());
+		}
+		if(start>=end)return MessageTable.wrap(0, new String[0], new MessageTemplate[0], new byte[0], formats);
+		String[] values = new String[end - start];
+		MessageTemplate[] templates = new MessageTemplate[values.length];
+		//Which locale of the chain each message came from, so it is formatted with that locale's rules
+		byte[] sources = new byte[values.length];
+		for(int i = tables.length - 1; i >= 0; i--){
+			if(!tables[i].isEmpty())tables[i].copyInto(start, values, templates, sources, (byte) i);
+		}
+		return MessageTable.wrap(start, values, templates, sources, formats);
+	}
+
+	/**
+	 * Read-only table for a chain that includes an off heap locale
+	 * Lookups walk the chain in place so the off heap messages are never copied onto the heap
+	 * Messages are compiled on first use and cached until the chain changes
+	 */
+	private static final class ChainTable extends AbstractMap<String, String> {
+
+		private final LocaleConfig[] chain;
+		private final ConcurrentHashMap<MessageKey, MessageTemplate> templates;
+
+		private ChainTable(LocaleConfig[] chain){
+			this.chain = chain;
+			this.templates = new ConcurrentHashMap<>();
+		}
+
+		/**
+		 * Creates a table over the same chain without any compiled messages
+		 * @return The new table
+		 */
+		ChainTable copy(){
+			return new ChainTable(chain);
+		}
+
+		LocaleFormats getFormats(MessageKey key){
+			for(LocaleConfig config : chain){
+				if(config.getMessage(key)!=null)return LocaleFormats.forLocale(config.getLocaleName());
+			}
+			return null;
+		}
+
+		MessageTemplate getTemplate(MessageKey key){
+			MessageTemplate template = templates.get(key);
+			if(template!=null)return template;
+			String message = get(key);
+			if(message==null)return null;
+			template = MessageTemplate.compile(message);
+			templates.put(key, template);
+			return template;
+		}
+
+		@Override
+		public String get(Object key){
+			if(!(key instanceof String))return null;
+			for(LocaleConfig config : chain){
+				String message = config.getMessage((String) key);
+				if(message!=null)return message;
+			}
+			return null;
+		}
+
+		String get(MessageKey key){
+			for(LocaleConfig config : chain){
+				String message = config.getMessage(key);
+				if(message!=null)return message;
+			}
+			return null;
+		}
+
+		@Override
+		public boolean containsKey(Object key){
+			return get(key)!=null;
+		}
+
+		/**
+		 * Decodes the whole chain, avoid on hot paths
+		 */
+		@Override
+		public Set<Entry<String, String>> entrySet(){
+			HashMap<String, String> table = new HashMap<>();
+			for(int i = chain.length - 1; i >= 0; i--){
+				for(Entry<String, String> entry : chain[i].getMessages().entrySet()){
+					if(entry.getValue()!=null)table.put(entry.getKey(), entry.getValue());
+				}
+			}
+			return Collections.unmodifiableMap(table).entrySet();
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package me.cory.localization;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable read-only map of messages stored as a flat array indexed by {@link MessageKey#getIndex()}
+ * Holds no keys or map nodes of its own, keys come from the shared MessageKey registry.
+ * The array only spans the range of key indices this table uses, so keys registered by other locales or plugins don't grow it
+ * Each message is compiled into a {@link MessageTemplate} the first time it is formatted, so messages that are never formatted are only held as strings
+ * Templates compiled before a copy are shared with tables copied from this one
+ * Flattened fallback chains also record which locale each message came from, so it is formatted with that locale's plural and number rules
+ * A null message is the same as no message
+ * @author Cory Caron
+ */
+final class MessageTable extends AbstractMap<String, String> {
+
+	static final MessageTable EMPTY = new MessageTable(0, new String[0], new MessageTemplate[0], null, null);
+
+	//Key index of the first array slot
+	private final int offset;
+	private final String[] values;
+	private final MessageTemplate[] templates;
+	//Index into sourceFormats of the locale each message came from, -1 if unknown, null unless this is a flattened chain
+	private final byte[] sources;
+	private final LocaleFormats[] sourceFormats;
+	private final int size;
+
+	private MessageTable(int offset, String[] values, MessageTemplate[] templates, byte[] sources, LocaleFormats[] sourceFormats){
+		this.offset = offset;
+		this.values = values;
+		this.templates = templates;
+		this.sources = sources;
+		this.sourceFormats = sourceFormats;
+		int size = 0;
+		for(String value : values){
+			if(value!=null)size++;
+		}
+		this.size = size;
+	}
+
+	/**
+	 * Builds a table from a map of messages, registering any new keys
+	 * @param messages Map of all key:message pairs
+	 * @return The table
+	 */
+	static MessageTable of(Map<String, String> messages){
+		if(messages instanceof MessageTable)return (MessageTable) messages;
+		return EMPTY.with(messages);
+	}
+
+	/**
+	 * Builds a table from flat arrays indexed by MessageKey, the arrays must not be changed afterwards
+	 * @param offset The key index of the first slot
+	 * @param values The messages by key index minus the offset
+	 * @param templates The compiled messages by key index minus the offset, null entries are compiled when first used
+	 * @return The table
+	 */
+	static MessageTable wrap(int offset, String[] values, MessageTemplate[] templates){
+		return new MessageTable(offset, values, templates, null, null);
+	}
+
+	/**
+	 * Builds a flattened chain table from flat arrays indexed by MessageKey, the arrays must not be changed afterwards
+	 * @param offset The key index of the first slot
+	 * @param values The messages by key index minus the offset
+	 * @param templates The compiled messages by key index minus the offset, null entries are compiled when first used
+	 * @param sources The index into sourceFormats of the locale each message came from
+	 * @param sourceFormats The formats of each locale in the chain
+	 * @return The table
+	 */
+	static MessageTable wrap(int offset, String[] values, MessageTemplate[] templates, byte[] sources, LocaleFormats[] sourceFormats){
+		return new MessageTable(offset, values, templates, sources, sourceFormats);
+	}
+
+	/**
+	 * Gets the message for a key handle
+	 * @param key The key handle
+	 * @return The message or null if this table doesn't have one
+	 */
+	String get(MessageKey key){
+		int index = key.getIndex() - offset;
+		return index>=0 && index<values.length ? values[index] : null;
+	}
+
+	/**
+	 * Gets the compiled message for a key handle
+	 * @param key The key handle
+	 * @return The template or null if this table doesn't have the message
+	 */
+	MessageTemplate getTemplate(MessageKey key){
+		int index = key.getIndex() - offset;
+		if(index<0 || index>=templates.length)return null;
+		MessageTemplate template = templates[index];
+		if(template==null && values[index]!=null){
+			//Templates are immutable, so two threads racing here only compile twice
+			template = MessageTemplate.compile(values[index]);
+			templates[index] = template;
+		}
+		return template;
+	}
+
+	/**
+	 * Gets the formats of the locale a message came from
+	 * @param key The key handle
+	 * @return The formats or null if this table doesn't have the message or isn't a flattened chain
+	 */
+	LocaleFormats getFormats(MessageKey key){
+		if(sources==null)return null;
+		int index = key.getIndex() - offset;
+		if(index<0 || index>=sources.length || values[index]==null)return null;
+		int source = sources[index];
+		return source<0 ? null : sourceFormats[source];
+	}
+
+	/**
+	 * Gets the lowest key index this table spans
+	 * @return The first key index
+	 */
+	int start(){
+		return offset;
+	}
+
+	/**
+	 * Gets the key index after the last one this table spans
+	 * @return The end key index, equal to start() for an empty table
+	 */
+	int end(){
+		return offset + values.length;
+	}
+
+	@Override
+	public String get(Object key){
+		if(!(key instanceof String))return null;
+		MessageKey handle = MessageKey.find((String) key);
+		return handle==null ? null : get(handle);
+	}
+
+	@Override
+	public boolean containsKey(Object key){
+		return get(key)!=null;
+	}
+
+	@Override
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Copies every message of this table over the arrays, used to flatten fallback chains
+	 * @param targetOffset The key index of the first slot of the arrays
+	 * @param targetValues The messages by key index minus the target offset, spanning this table
+	 * @param targetTemplates The compiled messages by key index minus the target offset, spanning this table, only templates already compiled are copied
+	 */
+	void copyInto(int targetOffset, String[] targetValues, MessageTemplate[] targetTemplates){
+		copyInto(targetOffset, targetValues, targetTemplates, null, (byte) -1);
+	}
+
+	/**
+	 * Copies every message of this table over the arrays, recording the locale they came from
+	 * @param targetOffset The key index of the first slot of the arrays
+	 * @param targetValues The messages by key index minus the target offset, spanning this table
+	 * @param targetTemplates The compiled messages by key index minus the target offset, spanning this table
+	 * @param targetSources The locale of each message by key index minus the target offset, or null
+	 * @param source The index of this table's locale in the chain
+	 */
+	void copyInto(int targetOffset, String[] targetValues, MessageTemplate[] targetTemplates, byte[] targetSources, byte source){
+		int shift = offset - targetOffset;
+		for(int i = 0; i < values.length; i++){
+			if(values[i]==null)continue;
+			targetValues[i + shift] = values[i];
+			targetTemplates[i + shift] = templates[i];
+			if(targetSources!=null)targetSources[i + shift] = source;
+		}
+	}
+
+	/**
+	 * Creates a copy of this table with one message changed
+	 * @param key The key
+	 * @param message The new message or null to remove it
+	 * @return The new table
+	 */
+	MessageTable with(String key, String message){
+		return with(new MessageKey[]{MessageKey.of(key)}, new String[]{message}, null);
+	}
+
+	/**
+	 * Creates a copy of this flattened chain table with one message changed
+	 * @param key The key
+	 * @param message The new message or null to remove it
+	 * @param source The formats of the locale the new message came from
+	 * @return The new table
+	 */
+	MessageTable with(String key, String message, LocaleFormats source){
+		return with(new MessageKey[]{MessageKey.of(key)}, new String[]{message}, source);
+	}
+
+	/**
+	 * Creates a copy of this table with many messages changed, only copying the array once
+	 * @param messages Map of all key:message pairs to set, null messages remove the key
+	 * @return The new table
+	 */
+	MessageTable with(Map<String, String> messages){
+		MessageKey[] handles = new MessageKey[messages.size()];
+		String[] changed = new String[handles.length];
+		int i = 0;
+		for(Entry<String, String> entry : messages.entrySet()){
+			handles[i] = MessageKey.of(entry.getKey());
+			changed[i] = entry.getValue();
+			i++;
+		}
+		return with(handles, changed, null);
+	}
+
+	/**
+	 * Creates a copy of this table with messages changed, spanning this table's range widened to the new messages
+	 * @param handles The key handles
+	 * @param changed The new messages in key order, null to remove the key
+	 * @param source The formats of the locale the new messages came from, or null if unknown
+	 * @return The new table
+	 */
+	private MessageTable with(MessageKey[] handles, String[] changed, LocaleFormats source){
+		int start = size==0 ? Integer.MAX_VALUE : offset;
+		int end = size==0 ? Integer.MIN_VALUE : offset + values.length;
+		for(int i = 0; i < handles.length; i++){
+			if(changed[i]==null)continue;
+			start = Math.min(start, handles[i].getIndex());
+			end = Math.max(end, handles[i].getIndex() + 1);
+		}
+		if(start>=end)return sources==null ? EMPTY : wrap(0, new String[0], new MessageTemplate[0], new byte[0], sourceFormats);
+		String[] next = new String[end - start];
+		MessageTemplate[] nextTemplates = new MessageTemplate[next.length];
+		if(size>0)copyInto(start, next, nextTemplates);
+		byte[] nextSources = null;
+		LocaleFormats[] nextFormats = sourceFormats;
+		byte changedSource = -1;
+		if(sources!=null){
+			nextSources = new byte[next.length];
+			if(size>0)System.arraycopy(sources, 0, nextSources, offset - start, sources.length);
+			if(source!=null){
+				int found = 0;
+				while(found<nextFormats.length && nextFormats[found]!=source)found++;
+				if(found==nextFormats.length){
+					nextFormats = Arrays.copyOf(nextFormats, found + 1);
+					nextFormats[found] = source;
+				}
+				changedSource = (byte) found;
+			}
+		}
+		for(int i = 0; i < handles.length; i++){
+			int index = handles[i].getIndex() - start;
+			if(index<0 || index>=next.length)continue;
+			next[index] = changed[i];
+			nextTemplates[index] = null;
+			if(nextSources!=null)nextSources[index] = changedSource;
+		}
+		return new MessageTable(start, next, nextTemplates, nextSources, nextFormats);
+	}
+
+	@Override
+	public Set<Entry<String, String>> entrySet(){
+		return new AbstractSet<Entry<String, String>>(){
+
+			@Override
+			public Iterator<Entry<String, String>> iterator(){
+				return new Iterator<Entry<String, String>>(){
+
+					private int index = advance(0);
+
+					private int advance(int from){
+						while(from<values.length && values[from]==null)from++;
+						return from;
+					}
+
+					@Override
+					public boolean hasNext(){
+						return index<values.length;
+					}
+
+					@Override
+					public Entry<String, String> next(){
+						if(!hasNext())throw new NoSuchElementException();
+						Entry<String, String> entry = new SimpleImmutableEntry<>(MessageKey.byIndex(offset + index).getName(), values[index]);
+						index = advance(index + 1);
+						return entry;
+					}
+				};
+			}
+
+			@Override
+			public int size(){
+				return size;
+			}
+		};
+	}
+}
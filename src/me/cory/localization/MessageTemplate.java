@@ -0,0 +1,477 @@
+package me.cory.localization;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * A message compiled once into literal segments and argument slots
+ * Color codes using '&amp;' are translated at compile time without Bukkit, and placeholders are either positional ({0}, {1}) or named ({player})
+ * Rendering appends the segments and arguments to a StringBuilder, with no regex or intermediate strings
+ * Arguments are not color translated, so player supplied text can't inject colors
+ *
+ * Placeholders can be formatted for the locale with {@link LocaleFormats}:
+ * {0,number} groups digits, {0,date}, {0,time} and {0,datetime} format dates,
+ * and {0,plural,=0{no coins} one{# coin} other{# coins}} picks a form by plural category, with # replaced by the formatted number
+ * @author Cory Caron
+ */
+public final class MessageTemplate {
+
+	//Builder reused by render on each thread, taken out while in use so an argument rendering another template gets its own
+	private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<>();
+	private static final int MAX_REUSED_CAPACITY = 8192;
+	//Color and format codes that may follow '&', matching ChatColor.translateAlternateColorCodes in 1.15.2
+	private static final String COLOR_CODES = "0123456789AaBbCcDdEeFfKkLlMmNnOoRr";
+	private static final char COLOR_CHAR = '\u00A7';
+
+	private static final int PLAIN = 0;
+	private static final int NUMBER = 1;
+	private static final int DATE = 2;
+	private static final int TIME = 3;
+	private static final int DATETIME = 4;
+	private static final int PLURAL = 5;
+	//The number of the enclosing plural, only inside plural forms
+	private static final int POUND = 6;
+
+	private final String message;
+	//Literal segments around the slots, there is always one more literal than slots
+	private final String[] literals;
+	private final Slot[] slots;
+	private final boolean localized;
+
+	private MessageTemplate(String message, String[] literals, Slot[] slots){
+		this.message = message;
+		this.literals = literals;
+		this.slots = slots;
+		boolean localized = false;
+		for(Slot slot : slots){
+			localized |= slot.type!=PLAIN;
+		}
+		this.localized = localized;
+	}
+
+	/**
+	 * Compiles a message into a template
+	 * A '{' that doesn't open a valid placeholder is kept as text
+	 * @param message The raw message
+	 * @return The compiled template
+	 */
+	public static MessageTemplate compile(String message){
+		return compile(message, false);
+	}
+
+	/**
+	 * Compiles a message or a plural form into a template
+	 * @param message The raw message
+	 * @param pluralForm True if '#' should be the number of the enclosing plural
+	 * @return The compiled template
+	 */
+	private static MessageTemplate compile(String message, boolean pluralForm){
+		//A single pass, since parsing a plural compiles each of its forms
+		Parser parser = new Parser(message, pluralForm);
+		ArrayList<String> literals = new ArrayList<>();
+		ArrayList<Slot> slots = new ArrayList<>();
+		int start = 0;
+		Slot slot;
+		while((slot = parser.next())!=null){
+			slots.add(slot);
+			literals.add(translateColors(message.substring(start, parser.slotStart)));
+			start = parser.position;
+		}
+		literals.add(translateColors(message.substring(start)));
+		return new MessageTemplate(message, literals.toArray(new String[0]), slots.toArray(new Slot[0]));
+	}
+
+	/**
+	 * Translates '&amp;' color codes to section sign codes, like ChatColor.translateAlternateColorCodes
+	 * @param text The text to translate
+	 * @return The translated text, or the same instance if it has no color codes
+	 */
+	static String translateColors(String text){
+		int i = text.indexOf('&');
+		if(i<0)return text;
+		char[] chars = null;
+		for(; i >= 0 && i < text.length() - 1; i = text.indexOf('&', i + 1)){
+			if(COLOR_CODES.indexOf(text.charAt(i + 1))<0)continue;
+			if(chars==null)chars = text.toCharArray();
+			chars[i] = COLOR_CHAR;
+			chars[i + 1] = Character.toLowerCase(chars[i + 1]);
+		}
+		return chars==null ? text : new String(chars);
+	}
+
+	/**
+	 * Gets the raw message this template was compiled from
+	 * @return The raw message
+	 */
+	public String getMessage(){
+		return message;
+	}
+
+	/**
+	 * Gets the number of placeholders in this template
+	 * @return The slot count
+	 */
+	public int getSlotCount(){
+		return slots.length;
+	}
+
+	/**
+	 * Checks if rendering depends on the locale, because of number, date or plural placeholders
+	 * @return True if this template has localized placeholders
+	 */
+	public boolean isLocalized(){
+		return localized;
+	}
+
+	/**
+	 * Renders this template with positional arguments, formatting for the root locale
+	 * @param args The arguments for {0}, {1} and so on
+	 * @return The color translated message with placeholders replaced
+	 */
+	public String render(Object... args){
+		return render(LocaleFormats.ROOT, args);
+	}
+
+	/**
+	 * Renders this template with positional arguments
+	 * @param formats The formats of the locale the message is in
+	 * @param args The arguments for {0}, {1} and so on
+	 * @return The color translated message with placeholders replaced
+	 */
+	public String render(LocaleFormats formats, Object... args){
+		if(slots.length==0)return literals[0];
+		StringBuilder builder = acquire();
+		try {
+			return append(builder, formats, args, null, null).toString();
+		} finally {
+			release(builder);
+		}
+	}
+
+	/**
+	 * Renders this template with named arguments, formatting for the root locale
+	 * @param args The arguments by placeholder name, positional placeholders are looked up as "0", "1" and so on
+	 * @return The color translated message with placeholders replaced
+	 */
+	public String render(Map<String, ?> args){
+		return render(LocaleFormats.ROOT, args);
+	}
+
+	/**
+	 * Renders this template with named arguments
+	 * @param formats The formats of the locale the message is in
+	 * @param args The arguments by placeholder name, positional placeholders are looked up as "0", "1" and so on
+	 * @return The color translated message with placeholders replaced
+	 */
+	public String render(LocaleFormats formats, Map<String, ?> args){
+		if(slots.length==0)return literals[0];
+		StringBuilder builder = acquire();
+		try {
+			return append(builder, formats, null, args, null).toString();
+		} finally {
+			release(builder);
+		}
+	}
+
+	/**
+	 * Appends this template rendered with positional arguments
+	 * Placeholders without an argument are kept as written
+	 * @param out The builder to append to
+	 * @param formats The formats of the locale the message is in
+	 * @param args The arguments for {0}, {1} and so on
+	 * @return The builder
+	 */
+	public StringBuilder render(StringBuilder out, LocaleFormats formats, Object... args){
+		return append(out, formats, args, null, null);
+	}
+
+	/**
+	 * Appends this template rendered with named arguments
+	 * Placeholders without an argument are kept as written
+	 * @param out The builder to append to
+	 * @param formats The formats of the locale the message is in
+	 * @param args The arguments by placeholder name
+	 * @return The builder
+	 */
+	public StringBuilder render(StringBuilder out, LocaleFormats formats, Map<String, ?> args){
+		return append(out, formats, null, args, null);
+	}
+
+	/**
+	 * Appends this template rendered with either positional or named arguments
+	 * @param out The builder to append to
+	 * @param formats The formats of the locale the message is in
+	 * @param args The positional arguments or null
+	 * @param named The named arguments or null
+	 * @param pound The number of the enclosing plural or null
+	 * @return The builder
+	 */
+	private StringBuilder append(StringBuilder out, LocaleFormats formats, Object[] args, Map<String, ?> named, Object pound){
+		for(int i = 0; i < slots.length; i++){
+			out.append(literals[i]);
+			Slot slot = slots[i];
+			if(slot.type==POUND){
+				formats.appendNumber(out, pound);
+				continue;
+			}
+			Object arg;
+			if(named!=null){
+				arg = named.get(slot.name);
+				if(arg==null && !named.containsKey(slot.name)){
+					out.append(slot.source);
+					continue;
+				}
+			}else if(slot.index>=0 && args!=null && slot.index<args.length){
+				arg = args[slot.index];
+			}else{
+				out.append(slot.source);
+				continue;
+			}
+			switch(slot.type){
+			case NUMBER:
+				formats.appendNumber(out, arg);
+				break;
+			case DATE:
+				formats.appendDate(out, arg);
+				break;
+			case TIME:
+				formats.appendTime(out, arg);
+				break;
+			case DATETIME:
+				formats.appendDateTime(out, arg);
+				break;
+			case PLURAL:
+				slot.select(formats, arg).append(out, formats, args, named, arg);
+				break;
+			default:
+				appendArgument(out, arg);
+			}
+		}
+		return out.append(literals[slots.length]);
+	}
+
+	/**
+	 * Appends an argument, numbers are appended without creating a string
+	 * @param out The builder to append to
+	 * @param arg The argument
+	 */
+	private static void appendArgument(StringBuilder out, Object arg){
+		if(arg instanceof CharSequence)out.append((CharSequence) arg);
+		else if(arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte)out.append(((Number) arg).longValue());
+		else out.append(arg);
+	}
+
+	/**
+	 * Takes this thread's reusable builder, or a new one if it is already in use
+	 * @return The empty builder
+	 */
+	private static StringBuilder acquire(){
+		StringBuilder builder = BUILDER.get();
+		if(builder==null)return new StringBuilder(256);
+		BUILDER.set(null);
+		builder.setLength(0);
+		return builder;
+	}
+
+	/**
+	 * Returns a builder for reuse by this thread, unless a huge message grew it
+	 * @param builder The builder from acquire
+	 */
+	private static void release(StringBuilder builder){
+		if(builder.capacity()<=MAX_REUSED_CAPACITY)BUILDER.set(builder);
+	}
+
+	@Override
+	public String toString(){
+		return message;
+	}
+
+	/**
+	 * A placeholder
+	 */
+	private static final class Slot {
+
+		private final String source;
+		private final String name;
+		private final int index;
+		private final int type;
+		//Plural selectors (=0, one, other...) and their compiled forms
+		private final String[] selectors;
+		private final MessageTemplate[] forms;
+
+		private Slot(String source, String name, int type, String[] selectors, MessageTemplate[] forms){
+			this.source = source;
+			this.name = name;
+			this.index = index(name);
+			this.type = type;
+			this.selectors = selectors;
+			this.forms = forms;
+		}
+
+		/**
+		 * Picks the plural form for a number, an exact match wins over its category, and "other" is the last resort
+		 * @param formats The formats of the locale the message is in
+		 * @param arg The number
+		 * @return The form to render
+		 */
+		private MessageTemplate select(LocaleFormats formats, Object arg){
+			String category = formats.getPluralCategory(arg);
+			long exact = LocaleFormats.isIntegral(arg) ? ((Number) arg).longValue() : Long.MIN_VALUE;
+			MessageTemplate match = null;
+			MessageTemplate other = forms[forms.length - 1];
+			for(int i = 0; i < selectors.length; i++){
+				String selector = selectors[i];
+				if(selector.charAt(0)=='='){
+					if(exact!=Long.MIN_VALUE && exactValue(selector)==exact)return forms[i];
+				}else if(match==null && selector.equals(category)){
+					match = forms[i];
+				}else if(selector.equals("other")){
+					other = forms[i];
+				}
+			}
+			return match!=null ? match : other;
+		}
+
+		/**
+		 * Gets the number of an exact plural selector
+		 * @param selector The selector, such as =0
+		 * @return The number or Long.MAX_VALUE if it isn't a number
+		 */
+		private static long exactValue(String selector){
+			try {
+				return Long.parseLong(selector.substring(1));
+			} catch (NumberFormatException e) {
+				return Long.MAX_VALUE;
+			}
+		}
+
+		/**
+		 * Gets the position of a positional placeholder
+		 * @param name The placeholder name
+		 * @return The argument index or -1 if the placeholder is named
+		 */
+		private static int index(String name){
+			if(name.isEmpty() || name.length()>9)return -1;
+			int index = 0;
+			for(int i = 0; i < name.length(); i++){
+				char c = name.charAt(i);
+				if(c<'0' || c>'9')return -1;
+				index = index * 10 + (c - '0');
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Finds the placeholders in a message one after another
+	 */
+	private static final class Parser {
+
+		private final String message;
+		private final boolean pluralForm;
+		//Start of the last placeholder found and the position just after it
+		private int slotStart;
+		private int position;
+
+		private Parser(String message, boolean pluralForm){
+			this.message = message;
+			this.pluralForm = pluralForm;
+		}
+
+		/**
+		 * Finds the next placeholder
+		 * @return The placeholder or null if there are no more
+		 */
+		private Slot next(){
+			for(int i = position; i < message.length(); i++){
+				char c = message.charAt(i);
+				if(c=='#' && pluralForm){
+					slotStart = i;
+					position = i + 1;
+					return new Slot("#", "#", POUND, null, null);
+				}
+				if(c!='{')continue;
+				Slot slot = parse(i);
+				if(slot!=null)return slot;
+			}
+			position = message.length();
+			return null;
+		}
+
+		/**
+		 * Parses a placeholder
+		 * @param open The index of the '{'
+		 * @return The placeholder or null if this '{' doesn't open a valid one
+		 */
+		private Slot parse(int open){
+			int i = open + 1;
+			int nameEnd = readWord(i);
+			if(nameEnd==i || nameEnd>=message.length())return null;
+			String name = message.substring(i, nameEnd);
+			i = nameEnd;
+			if(message.charAt(i)=='}')return found(open, i + 1, new Slot(message.substring(open, i + 1), name, PLAIN, null, null));
+			if(message.charAt(i)!=',')return null;
+			i = skipSpaces(i + 1);
+			int typeEnd = readWord(i);
+			String type = message.substring(i, typeEnd);
+			i = skipSpaces(typeEnd);
+			if(i>=message.length())return null;
+			if(!type.equals("plural")){
+				if(message.charAt(i)!='}')return null;
+				int kind = type.equals("number") ? NUMBER : type.equals("date") ? DATE : type.equals("time") ? TIME : type.equals("datetime") ? DATETIME : -1;
+				if(kind<0)return null;
+				return found(open, i + 1, new Slot(message.substring(open, i + 1), name, kind, null, null));
+			}
+			if(message.charAt(i)!=',')return null;
+			ArrayList<String> selectors = new ArrayList<>();
+			ArrayList<MessageTemplate> forms = new ArrayList<>();
+			i = skipSpaces(i + 1);
+			while(i<message.length() && message.charAt(i)!='}'){
+				int selectorStart = i;
+				if(message.charAt(i)=='=')i++;
+				int selectorEnd = readWord(i);
+				if(selectorEnd==i)return null;
+				String selector = message.substring(selectorStart, selectorEnd);
+				i = skipSpaces(selectorEnd);
+				if(i>=message.length() || message.charAt(i)!='{')return null;
+				int formEnd = matchingBrace(i);
+				if(formEnd<0)return null;
+				selectors.add(selector);
+				forms.add(compile(message.substring(i + 1, formEnd), true));
+				i = skipSpaces(formEnd + 1);
+			}
+			if(i>=message.length() || !selectors.contains("other"))return null;
+			return found(open, i + 1, new Slot(message.substring(open, i + 1), name, PLURAL, selectors.toArray(new String[0]), forms.toArray(new MessageTemplate[0])));
+		}
+
+		private Slot found(int start, int end, Slot slot){
+			slotStart = start;
+			position = end;
+			return slot;
+		}
+
+		private int readWord(int i){
+			while(i<message.length()){
+				char c = message.charAt(i);
+				if(!Character.isLetterOrDigit(c) && c!='_' && c!='-' && c!='.')break;
+				i++;
+			}
+			return i;
+		}
+
+		private int skipSpaces(int i){
+			while(i<message.length() && message.charAt(i)==' ')i++;
+			return i;
+		}
+
+		private int matchingBrace(int open){
+			int depth = 0;
+			for(int i = open; i < message.length(); i++){
+				char c = message.charAt(i);
+				if(c=='{')depth++;
+				else if(c=='}' && --depth==0)return i;
+			}
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package me.cory.localization;
+
+/**
+ * Receives LocaleMetrics, to export them to a monitoring system
+ * Add one with LocaleMetrics#addSink(MetricsSink, long)
+ * @author Cory Caron
+ */
+public interface MetricsSink {
+
+	/**
+	 * Called every period with the current metrics
+	 * @param snapshot The metrics
+	 */
+	void publish(LocaleMetrics.Snapshot snapshot);
+
+	/**
+	 * Called on every I/O error, from the thread it happened on
+	 * @param operation What was being done, such as "load" or "save"
+	 * @param target What it was being done to, such as a locale or file name
+	 * @param error The error
+	 */
+	default void error(String operation, String target, Exception error){
+	}
+}
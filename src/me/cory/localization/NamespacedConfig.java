@@ -0,0 +1,89 @@
+package me.cory.localization;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * A plugin's CSV or YAML locale file in the shared service, read from the plugin's own data folder
+ * Keys are prefixed with the plugin's namespace, such as "myplugin:welcome", and the prefix is stripped again on save
+ * Always lazy, since the shared config copies the messages and drops them from here
+ * @author Cory Caron
+ */
+final class NamespacedConfig extends LocaleConfig {
+
+	private final JavaPlugin plugin;
+	private final String subdirectory;
+	private final String prefix;
+	private final boolean yaml;
+
+	/**
+	 * Construct the namespaced config
+	 * @param localeName The locale name
+	 * @param folder The folder the locale file is in, under the plugin's data folder
+	 * @param plugin The plugin the file belongs to
+	 * @param namespace The namespace of the plugin's keys
+	 * @param yaml True for a YAML file, false for CSV
+	 */
+	NamespacedConfig(String localeName, File folder, JavaPlugin plugin, String namespace, boolean yaml){
+		super(localeName, folder, true);
+		this.plugin = plugin;
+		this.subdirectory = plugin.getDataFolder().toPath().relativize(folder.toPath()).toString();
+		this.prefix = namespace + LocaleService.SEPARATOR;
+		this.yaml = yaml;
+	}
+
+	/**
+	 * Loads all localized messages from the plugin's file, prefixing each key with the namespace
+	 */
+	@Override
+	public void loadMessages() {
+		try {
+			HashMap<String, String> messages = new HashMap<>();
+			if(yaml){
+				FileConfiguration config = YamlUtil.getConfig(plugin, getLocaleName(), subdirectory);
+				for(String key : config.getKeys(true)){
+					if(!config.isConfigurationSection(key))messages.put(prefix + key, config.getString(key));
+				}
+			}else{
+				for(Entry<String, String> entry : CsvUtil.convertToMap(CsvUtil.getConfig(plugin, getLocaleName(), subdirectory)).entrySet()){
+					messages.put(prefix + entry.getKey(), entry.getValue());
+				}
+			}
+			setMessages(messages);
+		} catch (IOException | IllegalArgumentException e) {
+			loadFailed(e);
+			return;
+		}
+	}
+
+	/**
+	 * Saves all localized messages to the plugin's file without the namespace
+	 */
+	@Override
+	public void saveMessages() {
+		HashMap<String, String> messages = new HashMap<>();
+		for(Entry<String, String> entry : getMessages().entrySet()){
+			if(entry.getKey().startsWith(prefix))messages.put(entry.getKey().substring(prefix.length()), entry.getValue());
+		}
+		try {
+			if(yaml){
+				FileConfiguration config = YamlUtil.getConfig(plugin, getLocaleName(), subdirectory);
+				for(Entry<String, String> entry : messages.entrySet()){
+					config.set(entry.getKey(), entry.getValue());
+				}
+				YamlUtil.saveConfig(config, plugin, getLocaleName(), subdirectory);
+			}else{
+				CsvUtil.saveConfig(CsvUtil.convertToCsv(messages), plugin, getLocaleName(), subdirectory);
+			}
+		} catch (IOException e) {
+			saveFailed(e);
+			return;
+		}
+	}
+
+}
@@ -0,0 +1,178 @@
+package me.cory.localization;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Supplier;
+
+/**
+ * Locale Config keeping its messages in a shared off heap {@link MessageArena}
+ * Messages are read from a config of the locale's own format, stored in the arena and the config is dropped,
+ * so the heap only holds one reference per key. Saves go through a fresh config of that format
+ * Messages set at runtime are also held on the heap until the locale is reloaded, as with bundles
+ * @author Cory Caron
+ */
+final class OffHeapConfig extends LocaleConfig {
+
+	private static final long[] NONE = new long[0];
+
+	private final Supplier<LocaleConfig> source;
+	private final MessageArena arena;
+	private final boolean lazy;
+	//Arena references by MessageKey index, 0 where there is no message
+	private volatile long[] refs;
+
+	/**
+	 * Construct the off heap config
+	 * @param localeName The locale name
+	 * @param folder The folder the locale files are in
+	 * @param source Creates a lazy config of the locale's format to load and save the messages with
+	 * @param arena The arena to store the messages in
+	 * @param lazy True to defer loading messages until they are first needed
+	 */
+	OffHeapConfig(String localeName, File folder, Supplier<LocaleConfig> source, MessageArena arena, boolean lazy){
+		//Always lazy here since the fields aren't set until after the super constructor
+		super(localeName, folder, true);
+		this.source = source;
+		this.arena = arena;
+		this.lazy = lazy;
+		this.refs = NONE;
+		if(!lazy)ensureLoaded();
+	}
+
+	/**
+	 * Reads the messages with a config of the locale's format and stores them in the arena
+	 */
+	@Override
+	public void loadMessages() {
+		LocaleConfig config = source.get();
+		config.ensureLoaded();
+		if(config.getLoadError()!=null)loadFailed(config.getLoadError());
+		long[] next = NONE;
+		int end = 0;
+		for(Entry<String, String> entry : config.getMessages().entrySet()){
+			if(entry.getValue()==null)continue;
+			int index = MessageKey.of(entry.getKey()).getIndex();
+			if(index>=next.length)next = Arrays.copyOf(next, Math.max(index + 1, next.length * 2));
+			next[index] = arena.store(entry.getValue());
+			end = Math.max(end, index + 1);
+		}
+		//Only span up to the highest key index this locale uses
+		if(next.length>end)next = Arrays.copyOf(next, end);
+		refs = next;
+	}
+
+	/**
+	 * Writes every message, including runtime changes, through a fresh config of the locale's format
+	 */
+	@Override
+	public void saveMessages() {
+		LocaleConfig config = source.get();
+		config.setMessages(getMessages());
+		config.saveMessages();
+	}
+
+	@Override
+	public boolean isLazy(){
+		return lazy;
+	}
+
+	/**
+	 * Messages are decoded from the arena on each lookup, so only runtime changes count towards the heap used
+	 * @return True
+	 */
+	@Override
+	public boolean isOffHeap(){
+		return true;
+	}
+
+	@Override
+	public synchronized boolean unloadMessages(){
+		if(!lazy || !super.unloadMessages())return false;
+		refs = NONE;
+		return true;
+	}
+
+	@Override
+	public String getMessage(MessageKey key){
+		ensureLoaded();
+		long[] current = refs;
+		int index = key.getIndex();
+		return index<current.length && current[index]!=0 ? arena.get(current[index]) : null;
+	}
+
+	@Override
+	public String getMessage(String key){
+		MessageKey handle = MessageKey.find(key);
+		return handle==null ? null : getMessage(handle);
+	}
+
+	/**
+	 * Sets the message on the heap and in the arena, so lookups never need to check the heap first
+	 */
+	@Override
+	public String setMessage(String key, String message){
+		String previous = getMessage(key);
+		super.setMessage(key, message);
+		put(Collections.singletonMap(key, message));
+		return previous;
+	}
+
+	@Override
+	public void setMessages(Map<String, String> messages){
+		super.setMessages(messages);
+		put(messages);
+	}
+
+	/**
+	 * Replaces the references of keys with newly stored messages, copying the references only once
+	 * @param messages Map of all key:message pairs to set, null messages remove the key
+	 */
+	private synchronized void put(Map<String, String> messages){
+		int[] indices = new int[messages.size()];
+		long[] stored = new long[indices.length];
+		int end = refs.length;
+		int i = 0;
+		for(Entry<String, String> entry : messages.entrySet()){
+			indices[i] = MessageKey.of(entry.getKey()).getIndex();
+			stored[i] = entry.getValue()==null ? 0 : arena.store(entry.getValue());
+			end = Math.max(end, indices[i] + 1);
+			i++;
+		}
+		long[] next = Arrays.copyOf(refs, end);
+		for(i = 0; i < indices.length; i++){
+			next[indices[i]] = stored[i];
+		}
+		refs = next;
+	}
+
+	/**
+	 * Gets all messages, decoding every message onto the heap
+	 * Avoid on hot paths, use getMessage instead
+	 * @return Returns a read-only copy of all messages
+	 */
+	@Override
+	public Map<String, String> getMessages(){
+		ensureLoaded();
+		long[] current = refs;
+		HashMap<String, String> messages = new HashMap<>();
+		for(int i = 0; i < current.length; i++){
+			if(current[i]!=0)messages.put(MessageKey.byIndex(i).getName(), arena.get(current[i]));
+		}
+		return Collections.unmodifiableMap(messages);
+	}
+
+	@Override
+	public boolean containsKey(String key){
+		return getMessage(key)!=null;
+	}
+
+	@Override
+	public boolean containsMessage(String message){
+		return getMessages().containsValue(message);
+	}
+
+}
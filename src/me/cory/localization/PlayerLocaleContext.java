@@ -0,0 +1,252 @@
+package me.cory.localization;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Locale state of an online player, created on login and dropped on quit
+ * Holds a direct reference to the player's resolved lookup table, so lookups through the context skip the UUID map,
+ * the locale check and the fallback chain. The reference is checked against the resolver's current tables on each lookup
+ * and resolved again only after locales change
+ * Get it once with LocaleManager#getPlayerContext(UUID) and keep it for as long as the player is online
+ * @author Cory Caron
+ */
+public final class PlayerLocaleContext {
+
+	private final UUID uuid;
+	private final MessageResolver resolver;
+	private final long created;
+	private volatile String localeName;
+	//False while the locale is assigned from the player's client instead of selected and stored
+	private volatile boolean selected;
+	private volatile Resolution resolution;
+
+	/**
+	 * Construct the context for a player
+	 * @param uuid Player's UUID
+	 * @param localeName The player's selected locale or null if they have none
+	 * @param resolver The resolver to resolve the table with
+	 */
+	PlayerLocaleContext(UUID uuid, String localeName, MessageResolver resolver){
+		this.uuid = uuid;
+		this.localeName = localeName;
+		this.selected = localeName!=null;
+		this.resolver = resolver;
+		this.created = System.currentTimeMillis();
+	}
+
+	/**
+	 * Gets the UUID of the player
+	 * @return Player's UUID
+	 */
+	public UUID getUniqueId(){
+		return uuid;
+	}
+
+	/**
+	 * Gets the player's selected locale, or the locale assigned from their client if they haven't selected one
+	 * @return The locale or null if they have none
+	 */
+	public String getLocale(){
+		return localeName;
+	}
+
+	/**
+	 * Changes the player's selected locale in memory, the table is resolved again on next lookup
+	 * @param localeName The selected locale
+	 */
+	synchronized void setLocale(String localeName){
+		this.localeName = localeName;
+		this.selected = true;
+	}
+
+	/**
+	 * Assigns the player a locale in memory only, such as their client locale, unless they have selected one
+	 * @param localeName The assigned locale
+	 */
+	synchronized void assignLocale(String localeName){
+		if(!selected)this.localeName = localeName;
+	}
+
+	/**
+	 * Checks if the player's locale was selected and stored, rather than assigned from their client
+	 * @return True if the player has selected a locale
+	 */
+	public boolean isSelected(){
+		return selected;
+	}
+
+	/**
+	 * Gets the locale the player's messages resolve in
+	 * @return The selected locale, or the default locale if the selected one isn't registered
+	 */
+	public String getResolvedLocale(){
+		return resolution().resolvedLocale;
+	}
+
+	/**
+	 * Gets the cached plural rules and formatters for the locale the player's messages resolve in
+	 * Use getFormats(MessageKey) to render a message, which may have come from a fallback locale
+	 * @return The shared formats
+	 */
+	public LocaleFormats getFormats(){
+		return resolution().formats;
+	}
+
+	/**
+	 * Gets the cached plural rules and formatters to render a message with
+	 * @param key The key handle to the message
+	 * @return The formats of the locale in the chain the message came from, or of the resolved locale if no locale has it
+	 */
+	public LocaleFormats getFormats(MessageKey key){
+		Resolution current = resolution();
+		return MessageResolver.formats(current.table, key, current.formats);
+	}
+
+	/**
+	 * Gets the localized message, falling back through the locale chain
+	 * @param key The key to the message
+	 * @return The localized message or null if no locale in the chain has the key
+	 */
+	public String getMessage(String key){
+		Map<String, String> table = getTable();
+		String message = table==null ? null : table.get(key);
+		resolver.record(this, key, message!=null);
+		return message;
+	}
+
+	/**
+	 * Gets the localized message by key handle, falling back through the locale chain
+	 * @param key The key handle to the message
+	 * @return The localized message or null if no locale in the chain has the key
+	 */
+	public String getMessage(MessageKey key){
+		String message = MessageResolver.lookup(getTable(), key);
+		resolver.record(this, key.getName(), message!=null);
+		return message;
+	}
+
+	/**
+	 * Gets the localized messages of several keys at once, falling back through the locale chain
+	 * @param keys The key handles to the messages
+	 * @param messages The array to fill with the messages in key order, null where no locale in the chain has the key
+	 * @return The filled array
+	 */
+	public String[] getMessages(MessageKey[] keys, String[] messages){
+		Map<String, String> table = getTable();
+		for(int i = 0; i < keys.length; i++){
+			messages[i] = MessageResolver.lookup(table, keys[i]);
+		}
+		resolver.record(this, keys, messages);
+		return messages;
+	}
+
+	/**
+	 * Gets the localized messages of a key set, copied from the messages cached for this player's locale
+	 * @param keys The key set
+	 * @param messages The array to fill with the messages in key order, null where no locale in the chain has the key
+	 * @return The filled array
+	 */
+	public String[] getMessages(MessageKeySet keys, String[] messages){
+		Resolution current = resolution();
+		String[] resolved = keys.resolve(current.resolvedLocale, current.table);
+		System.arraycopy(resolved, 0, messages, 0, resolved.length);
+		resolver.record(this, keys.handles(), messages);
+		return messages;
+	}
+
+	/**
+	 * Gets the compiled message by key handle, to render into a StringBuilder of your own
+	 * @param key The key handle to the message
+	 * @return The compiled message or null if no locale in the chain has the key
+	 */
+	public MessageTemplate getTemplate(MessageKey key){
+		MessageTemplate template = MessageResolver.template(getTable(), key);
+		resolver.record(this, key.getName(), template!=null);
+		return template;
+	}
+
+	/**
+	 * Formats the localized message, see LocaleManager#format(UUID, String, Object...)
+	 * @param key The key to the message
+	 * @param args The arguments for the placeholders {0}, {1} and so on
+	 * @return The color translated message with placeholders replaced or null if no locale in the chain has the key
+	 */
+	public String format(String key, Object... args){
+		MessageKey handle = MessageKey.find(key);
+		return handle==null ? null : format(handle, args);
+	}
+
+	/**
+	 * Formats the localized message by key handle, see LocaleManager#format(UUID, String, Object...)
+	 * @param key The key handle to the message
+	 * @param args The arguments for the placeholders {0}, {1} and so on
+	 * @return The color translated message with placeholders replaced or null if no locale in the chain has the key
+	 */
+	public String format(MessageKey key, Object... args){
+		Resolution current = resolution();
+		MessageTemplate template = MessageResolver.template(current.table, key);
+		resolver.record(this, key.getName(), template!=null);
+		if(template==null)return null;
+		return template.render(template.isLocalized() ? MessageResolver.formats(current.table, key, current.formats) : LocaleFormats.ROOT, args);
+	}
+
+	/**
+	 * Gets when this context was created
+	 * @return The time in milliseconds
+	 */
+	long getCreated(){
+		return created;
+	}
+
+	/**
+	 * Resolves the player's table now, loading any lazy locale in the chain, so the first lookup doesn't have to
+	 */
+	void warm(){
+		resolution();
+	}
+
+	/**
+	 * Gets the player's resolved lookup table
+	 * @return The read-only table or null if no locale is registered
+	 */
+	Map<String, String> getTable(){
+		return resolution().table;
+	}
+
+	/**
+	 * Gets the cached resolution, resolving again if the selected locale or the resolver's tables changed since
+	 * @return The current resolution
+	 */
+	private Resolution resolution(){
+		Resolution current = resolution;
+		String selected = localeName;
+		//Read before resolving, so a change made while resolving is caught on the next lookup
+		Object version = resolver.getVersion();
+		if(current!=null && current.version==version && current.selected==selected)return current;
+		String resolvedLocale = resolver.getResolvedLocale(selected);
+		current = new Resolution(version, selected, resolvedLocale, resolver.getTable(resolvedLocale), LocaleFormats.forLocale(resolvedLocale));
+		resolution = current;
+		return current;
+	}
+
+	/**
+	 * Immutable result of resolving the player's table, published as a whole
+	 */
+	private static final class Resolution {
+
+		private final Object version;
+		private final String selected;
+		private final String resolvedLocale;
+		private final Map<String, String> table;
+		private final LocaleFormats formats;
+
+		private Resolution(Object version, String selected, String resolvedLocale, Map<String, String> table, LocaleFormats formats){
+			this.version = version;
+			this.selected = selected;
+			this.resolvedLocale = resolvedLocale;
+			this.table = table;
+			this.formats = formats;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package me.cory.localization;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Persistent storage for player selected locales
+ * The LocaleManager only keeps online players in memory and goes through this for everyone else
+ * @author Cory Caron
+ */
+public interface PlayerLocaleStore {
+
+	/**
+	 * Gets the stored locale of a player
+	 * @param uuid Player's UUID
+	 * @return The stored locale name or null if the player has none
+	 * @throws IOException If unable to read the store
+	 */
+	String getLocale(UUID uuid) throws IOException;
+
+	/**
+	 * Stores the locale of a player
+	 * @param uuid Player's UUID
+	 * @param localeName The locale name
+	 * @throws IOException If unable to write the store
+	 */
+	void setLocale(UUID uuid, String localeName) throws IOException;
+
+	/**
+	 * Gets the longest locale name this store accepts, setLocale throws an IllegalArgumentException for longer names
+	 * @return The longest name in UTF-8 bytes
+	 */
+	default int getMaxNameLength(){
+		return 255;
+	}
+
+	/**
+	 * Writes any buffered changes to disk
+	 * @throws IOException If unable to write the store
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Flushes and releases the store, it can't be used afterwards
+	 * @throws IOException If unable to write the store
+	 */
+	void close() throws IOException;
+}
@@ -0,0 +1,111 @@
+package me.cory.localization;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A locale of the shared service, holding the namespaced messages of every plugin that has the locale
+ * Messages are handed over by the service, and saved back to each plugin's own file
+ * Replacing one namespace's config swaps in a new shared config that keeps every other namespace's messages
+ * @author Cory Caron
+ */
+final class SharedConfig extends LocaleConfig {
+
+	private final Map<String, LocaleConfig> parts;
+
+	/**
+	 * Construct the shared config
+	 * @param localeName The locale name
+	 * @param parts The config of each namespace by namespace, "" for messages without one
+	 * @param messages Map of all key:message pairs of every namespace
+	 */
+	SharedConfig(String localeName, Map<String, LocaleConfig> parts, Map<String, String> messages){
+		super(localeName);
+		this.parts = Collections.unmodifiableMap(parts);
+		setMessages(messages);
+	}
+
+	/**
+	 * Gets a locale as a shared config, wrapping a locale of the shared folder as the part without a namespace
+	 * The wrapped config's messages are handed over and dropped from it, lazy or not
+	 * @param localeName The locale name
+	 * @param current The registered config of the locale or null if it isn't registered
+	 * @return The shared config
+	 */
+	static SharedConfig of(String localeName, LocaleConfig current){
+		if(current instanceof SharedConfig)return (SharedConfig) current;
+		if(current==null)return new SharedConfig(localeName, Collections.emptyMap(), Collections.emptyMap());
+		SharedConfig shared = new SharedConfig(localeName, Collections.singletonMap("", current), current.getMessages());
+		current.releaseMessages();
+		return shared;
+	}
+
+	/**
+	 * Creates a copy of this locale with one namespace's config replaced, every other namespace keeps its messages including runtime changes
+	 * @param namespace The namespace, "" for messages without one
+	 * @param part The namespace's new config or null to drop the namespace, its messages are loaded and handed over
+	 * @return The new shared config or null if no namespace is left
+	 */
+	SharedConfig withPart(String namespace, LocaleConfig part){
+		LinkedHashMap<String, LocaleConfig> next = new LinkedHashMap<>(parts);
+		next.remove(namespace);
+		HashMap<String, String> messages = new HashMap<>();
+		for(Entry<String, String> entry : getMessages().entrySet()){
+			String owner = namespace.isEmpty() ? namespaceOf(entry.getKey()) : LocaleService.namespaceOf(entry.getKey());
+			if(!owner.equals(namespace))messages.put(entry.getKey(), entry.getValue());
+		}
+		if(part!=null){
+			part.ensureLoaded();
+			messages.putAll(part.getMessages());
+			part.releaseMessages();
+			next.put(namespace, part);
+		}
+		return next.isEmpty() ? null : new SharedConfig(getLocaleName(), next, messages);
+	}
+
+	/**
+	 * Gets the namespace a key is saved with
+	 * @param key The key
+	 * @return The key's namespace, or "" if no part has that namespace
+	 */
+	private String namespaceOf(String key){
+		String namespace = LocaleService.namespaceOf(key);
+		return parts.containsKey(namespace) ? namespace : "";
+	}
+
+	/**
+	 * Messages are handed over by LocaleService when constructed
+	 */
+	@Override
+	public void loadMessages() {
+	}
+
+	/**
+	 * Saves each namespace's messages, including runtime changes, to its own file
+	 * The parts only hold their messages while saving, so they are never in memory twice
+	 */
+	@Override
+	public void saveMessages() {
+		HashMap<String, Map<String, String>> split = new HashMap<>();
+		for(Entry<String, String> entry : getMessages().entrySet()){
+			split.computeIfAbsent(namespaceOf(entry.getKey()), name -> new HashMap<>()).put(entry.getKey(), entry.getValue());
+		}
+		for(Entry<String, LocaleConfig> part : parts.entrySet()){
+			Map<String, String> messages = split.get(part.getKey());
+			if(messages==null)continue;
+			part.getValue().saveAndRelease(messages);
+		}
+	}
+
+	/**
+	 * Gets the config of each namespace with this locale
+	 * @return A read-only map of the configs by namespace
+	 */
+	Map<String, LocaleConfig> getParts(){
+		return parts;
+	}
+
+}
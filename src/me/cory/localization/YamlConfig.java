@@ -1,5 +1,6 @@
 package me.cory.localization;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Map.Entry;
 
@@ -14,18 +15,37 @@ public class YamlConfig extends LocaleConfig{
 	public YamlConfig(String localeName) {
 		super(localeName);
 	}
+	
+	/**
+	 * Constructor for YAML formatted Locale Config
+	 * @param localeName Name of the locale
+	 * @param lazy True to defer loading messages until they are first needed
+	 */
+	public YamlConfig(String localeName, boolean lazy) {
+		super(localeName, lazy);
+	}
+	
+	/**
+	 * Constructor for YAML formatted Locale Config in a folder
+	 * @param localeName Name of the locale
+	 * @param folder The folder the locale file is in
+	 * @param lazy True to defer loading messages until they are first needed
+	 */
+	public YamlConfig(String localeName, File folder, boolean lazy) {
+		super(localeName, folder, lazy);
+	}
 
 	/**
-	 * Called from super class when constructed
+	 * Called from super class when constructed, or on first use if lazy
 	 * Loads all localized messages from CSV file
 	 */
 	@Override
 	public void loadMessages() {
 		FileConfiguration config;
 		try {
-			config = YamlUtil.getConfig(getLocaleName(), "locales");
+			config = YamlUtil.getConfig(getFolder(), getLocaleName());
 		} catch (IOException e) {
-			//LOG IO ERROR MESSAGE HERE
+			loadFailed(e);
 			return;
 		}
 		for(String string : config.getKeys(true)){
@@ -41,13 +61,13 @@ public class YamlConfig extends LocaleConfig{
 	public void saveMessages() {
 		FileConfiguration config;
 		try {
-			config = YamlUtil.getConfig(getLocaleName(), "locales");
+			config = YamlUtil.getConfig(getFolder(), getLocaleName());
 			for(Entry<String, String> entry : getMessages().entrySet()){
 				config.set(entry.getKey(), entry.getValue());
 			}
-			YamlUtil.saveConfig(config, getLocaleName(), "locales");
+			YamlUtil.saveConfig(config, getFolder(), getLocaleName());
 		} catch (IOException e1) {
-			//LOG IO ERROR MESSAGE HERE
+			saveFailed(e1);
 			return;
 		}
 	}
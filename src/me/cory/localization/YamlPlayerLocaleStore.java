@@ -0,0 +1,70 @@
+package me.cory.localization;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.UUID;
+
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+/**
+ * Player locale store backed by a single YAML document, the original player-locales.yml format
+ * The whole file is held in memory and rewritten on flush, so prefer {@link IndexedPlayerLocaleStore} for large servers
+ * @author Cory Caron
+ */
+public class YamlPlayerLocaleStore implements PlayerLocaleStore {
+
+	private final File file;
+	private final HashMap<UUID, String> entries;
+	private boolean dirty;
+
+	/**
+	 * Opens the store, reading every entry from the file
+	 * @param file The YAML file, created on first flush if it does not exist
+	 */
+	public YamlPlayerLocaleStore(File file){
+		this.file = file;
+		this.entries = new HashMap<>();
+		FileConfiguration config = YamlConfiguration.loadConfiguration(file);
+		for(String string : config.getKeys(false)){
+			entries.put(UUID.fromString(string), config.getString(string));
+		}
+	}
+
+	@Override
+	public synchronized String getLocale(UUID uuid) {
+		return entries.get(uuid);
+	}
+
+	@Override
+	public synchronized void setLocale(UUID uuid, String localeName) {
+		entries.put(uuid, localeName);
+		dirty = true;
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		if(!dirty)return;
+		FileConfiguration config = new YamlConfiguration();
+		for(Entry<UUID, String> entry : entries.entrySet()){
+			config.set(entry.getKey().toString(), entry.getValue());
+		}
+		YamlUtil.writeConfig(file, config);
+		dirty = false;
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+
+	/**
+	 * Gets a copy of every stored entry
+	 * @return All player selected locales
+	 */
+	public synchronized HashMap<UUID, String> getEntries(){
+		return new HashMap<>(entries);
+	}
+}
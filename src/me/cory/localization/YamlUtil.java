@@ -3,7 +3,9 @@ package me.cory.localization;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -30,7 +32,7 @@ public final class YamlUtil {
 		if (!file.exists()) {
 			file.createNewFile();
 		}
-		return YamlConfiguration.loadConfiguration(file);
+		return loadConfig(file);
 	}
 
 	/**
@@ -46,7 +48,7 @@ public final class YamlUtil {
 			dir.mkdirs();
 		}
 		File file = new File(dir, name + ".yml");
-		config.save(file);
+		writeConfig(file, config);
 	}
 	
 	/**
@@ -58,7 +60,18 @@ public final class YamlUtil {
 	 * @throws IOException If unable to read or create the specified config
 	 */
 	public static FileConfiguration getConfig(String name, String subdirectory)throws IOException {
-		File dir = new File(JavaPlugin.getProvidingPlugin(YamlUtil.class).getDataFolder() + File.separator + subdirectory);
+		return getConfig(new File(LocalePlatform.getDefault().getDataFolder() + File.separator + subdirectory), name);
+	}
+
+	/**
+	 * Gets the YAML config in a folder
+	 * Creates the config if it does not exist
+	 * @param dir Folder of the config
+	 * @param name Name of the config
+	 * @return Returns the FileConfiguration object for this config
+	 * @throws IOException If unable to read or create the specified config
+	 */
+	public static FileConfiguration getConfig(File dir, String name)throws IOException {
 		if (!dir.isDirectory()) {
 			dir.mkdirs();
 		}
@@ -66,7 +79,7 @@ public final class YamlUtil {
 		if (!file.exists()) {
 			file.createNewFile();
 		}
-		return YamlConfiguration.loadConfiguration(file);
+		return loadConfig(file);
 	}
 
 	/**
@@ -77,12 +90,22 @@ public final class YamlUtil {
 	 * @throws IOException If unable to save the specified config to file
 	 */
 	public static void saveConfig(FileConfiguration config, String name, String subdirectory) throws IOException {
-		File dir = new File(JavaPlugin.getProvidingPlugin(YamlUtil.class).getDataFolder() + File.separator + subdirectory);
+		saveConfig(config, new File(LocalePlatform.getDefault().getDataFolder() + File.separator + subdirectory), name);
+	}
+
+	/**
+	 * Saves the YAML config to a folder
+	 * @param config FileConfiguration object to save to file
+	 * @param dir Folder of the config
+	 * @param name Name of the config
+	 * @throws IOException If unable to save the specified config to file
+	 */
+	public static void saveConfig(FileConfiguration config, File dir, String name) throws IOException {
 		if (!dir.isDirectory()) {
 			dir.mkdirs();
 		}
 		File file = new File(dir, name + ".yml");
-		config.save(file);
+		writeConfig(file, config);
 	}
 
 	/**
@@ -93,15 +116,15 @@ public final class YamlUtil {
 	 * @throws IOException If unable to read or create the specified config
 	 */
 	public static FileConfiguration getConfig(String name) throws IOException {
-		File dir = JavaPlugin.getProvidingPlugin(YamlUtil.class).getDataFolder();
+		File dir = LocalePlatform.getDefault().getDataFolder();
 		if (!dir.isDirectory()) {
 			dir.mkdirs();
 		}
-		File file = new File(JavaPlugin.getProvidingPlugin(YamlUtil.class).getDataFolder(), name + ".yml");
+		File file = new File(LocalePlatform.getDefault().getDataFolder(), name + ".yml");
 		if (!file.exists()) {
 			file.createNewFile();
 		}
-		return YamlConfiguration.loadConfiguration(file);
+		return loadConfig(file);
 	}
 
 	/**
@@ -111,8 +134,8 @@ public final class YamlUtil {
 	 * @throws IOException If unable to save the specified config to file
 	 */
 	public static void saveConfig(FileConfiguration config, String name) throws IOException {
-		File file = new File(JavaPlugin.getProvidingPlugin(YamlUtil.class).getDataFolder(), name + ".yml");
-		config.save(file);
+		File file = new File(LocalePlatform.getDefault().getDataFolder(), name + ".yml");
+		writeConfig(file, config);
 	}
 	
 	/**
@@ -133,7 +156,7 @@ public final class YamlUtil {
 		if (!file.exists()) {
 			file.createNewFile();
 		}
-		return YamlConfiguration.loadConfiguration(file);
+		return loadConfig(file);
 	}
 
 	/**
@@ -150,7 +173,7 @@ public final class YamlUtil {
 			dir.mkdirs();
 		}
 		File file = new File(dir, name + ".yml");
-		config.save(file);
+		writeConfig(file, config);
 	}
 
 	/**
@@ -166,11 +189,11 @@ public final class YamlUtil {
 		if (!dir.isDirectory()) {
 			dir.mkdirs();
 		}
-		File file = new File(JavaPlugin.getProvidingPlugin(YamlUtil.class).getDataFolder(), name + ".yml");
+		File file = new File(dir, name + ".yml");
 		if (!file.exists()) {
 			file.createNewFile();
 		}
-		return YamlConfiguration.loadConfiguration(file);
+		return loadConfig(file);
 	}
 
 	/**
@@ -182,7 +205,38 @@ public final class YamlUtil {
 	 */
 	public static void saveConfig(FileConfiguration config, JavaPlugin plugin, String name) throws IOException {
 		File file = new File(plugin.getDataFolder(), name + ".yml");
-		config.save(file);
+		writeConfig(file, config);
+	}
+	
+	/**
+	 * Write the YAML config to file in UTF-8
+	 * The file is replaced atomically and forced to disk, so a crash never leaves it half written
+	 * @param file File to write to
+	 * @param config FileConfiguration object to save to file
+	 * @throws IOException If unable to write the file
+	 */
+	public static void writeConfig(File file, FileConfiguration config) throws IOException{
+		try(AtomicFileWriter writer = new AtomicFileWriter(file.toPath(), StandardCharsets.UTF_8, true)){
+			writer.write(config.saveToString());
+			writer.commit();
+		}
+	}
+	
+	/**
+	 * Read the YAML config from file
+	 * Unlike YamlConfiguration#loadConfiguration(File), invalid YAML is reported instead of silently loading an empty config
+	 * @param file File to read from
+	 * @return Returns the FileConfiguration object for this config
+	 * @throws IOException If unable to read the file or it isn't valid YAML
+	 */
+	public static FileConfiguration loadConfig(File file) throws IOException{
+		YamlConfiguration config = new YamlConfiguration();
+		try {
+			config.load(file);
+		} catch (InvalidConfigurationException e) {
+			throw new IOException("Invalid YAML in " + file, e);
+		}
+		return config;
 	}
 	
 }
@@ -0,0 +1,156 @@
+package me.cory.localization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Crash safety of AtomicFileWriter and the CSV save path built on it
+ * @author Cory Caron
+ */
+public class AtomicFileWriterTest {
+
+	private Path folder;
+	private Path target;
+
+	@Before
+	public void setUp() throws IOException{
+		folder = Files.createTempDirectory("atomic-writer");
+		target = folder.resolve("en.csv");
+	}
+
+	@After
+	public void tearDown() throws IOException{
+		try(DirectoryStream<Path> stream = Files.newDirectoryStream(folder)){
+			for(Path path : stream){
+				Files.delete(path);
+			}
+		}
+		Files.delete(folder);
+	}
+
+	@Test
+	public void commitWritesContent() throws IOException{
+		//Larger than the write buffer, with multi byte characters split across it
+		StringBuilder content = new StringBuilder();
+		for(int i = 0; i < 20000; i++){
+			content.append("key").append(i).append(",Bonjour à tous 你好\n");
+		}
+		try(AtomicFileWriter writer = new AtomicFileWriter(target, StandardCharsets.UTF_8, true)){
+			writer.write(content.toString());
+			writer.commit();
+		}
+		assertEquals(content.toString(), new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+		assertEquals(1, countFiles());
+	}
+
+	@Test
+	public void closeWithoutCommitLeavesTarget() throws IOException{
+		Files.write(target, "greet,Hi\n".getBytes(StandardCharsets.UTF_8));
+		try(AtomicFileWriter writer = new AtomicFileWriter(target, StandardCharsets.UTF_8, false)){
+			writer.write("greet,Changed\n");
+			writer.flush();
+		}
+		assertEquals("greet,Hi\n", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+		assertEquals(1, countFiles());
+	}
+
+	@Test
+	public void failedSaveLeavesTarget() throws IOException{
+		Files.write(target, "greet,Hi\n".getBytes(StandardCharsets.UTF_8));
+		try(AtomicFileWriter writer = new AtomicFileWriter(target, StandardCharsets.UTF_8, false)){
+			writer.write("greet,Changed\n");
+			throw new IOException("Simulated failure mid save");
+		} catch (IOException e) {
+			assertEquals("Simulated failure mid save", e.getMessage());
+		}
+		assertEquals("greet,Hi\n", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+		assertEquals(1, countFiles());
+	}
+
+	@Test
+	public void targetUntouchedUntilCommit() throws IOException{
+		Files.write(target, "greet,Hi\n".getBytes(StandardCharsets.UTF_8));
+		AtomicFileWriter writer = new AtomicFileWriter(target, StandardCharsets.UTF_8, false);
+		writer.write("greet,Changed\n");
+		writer.flush();
+		//A crash here leaves only the temp file behind
+		assertEquals("greet,Hi\n", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+		writer.commit();
+		assertEquals("greet,Changed\n", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void writeAfterCommitFails() throws IOException{
+		AtomicFileWriter writer = new AtomicFileWriter(target, StandardCharsets.UTF_8, false);
+		writer.commit();
+		try {
+			writer.write("late");
+			fail("Write after commit should fail");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("closed"));
+		}
+		writer.close();
+		assertTrue(Files.exists(target));
+	}
+
+	@Test
+	public void csvRoundTrip() throws IOException{
+		Map<String, String> messages = new HashMap<>();
+		messages.put("plain", "Hello");
+		messages.put("comma", "Hello, world");
+		messages.put("quote", "Say \"hi\"");
+		messages.put("lines", "First\nSecond\r\nThird");
+		messages.put("unicode", "Ça va ❤");
+		CsvUtil.writeMessages(target, messages, true);
+		assertEquals(messages, CsvUtil.readMessages(target));
+		assertEquals(1, countFiles());
+	}
+
+	@Test
+	public void saveKeepsPermissions() throws IOException{
+		assumeTrue(Files.getFileAttributeView(folder, PosixFileAttributeView.class)!=null);
+		Files.write(target, "greet,Hi\n".getBytes(StandardCharsets.UTF_8));
+		Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r--r--");
+		Files.setPosixFilePermissions(target, permissions);
+		CsvUtil.writeMessages(target, Collections.singletonMap("greet", "Changed"), false);
+		assertEquals(permissions, Files.getPosixFilePermissions(target));
+		//A new file gets the folder's permissions without execute
+		Files.delete(target);
+		Files.setPosixFilePermissions(folder, PosixFilePermissions.fromString("rwxr-x---"));
+		CsvUtil.writeMessages(target, Collections.singletonMap("greet", "Hi"), false);
+		assertEquals(PosixFilePermissions.fromString("rw-r-----"), Files.getPosixFilePermissions(target));
+		assertEquals(1, countFiles());
+	}
+
+	/**
+	 * Counts the files in the folder, to check no temp file was left behind
+	 */
+	private int countFiles() throws IOException{
+		int count = 0;
+		try(DirectoryStream<Path> stream = Files.newDirectoryStream(folder)){
+			for(@SuppressWarnings("unused") Path path : stream){
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,108 @@
+package me.cory.localization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Parsing rules of CsvUtil#readMessages
+ * @author Cory Caron
+ */
+public class CsvUtilTest {
+
+	@Test
+	public void plainRecords() throws IOException{
+		Map<String, String> expected = new HashMap<>();
+		expected.put("greet", "Hello");
+		expected.put("bye", "Goodbye");
+		assertEquals(expected, read("greet,Hello\nbye,Goodbye\n"));
+	}
+
+	@Test
+	public void unquotedMessageKeepsCommas() throws IOException{
+		assertEquals(Collections.singletonMap("greet", "Hello, world, again"), read("greet,Hello, world, again"));
+	}
+
+	@Test
+	public void quotedCommasAndLineBreaks() throws IOException{
+		Map<String, String> expected = new HashMap<>();
+		expected.put("comma", "Hello, world");
+		expected.put("lines", "First\nSecond\r\nThird");
+		expected.put("after", "Still read");
+		assertEquals(expected, read("comma,\"Hello, world\"\nlines,\"First\nSecond\r\nThird\"\nafter,Still read"));
+	}
+
+	@Test
+	public void doubledQuotes() throws IOException{
+		assertEquals(Collections.singletonMap("quote", "Say \"hi\""), read("quote,\"Say \"\"hi\"\"\""));
+	}
+
+	@Test
+	public void quotedKey() throws IOException{
+		assertEquals(Collections.singletonMap("a,b", "Hello"), read("\"a,b\",Hello"));
+	}
+
+	@Test
+	public void byteOrderMarkSkipped() throws IOException{
+		assertEquals(Collections.singletonMap("greet", "Hello"), read("\uFEFFgreet,Hello"));
+	}
+
+	@Test
+	public void crlfLineEndings() throws IOException{
+		Map<String, String> expected = new HashMap<>();
+		expected.put("greet", "Hello");
+		expected.put("bye", "Goodbye");
+		assertEquals(expected, read("greet,Hello\r\nbye,Goodbye\r\n"));
+	}
+
+	@Test
+	public void unclosedQuoteFails() throws IOException{
+		try {
+			read("greet,Hello\nbroken,\"Never closed\nnext,Message");
+			fail("Unclosed quote should fail");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("line 2"));
+		}
+	}
+
+	@Test
+	public void legacyQuotesKeptAsWritten() throws IOException{
+		assertEquals(Collections.singletonMap("greet", "\"Hi\" there"), read("greet,\"Hi\" there"));
+	}
+
+	@Test
+	public void quoteRuleIndependentOfPosition() throws IOException{
+		assertEquals(Collections.singletonMap("k", "\"a\",b"), read("k,\"a\",b"));
+		assertEquals(Collections.singletonMap("k", "a,\"b\""), read("k,a,\"b\""));
+	}
+
+	@Test
+	public void recordsWithoutMessageIgnored() throws IOException{
+		assertEquals(Collections.singletonMap("greet", "Hello"), read("lonely\n\ngreet,Hello\n"));
+	}
+
+	@Test
+	public void writtenMessagesReadBack() throws IOException{
+		Map<String, String> messages = new HashMap<>();
+		messages.put("plain", "Hello");
+		messages.put("comma", "Hello, world");
+		messages.put("quote", "\"Quoted\", then more");
+		messages.put("lines", "First\r\nSecond");
+		assertEquals(messages, CsvUtil.convertToMap(CsvUtil.convertToCsv(messages)));
+	}
+
+	/**
+	 * Reads messages from CSV text
+	 */
+	private static Map<String, String> read(String csv) throws IOException{
+		return CsvUtil.readMessages(new StringReader(csv));
+	}
+}
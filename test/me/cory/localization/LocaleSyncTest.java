@@ -0,0 +1,182 @@
+package me.cory.localization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Player locale changes sent between two LocaleManagers through an in-memory transport
+ * @author Cory Caron
+ */
+public class LocaleSyncTest {
+
+	//Long enough that batches are only sent when the sync is stopped
+	private static final long FLUSH_MILLIS = 60000L;
+
+	private Path folder;
+	private List<MemoryTransport> network;
+	private LocaleManager sender;
+	private LocaleManager receiver;
+	private MemoryTransport receiverTransport;
+
+	@Before
+	public void setUp() throws IOException{
+		folder = Files.createTempDirectory("locale-sync");
+		network = new CopyOnWriteArrayList<>();
+		sender = manager("sender", "en", "fr", "de");
+		receiver = manager("receiver", "en", "fr");
+		sender.startSync(new MemoryTransport(network), FLUSH_MILLIS);
+		receiverTransport = new MemoryTransport(network);
+		receiver.startSync(receiverTransport, FLUSH_MILLIS);
+	}
+
+	@After
+	public void tearDown() throws IOException{
+		sender.shutdown();
+		receiver.shutdown();
+		try(Stream<Path> paths = Files.walk(folder)){
+			for(Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator){
+				Files.delete(path);
+			}
+		}
+	}
+
+	@Test
+	public void changeReachesOtherServer(){
+		UUID uuid = UUID.randomUUID();
+		sender.setPlayerLocale(uuid, "en");
+		sender.setPlayerLocale(uuid, "fr");
+		sender.stopSync();
+		assertEquals("fr", receiver.getPlayerLocale(uuid));
+		assertEquals(1, receiver.getSync().getAppliedChanges());
+	}
+
+	@Test
+	public void loadedPlayerFollowsChange(){
+		UUID uuid = UUID.randomUUID();
+		receiver.loadPlayer(uuid);
+		sender.setPlayerLocale(uuid, "fr");
+		sender.stopSync();
+		assertEquals("fr", receiver.getPlayerContext(uuid).getLocale());
+	}
+
+	@Test
+	public void unknownLocaleIsRejected(){
+		UUID uuid = UUID.randomUUID();
+		sender.setPlayerLocale(uuid, "de");
+		sender.stopSync();
+		assertNull(receiver.getPlayerLocale(uuid));
+		assertEquals(1, receiver.getSync().getRejectedChanges());
+	}
+
+	@Test
+	public void changeAheadOfClockIsRejected(){
+		UUID uuid = UUID.randomUUID();
+		long future = (System.currentTimeMillis() + LocaleSync.MAX_SKEW + 60000L) * 1000L;
+		deliver(uuid, "fr", future);
+		assertNull(receiver.getPlayerLocale(uuid));
+		assertEquals(1, receiver.getSync().getRejectedChanges());
+		//A local change made afterwards still wins
+		receiver.setPlayerLocale(uuid, "en");
+		deliver(uuid, "fr", System.currentTimeMillis() * 1000L - 1000000L);
+		assertEquals("en", receiver.getPlayerLocale(uuid));
+	}
+
+	@Test
+	public void malformedBatchIsIgnored(){
+		receiverTransport.receive(new byte[]{LocaleSync.VERSION, 1, 2});
+		UUID uuid = UUID.randomUUID();
+		sender.setPlayerLocale(uuid, "fr");
+		sender.stopSync();
+		assertEquals("fr", receiver.getPlayerLocale(uuid));
+	}
+
+	/**
+	 * Delivers a change from another server straight to the receiver
+	 * @param uuid Player's UUID
+	 * @param localeName The locale
+	 * @param time The change time in microseconds
+	 */
+	private void deliver(UUID uuid, String localeName, long time){
+		List<Map.Entry<UUID, LocaleSync.Change>> changes = Collections.singletonList(new SimpleEntry<>(uuid, new LocaleSync.Change(localeName, time, 1L)));
+		for(byte[] batch : LocaleSync.encode(1L, changes, LocaleSync.MAX_BATCH_BYTES)){
+			receiverTransport.receive(batch);
+		}
+	}
+
+	/**
+	 * Creates a standalone LocaleManager with in-memory locales
+	 * @param name The name of its data folder
+	 * @param localeNames The locales to register
+	 * @return The LocaleManager
+	 * @throws IOException If unable to create the data folder
+	 */
+	private LocaleManager manager(String name, String... localeNames) throws IOException{
+		LocaleManager localeMan = new LocaleManager(LocalePlatform.standalone(Files.createDirectory(folder.resolve(name)).toFile()), "en");
+		for(String localeName : localeNames){
+			localeMan.registerLocale(new LocaleConfig(localeName){
+				@Override
+				public void loadMessages(){
+					setMessages(Collections.singletonMap("hello", "hello " + getLocaleName()));
+				}
+
+				@Override
+				public void saveMessages(){}
+			});
+		}
+		return localeMan;
+	}
+
+	/**
+	 * Transport delivering each batch to every other transport on the same network, on the publishing thread
+	 */
+	private static final class MemoryTransport implements LocaleSyncTransport {
+
+		private final List<MemoryTransport> network;
+		private volatile Consumer<byte[]> receiver;
+
+		MemoryTransport(List<MemoryTransport> network){
+			this.network = network;
+		}
+
+		@Override
+		public void open(Consumer<byte[]> receiver){
+			this.receiver = receiver;
+			network.add(this);
+		}
+
+		@Override
+		public void publish(byte[] batch){
+			for(MemoryTransport transport : network){
+				if(transport!=this)transport.receive(batch);
+			}
+		}
+
+		void receive(byte[] batch){
+			Consumer<byte[]> receiver = this.receiver;
+			if(receiver!=null)receiver.accept(batch);
+		}
+
+		@Override
+		public void close(){
+			network.remove(this);
+			receiver = null;
+		}
+	}
+}